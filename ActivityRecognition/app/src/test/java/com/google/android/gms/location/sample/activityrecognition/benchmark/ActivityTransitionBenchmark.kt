@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Google, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.activityrecognition.benchmark
+
+import android.os.SystemClock
+import com.google.android.gms.location.ActivityTransition
+import com.google.android.gms.location.ActivityTransitionEvent
+import com.google.android.gms.location.DetectedActivity
+import com.google.android.gms.location.sample.activityrecognition.data.db.asRecord
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Benchmarks converting Play Services transition events into database records.
+ */
+@RunWith(RobolectricTestRunner::class)
+class ActivityTransitionBenchmark {
+
+    @Test
+    fun asRecord() {
+        val benchmark = Microbenchmark("ActivityTransitionBenchmark.asRecord")
+        val activityTypes = intArrayOf(
+            DetectedActivity.IN_VEHICLE,
+            DetectedActivity.ON_BICYCLE,
+            DetectedActivity.RUNNING,
+            DetectedActivity.STILL,
+            DetectedActivity.WALKING
+        )
+        val now = SystemClock.elapsedRealtimeNanos()
+        val events = List(10_000) { i ->
+            ActivityTransitionEvent(
+                activityTypes[i % activityTypes.size],
+                if (i % 2 == 0) {
+                    ActivityTransition.ACTIVITY_TRANSITION_ENTER
+                } else {
+                    ActivityTransition.ACTIVITY_TRANSITION_EXIT
+                },
+                now - i * 1_000_000L
+            )
+        }
+
+        benchmark.measure("asRecord", operations = events.size) {
+            events.forEach { consume(it.asRecord()) }
+        }
+        benchmark.write()
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Google, Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.activityrecognition.benchmark
+
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.util.Locale
+import java.util.concurrent.Executors
+
+/**
+ * Small timing harness for benchmarks that need Robolectric (android and Play Services types),
+ * where JMH can't run.
+ *
+ * Each measurement runs warm-up iterations followed by measured iterations on a dedicated
+ * background thread. It reports the median time per operation, the resulting throughput and the
+ * bytes allocated per operation. Results are printed and, once [write] is called, saved as JSON
+ * under the benchmark.outputDir system property so they can be tracked over time.
+ */
+class Microbenchmark(private val suite: String) {
+
+    private val results = mutableListOf<String>()
+    private val thread = Executors.newSingleThreadExecutor()
+
+    /**
+     * Measures [block], which performs [operations] operations per call and passes their results
+     * to [Blackhole.consume] so they can't be optimized away. [setUp] runs before every
+     * iteration and isn't measured.
+     */
+    fun measure(
+        name: String,
+        operations: Int,
+        warmupIterations: Int = 2,
+        iterations: Int = 5,
+        setUp: () -> Unit = {},
+        block: Blackhole.() -> Unit
+    ) {
+        thread.submit {
+            val blackhole = Blackhole()
+            repeat(warmupIterations) {
+                setUp()
+                blackhole.block()
+            }
+
+            val times = LongArray(iterations)
+            var allocatedBytes = 0L
+            for (i in 0 until iterations) {
+                setUp()
+                val startBytes = threadAllocatedBytes()
+                val startNanos = System.nanoTime()
+                blackhole.block()
+                times[i] = System.nanoTime() - startNanos
+                allocatedBytes += threadAllocatedBytes() - startBytes
+                blackhole.publish()
+            }
+            times.sort()
+
+            val medianNanos = times[iterations / 2]
+            record(
+                name,
+                nanosPerOp = medianNanos.toDouble() / operations,
+                opsPerSecond = operations * 1e9 / medianNanos,
+                bytesPerOp = allocatedBytes.toDouble() / (iterations.toLong() * operations)
+            )
+        }.get()
+    }
+
+    /**
+     * Records a result measured by the benchmark itself.
+     */
+    fun record(name: String, nanosPerOp: Double, opsPerSecond: Double, bytesPerOp: Double = -1.0) {
+        val result = "{\"suite\": \"$suite\", \"benchmark\": \"$name\", " +
+                "\"nanosPerOp\": %.1f, \"opsPerSecond\": %.1f, \"bytesPerOp\": %.1f}".format(
+                    Locale.US, nanosPerOp, opsPerSecond, bytesPerOp)
+        println(result)
+        results += result
+    }
+
+    /**
+     * Writes all results recorded so far to <benchmark.outputDir>/<suite>.json.
+     */
+    fun write() {
+        thread.shutdown()
+        val outputDir = File(System.getProperty("benchmark.outputDir") ?: "build/benchmark-results")
+        outputDir.mkdirs()
+        File(outputDir, "$suite.json")
+            .writeText(results.joinToString(",\n", prefix = "[\n", postfix = "\n]\n"))
+    }
+
+    private fun threadAllocatedBytes(): Long {
+        val threadBean = ManagementFactory.getThreadMXBean()
+        return if (threadBean is com.sun.management.ThreadMXBean) {
+            threadBean.getThreadAllocatedBytes(Thread.currentThread().id)
+        } else {
+            0L
+        }
+    }
+}
+
+/**
+ * Sink for the results of a measured block. Everything consumed is folded into a checksum that
+ * is published after every iteration, so the JIT has to compute it and can't drop the work that
+ * produced it, while consuming costs no more than an add or a compare.
+ */
+class Blackhole internal constructor() {
+
+    private var checksum = 0L
+
+    // Never handed out, so no result is ever the same object; the JIT can't know that.
+    private val sentinel = Any()
+
+    fun consume(value: Any?) {
+        if (value === sentinel) checksum++
+    }
+
+    fun consume(value: Int) {
+        checksum += value
+    }
+
+    fun consume(value: Long) {
+        checksum += value
+    }
+
+    fun consume(value: Double) {
+        checksum += value.toRawBits()
+    }
+
+    fun consume(value: Boolean) {
+        if (value) checksum++
+    }
+
+    internal fun publish() {
+        published = checksum
+    }
+
+    private companion object {
+        @Volatile
+        var published = 0L
+    }
+}
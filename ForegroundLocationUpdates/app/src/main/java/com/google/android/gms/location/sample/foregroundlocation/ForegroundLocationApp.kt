@@ -22,7 +22,10 @@ import androidx.datastore.preferences.core.PreferenceDataStoreFactory
 import androidx.datastore.preferences.core.Preferences
 import androidx.datastore.preferences.preferencesDataStoreFile
 import com.google.android.gms.common.GoogleApiAvailability
+import com.google.android.gms.location.FusedLocationProviderClient
 import com.google.android.gms.location.LocationServices
+import com.google.android.gms.location.sample.foregroundlocation.data.trace.LocationTrace
+import com.google.android.gms.location.sample.foregroundlocation.data.trace.TraceLocationProviderClient
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -45,7 +48,15 @@ object AppModule {
     @Singleton
     fun provideFusedLocationProviderClient(
         application: Application
-    ) = LocationServices.getFusedLocationProviderClient(application)
+    ): FusedLocationProviderClient = if (BuildConfig.LOCATION_TRACE.isNotEmpty()) {
+        TraceLocationProviderClient(
+            application,
+            LocationTrace.fromAsset(application, BuildConfig.LOCATION_TRACE),
+            BuildConfig.LOCATION_TRACE_SPEED
+        )
+    } else {
+        LocationServices.getFusedLocationProviderClient(application)
+    }
 
     @Provides
     @Singleton
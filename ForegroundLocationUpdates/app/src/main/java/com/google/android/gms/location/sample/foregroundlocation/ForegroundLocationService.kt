@@ -17,30 +17,29 @@
 package com.google.android.gms.location.sample.foregroundlocation
 
 import android.Manifest.permission
-import android.app.Notification
-import android.app.NotificationChannel
-import android.app.NotificationManager
-import android.app.PendingIntent
 import android.content.ComponentName
 import android.content.Intent
 import android.content.ServiceConnection
-import android.location.Location
 import android.os.Binder
-import android.os.Build.VERSION
-import android.os.Build.VERSION_CODES
 import android.os.IBinder
-import androidx.core.app.NotificationCompat
+import android.os.SystemClock
+import android.util.Log
 import androidx.lifecycle.LifecycleService
 import androidx.lifecycle.lifecycleScope
 import com.google.android.gms.location.sample.foregroundlocation.ForegroundLocationService.LocalBinder
+import com.google.android.gms.location.sample.foregroundlocation.ServiceTraceRecorder.Event
 import com.google.android.gms.location.sample.foregroundlocation.data.LocationPreferences
 import com.google.android.gms.location.sample.foregroundlocation.data.LocationRepository
+import com.google.android.gms.location.sample.foregroundlocation.data.LocationSubscription
+import com.google.android.gms.location.sample.foregroundlocation.data.trip.TripRecorder
 import com.google.android.gms.location.sample.foregroundlocation.ui.hasPermission
 import dagger.hilt.android.AndroidEntryPoint
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.flow.collect
 import kotlinx.coroutines.flow.first
 import kotlinx.coroutines.launch
+import java.io.FileDescriptor
+import java.io.PrintWriter
 import javax.inject.Inject
 
 /**
@@ -64,16 +63,36 @@ class ForegroundLocationService : LifecycleService() {
     @Inject
     lateinit var locationPreferences: LocationPreferences
 
+    @Inject
+    lateinit var tripRecorder: TripRecorder
+
+    @Inject
+    lateinit var traceRecorder: ServiceTraceRecorder
+
     private val localBinder = LocalBinder()
+    private val notificationUpdater by lazy {
+        LocationNotificationUpdater(
+            this,
+            NOTIFICATION_ID,
+            NOTIFICATION_CHANNEL_ID,
+            ACTION_STOP_UPDATES
+        )
+    }
     private var bindCount = 0
 
     private var started = false
     private var isForeground = false
+    private var enteredForegroundMillis = 0L
+
+    // Feeds the trip recorder while a trip is being recorded.
+    private var recordingSubscription: LocationSubscription? = null
 
     private fun isBound() = bindCount > 0
 
     override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
         super.onStartCommand(intent, flags, startId)
+        // A null intent means the system restarted us after killing the process.
+        traceRecorder.record(Event.START_COMMAND, if (intent == null) 1L else 0L)
 
         // This action comes from our ongoing notification. The user requested to stop updates.
         if (intent?.action == ACTION_STOP_UPDATES) {
@@ -97,12 +116,23 @@ class ForegroundLocationService : LifecycleService() {
                         hasPermission(permission.ACCESS_COARSE_LOCATION)
                     ) {
                         locationRepository.startLocationUpdates()
+                        traceRecorder.record(Event.UPDATES_STARTED)
+                        // Resume the trip we were recording before the service was restarted.
+                        locationPreferences.activeTripId.first()?.let(::resumeRecording)
                     }
                 }
             }
+            lifecycleScope.launch {
+                locationRepository.lastLocation.collect { location ->
+                    if (location != null) traceRecorder.recordFix()
+                }
+            }
             // Update any foreground notification when we receive location updates.
             lifecycleScope.launch {
-                locationRepository.lastLocation.collect(::showNotification)
+                notificationUpdater.collectUpdates(
+                    locationRepository,
+                    NOTIFICATION_MIN_INTERVAL_MILLIS
+                ) { isForeground }
             }
         }
 
@@ -126,12 +156,14 @@ class ForegroundLocationService : LifecycleService() {
 
     private fun handleBind() {
         bindCount++
+        traceRecorder.record(Event.BIND)
         // Start ourself. This will let us manage our lifetime separately from bound clients.
         startService(Intent(this, this::class.java))
     }
 
     override fun onUnbind(intent: Intent?): Boolean {
         bindCount--
+        traceRecorder.record(Event.UNBIND)
         lifecycleScope.launch {
             // UI client can unbind because it went through a configuration change, in which case it
             // will be recreated and bind again shortly. Wait a few seconds, and if still not bound,
@@ -152,7 +184,10 @@ class ForegroundLocationService : LifecycleService() {
             locationRepository.isReceivingLocationUpdates.value -> enterForeground()
 
             // Nothing to do, so we can stop.
-            else -> stopSelf()
+            else -> {
+                traceRecorder.record(Event.STOP_SELF)
+                stopSelf()
+            }
         }
     }
 
@@ -160,90 +195,110 @@ class ForegroundLocationService : LifecycleService() {
         if (isForeground) {
             isForeground = false
             stopForeground(true)
+            notificationUpdater.onNotificationRemoved()
+            traceRecorder.record(
+                Event.EXIT_FOREGROUND,
+                SystemClock.elapsedRealtime() - enteredForegroundMillis
+            )
         }
     }
 
     private fun enterForeground() {
         if (!isForeground) {
             isForeground = true
+            enteredForegroundMillis = SystemClock.elapsedRealtime()
+            traceRecorder.record(Event.ENTER_FOREGROUND)
 
             // Show notification with the latest location.
-            showNotification(locationRepository.lastLocation.value)
-        }
-    }
-
-    private fun showNotification(location: Location?) {
-        if (!isForeground) {
-            return
-        }
-
-        createNotificationChannel()
-        startForeground(NOTIFICATION_ID, buildNotification(location))
-    }
-
-    private fun createNotificationChannel() {
-        if (VERSION.SDK_INT >= VERSION_CODES.O) {
-            val notificationChannel = NotificationChannel(
-                NOTIFICATION_CHANNEL_ID,
-                getString(R.string.notification_channel_name),
-                NotificationManager.IMPORTANCE_DEFAULT
+            val startNanos = System.nanoTime()
+            notificationUpdater.startForeground(
+                locationRepository.lastLocation.value,
+                locationRepository.tripStats.value,
+                locationRepository.stateVersion
             )
-            val manager = getSystemService(NOTIFICATION_SERVICE) as NotificationManager
-            manager.createNotificationChannel(notificationChannel)
+            traceRecorder.record(Event.START_FOREGROUND, (System.nanoTime() - startNanos) / 1000)
         }
     }
 
-    private fun buildNotification(location: Location?) : Notification {
-        // Tapping the notification opens the app.
-        val pendingIntent = PendingIntent.getActivity(
-            this,
-            0,
-            packageManager.getLaunchIntentForPackage(this.packageName),
-            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
-        )
-        // Include an action to stop location updates without going through the app UI.
-        val stopIntent = PendingIntent.getService(
-            this,
-            0,
-            Intent(this, this::class.java).setAction(ACTION_STOP_UPDATES),
-            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+    override fun onDestroy() {
+        // Keep the active trip, so it's resumed if we're restarted.
+        recordingSubscription?.close()
+        recordingSubscription = null
+        // Don't hold up the main thread for the last batch; the writer thread finishes it on its
+        // own, and the recorder outlives the service.
+        tripRecorder.flush()
+        Log.d(
+            TAG,
+            "Notifications posted: ${notificationUpdater.postedCount}, " +
+                "suppressed: ${notificationUpdater.suppressedCount}"
         )
-        val contentText = if (location != null) {
-            getString(R.string.location_lat_lng, location.latitude, location.longitude)
-        } else {
-            getString(R.string.waiting_for_location)
-        }
+        super.onDestroy()
+    }
 
-        return NotificationCompat.Builder(this, NOTIFICATION_CHANNEL_ID)
-            .setContentTitle(getString(R.string.notification_title))
-            .setContentText(contentText)
-            .setContentIntent(pendingIntent)
-            .setSmallIcon(R.drawable.ic_location)
-            .addAction(R.drawable.ic_stop, getString(R.string.stop), stopIntent)
-            .setOngoing(true)
-            .setCategory(NotificationCompat.CATEGORY_SERVICE)
-            .setPriority(NotificationCompat.PRIORITY_DEFAULT)
-            .setVisibility(NotificationCompat.VISIBILITY_PRIVATE)
-            .build()
+    // Run `adb shell dumpsys activity service ForegroundLocationService` to see these.
+    override fun dump(fd: FileDescriptor?, writer: PrintWriter, args: Array<out String>?) {
+        traceRecorder.dump(writer)
+        writer.println("Trip writes: ${tripRecorder.stats}")
+        writer.println(
+            "Notifications posted: ${notificationUpdater.postedCount}, " +
+                "suppressed: ${notificationUpdater.suppressedCount}"
+        )
+        writer.println("Location callbacks: ${locationRepository.callbackMetrics}")
     }
 
     // Methods for clients.
 
     fun startLocationUpdates() {
         locationRepository.startLocationUpdates()
+        traceRecorder.record(Event.UPDATES_STARTED)
     }
 
     fun stopLocationUpdates() {
+        stopRecording()
         locationRepository.stopLocationUpdates()
     }
 
+    /** Starts recording a new trip. Only has an effect while location updates are on. */
+    fun startRecording() {
+        if (recordingSubscription != null ||
+            !locationRepository.isReceivingLocationUpdates.value
+        ) {
+            return
+        }
+        val tripId = System.currentTimeMillis()
+        resumeRecording(tripId)
+        lifecycleScope.launch {
+            locationPreferences.setActiveTripId(tripId)
+        }
+    }
+
+    fun stopRecording() {
+        val subscription = recordingSubscription ?: return
+        subscription.close()
+        recordingSubscription = null
+        tripRecorder.stop()
+        lifecycleScope.launch {
+            locationPreferences.setActiveTripId(null)
+        }
+    }
+
+    private fun resumeRecording(tripId: Long) {
+        if (recordingSubscription != null) return
+        tripRecorder.start(tripId)
+        recordingSubscription =
+            locationRepository.subscribe(RECORDING_INTERVAL_MILLIS, listener = tripRecorder::append)
+    }
+
     /** Binder which provides clients access to the service. */
     internal inner class LocalBinder : Binder() {
         fun getService(): ForegroundLocationService = this@ForegroundLocationService
     }
 
     private companion object {
+        const val TAG = "ForegroundLocationService"
         const val UNBIND_DELAY_MILLIS = 2000.toLong() // 2 seconds
+        const val NOTIFICATION_MIN_INTERVAL_MILLIS = 5000.toLong() // 5 seconds
+        const val RECORDING_INTERVAL_MILLIS = 5000.toLong() // 5 seconds
         const val NOTIFICATION_ID = 1
         const val NOTIFICATION_CHANNEL_ID = "LocationUpdates"
         const val ACTION_STOP_UPDATES = BuildConfig.APPLICATION_ID + ".ACTION_STOP_UPDATES"
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation
+
+import android.app.NotificationChannel
+import android.app.NotificationManager
+import android.app.PendingIntent
+import android.app.Service
+import android.content.Intent
+import android.location.Location
+import android.os.Build.VERSION
+import android.os.Build.VERSION_CODES
+import androidx.core.app.NotificationCompat
+import androidx.core.app.NotificationManagerCompat
+import com.google.android.gms.location.sample.foregroundlocation.data.LocationRepository
+import com.google.android.gms.location.sample.foregroundlocation.data.trip.TripStats
+import com.google.android.gms.location.sample.foregroundlocation.ui.formatTripStats
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.combine
+
+/**
+ * Posts the ongoing notification for [ForegroundLocationService].
+ *
+ * The channel, the builder and its [PendingIntent]s are created once and reused for every update,
+ * and an update whose text matches what is already shown is skipped. Callers are expected to
+ * limit how often [update] is called; see [ForegroundLocationService]. Each update carries the
+ * [LocationRepository.stateVersion] it shows, so changes the caller never passed on are counted
+ * as suppressed too.
+ *
+ * Must be used from the main thread.
+ */
+internal class LocationNotificationUpdater(
+    private val service: Service,
+    private val notificationId: Int,
+    private val channelId: String,
+    stopAction: String
+) {
+
+    private val notificationManager = NotificationManagerCompat.from(service)
+
+    private val builder: NotificationCompat.Builder by lazy {
+        createNotificationChannel()
+
+        // Tapping the notification opens the app.
+        val pendingIntent = PendingIntent.getActivity(
+            service,
+            0,
+            service.packageManager.getLaunchIntentForPackage(service.packageName),
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+        // Include an action to stop location updates without going through the app UI.
+        val stopIntent = PendingIntent.getService(
+            service,
+            0,
+            Intent(service, service::class.java).setAction(stopAction),
+            PendingIntent.FLAG_UPDATE_CURRENT or PendingIntent.FLAG_IMMUTABLE
+        )
+
+        NotificationCompat.Builder(service, channelId)
+            .setContentTitle(service.getString(R.string.notification_title))
+            .setContentIntent(pendingIntent)
+            .setSmallIcon(R.drawable.ic_location)
+            .addAction(R.drawable.ic_stop, service.getString(R.string.stop), stopIntent)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .setCategory(NotificationCompat.CATEGORY_SERVICE)
+            .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+            .setVisibility(NotificationCompat.VISIBILITY_PRIVATE)
+    }
+
+    // Text of the notification currently shown, or null if none is shown.
+    private var shownText: String? = null
+
+    // Latest state version passed to startForeground or update.
+    private var seenVersion = 0L
+
+    /** Number of notifications handed to the system. */
+    var postedCount = 0L
+        private set
+
+    /**
+     * Number of changes that didn't get a notification of their own: those whose text matched
+     * what was shown, and those dropped while the caller was rate limiting or conflated by
+     * StateFlow before reaching [update].
+     */
+    var suppressedCount = 0L
+        private set
+
+    /**
+     * Promotes the service to the foreground, showing [location] and [tripStats] as of
+     * [version].
+     */
+    fun startForeground(location: Location?, tripStats: TripStats, version: Long) {
+        val text = formatText(location, tripStats)
+        service.startForeground(notificationId, build(location, text))
+        shownText = text
+        seenVersion = version
+        postedCount++
+    }
+
+    /**
+     * Updates the notification to show [location] and [tripStats] as of [version]. Does nothing
+     * if no notification is shown or the text wouldn't change. Returns true if a notification was
+     * posted.
+     */
+    fun update(location: Location?, tripStats: TripStats, version: Long): Boolean {
+        val previous = shownText ?: return false
+        // Every change between the last version seen and this one was never passed on.
+        // The version can run ahead of the values when a change lands while they're collected;
+        // the value for it then arrives with no new version and isn't counted again.
+        val changes = version - seenVersion
+        if (changes > 1) suppressedCount += changes - 1
+        if (changes > 0) seenVersion = version
+        val text = formatText(location, tripStats)
+        if (text == previous) {
+            if (changes > 0) suppressedCount++
+            return false
+        }
+        notificationManager.notify(notificationId, build(location, text))
+        shownText = text
+        postedCount++
+        return true
+    }
+
+    /**
+     * Keeps the notification up to date with [repository] until cancelled. lastLocation and
+     * tripStats are StateFlows, so updates that arrive while we wait are conflated into the most
+     * recent one, and the notification is refreshed at most once per [minIntervalMillis]. Nothing
+     * is posted while [isForeground] returns false.
+     *
+     * The main-thread time spent on each update is added to the repository's
+     * [LocationRepository.callbackMetrics].
+     */
+    suspend fun collectUpdates(
+        repository: LocationRepository,
+        minIntervalMillis: Long,
+        isForeground: () -> Boolean
+    ) {
+        combine(repository.lastLocation, repository.tripStats) { location, tripStats ->
+            Triple(location, tripStats, repository.stateVersion)
+        }.collect { (location, tripStats, version) ->
+            val startNanos = System.nanoTime()
+            val posted = isForeground() && update(location, tripStats, version)
+            repository.callbackMetrics.recordMainThreadWork(System.nanoTime() - startNanos)
+            if (posted) {
+                delay(minIntervalMillis)
+            }
+        }
+    }
+
+    /** Call when the service leaves the foreground and its notification is removed. */
+    fun onNotificationRemoved() {
+        shownText = null
+    }
+
+    // The collapsed notification shows the location; expanding it adds the trip stats.
+    private fun build(location: Location?, text: String) = builder
+        .setContentText(formatLocation(location))
+        .setStyle(NotificationCompat.BigTextStyle().bigText(text))
+        .build()
+
+    private fun formatText(location: Location?, tripStats: TripStats): String =
+        formatLocation(location) + "\n" + service.formatTripStats(tripStats)
+
+    private fun formatLocation(location: Location?): String = if (location != null) {
+        service.getString(R.string.location_lat_lng, location.latitude, location.longitude)
+    } else {
+        service.getString(R.string.waiting_for_location)
+    }
+
+    private fun createNotificationChannel() {
+        if (VERSION.SDK_INT >= VERSION_CODES.O) {
+            val notificationChannel = NotificationChannel(
+                channelId,
+                service.getString(R.string.notification_channel_name),
+                NotificationManager.IMPORTANCE_DEFAULT
+            )
+            val manager =
+                service.getSystemService(Service.NOTIFICATION_SERVICE) as NotificationManager
+            manager.createNotificationChannel(notificationChannel)
+        }
+    }
+}
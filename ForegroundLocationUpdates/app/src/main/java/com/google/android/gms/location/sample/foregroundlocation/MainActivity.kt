@@ -92,6 +92,8 @@ fun MainScreen(
     val uiState by viewModel.playServicesAvailableState.collectAsState()
     val isLocationOn by viewModel.isReceivingLocationUpdates.collectAsState()
     val lastLocation by viewModel.lastLocation.collectAsState()
+    val isRecordingTrip by viewModel.isRecordingTrip.collectAsState()
+    val tripStats by viewModel.tripStats.collectAsState()
 
     when (uiState) {
         Initializing -> InitializingScreen()
@@ -103,6 +105,9 @@ fun MainScreen(
                 onButtonClick = locationPermissionState::requestPermissions,
                 isLocationOn = isLocationOn,
                 location = lastLocation,
+                isRecordingTrip = isRecordingTrip,
+                onRecordClick = viewModel::toggleTripRecording,
+                tripStats = tripStats,
             )
         }
     }
@@ -28,6 +28,7 @@ import com.google.android.gms.location.sample.foregroundlocation.data.PlayServic
 import dagger.hilt.android.lifecycle.HiltViewModel
 import kotlinx.coroutines.flow.SharingStarted
 import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
 import javax.inject.Inject
@@ -52,6 +53,11 @@ class MainViewModel @Inject constructor(
 
     val isReceivingLocationUpdates = locationRepository.isReceivingLocationUpdates
     val lastLocation = locationRepository.lastLocation
+    val tripStats = locationRepository.tripStats
+
+    val isRecordingTrip = locationPreferences.activeTripId
+        .map { it != null }
+        .stateIn(viewModelScope, SharingStarted.Eagerly, false)
 
     fun toggleLocationUpdates() {
         if (isReceivingLocationUpdates.value) {
@@ -61,6 +67,15 @@ class MainViewModel @Inject constructor(
         }
     }
 
+    fun toggleTripRecording() {
+        val service = serviceConnection.service ?: return
+        if (isRecordingTrip.value) {
+            service.stopRecording()
+        } else {
+            service.startRecording()
+        }
+    }
+
     private fun startLocationUpdates() {
         serviceConnection.service?.startLocationUpdates()
         // Store that the user turned on location updates.
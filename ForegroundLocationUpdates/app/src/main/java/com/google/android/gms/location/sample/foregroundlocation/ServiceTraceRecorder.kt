@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation
+
+import android.os.SystemClock
+import java.io.PrintWriter
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * In-process trace of [ForegroundLocationService] lifecycle events.
+ *
+ * The most recent [CAPACITY] events are kept in a ring buffer of primitive arrays, so recording
+ * is cheap enough to leave on. Durations are also added to per-kind [Histogram]s, which keep
+ * their totals after events fall out of the buffer. [dump] prints both; it's wired to the
+ * service's dump(), so the trace can be read with
+ * `adb shell dumpsys activity service ForegroundLocationService`.
+ *
+ * All methods are thread-safe.
+ */
+@Singleton
+class ServiceTraceRecorder @Inject constructor() {
+
+    /** Kinds of events. [value] says what the number recorded with an event means, if anything. */
+    enum class Event(val value: String?) {
+        START_COMMAND("restarted"),
+        BIND(null),
+        UNBIND(null),
+        ENTER_FOREGROUND(null),
+        EXIT_FOREGROUND("foreground ms"),
+        START_FOREGROUND("latency us"),
+        STOP_SELF(null),
+        UPDATES_STARTED(null),
+        FIRST_FIX("latency ms")
+    }
+
+    private val times = LongArray(CAPACITY)
+    private val events = IntArray(CAPACITY)
+    private val values = LongArray(CAPACITY)
+    private var recordedCount = 0L
+
+    private val counts = LongArray(Event.values().size)
+    private val histograms = mapOf(
+        Event.EXIT_FOREGROUND to Histogram(),
+        Event.START_FOREGROUND to Histogram(),
+        Event.FIRST_FIX to Histogram()
+    )
+
+    // Time of the last UPDATES_STARTED event with no FIRST_FIX yet, or -1.
+    private var updatesStartedMillis = -1L
+
+    /** Records [event] at the current time, with an optional [value]. */
+    @Synchronized
+    fun record(event: Event, value: Long = 0L) {
+        val now = SystemClock.elapsedRealtime()
+        val index = (recordedCount % CAPACITY).toInt()
+        times[index] = now
+        events[index] = event.ordinal
+        values[index] = value
+        recordedCount++
+        counts[event.ordinal]++
+        histograms[event]?.add(value)
+
+        if (event == Event.UPDATES_STARTED) updatesStartedMillis = now
+    }
+
+    /** Records the first fix after location updates were started, if it hasn't been yet. */
+    @Synchronized
+    fun recordFix() {
+        if (updatesStartedMillis < 0) return
+        val latency = SystemClock.elapsedRealtime() - updatesStartedMillis
+        updatesStartedMillis = -1L
+        record(Event.FIRST_FIX, latency)
+    }
+
+    /** Number of times [event] has been recorded. */
+    @Synchronized
+    fun count(event: Event): Long = counts[event.ordinal]
+
+    /** Prints the event counts, histograms and buffered events, oldest first. */
+    @Synchronized
+    fun dump(writer: PrintWriter) {
+        writer.println("Service trace: $recordedCount events")
+        Event.values().forEach { event ->
+            writer.println("  ${event.name}: ${counts[event.ordinal]}")
+        }
+        histograms.forEach { (event, histogram) ->
+            writer.println("  ${event.name} ${event.value}: $histogram")
+        }
+
+        val now = SystemClock.elapsedRealtime()
+        val first = (recordedCount - CAPACITY).coerceAtLeast(0L)
+        writer.println("  Last ${recordedCount - first} events:")
+        for (sequence in first until recordedCount) {
+            val index = (sequence % CAPACITY).toInt()
+            val event = Event.values()[events[index]]
+            val age = "%.3fs ago".format((now - times[index]) / 1000.0)
+            if (event.value != null) {
+                writer.println("    $age ${event.name} ${event.value}=${values[index]}")
+            } else {
+                writer.println("    $age ${event.name}")
+            }
+        }
+    }
+
+    /**
+     * Histogram with power-of-two buckets: bucket 0 counts zeros, and bucket n counts values
+     * from 2^(n-1) up to 2^n - 1.
+     */
+    class Histogram {
+        private val buckets = LongArray(64)
+        private var count = 0L
+        private var sum = 0L
+        private var max = 0L
+
+        fun add(value: Long) {
+            val clamped = value.coerceAtLeast(0L)
+            buckets[64 - java.lang.Long.numberOfLeadingZeros(clamped)]++
+            count++
+            sum += clamped
+            if (clamped > max) max = clamped
+        }
+
+        /** Upper bound of the bucket holding the given percentile, or 0 if empty. */
+        fun percentile(percent: Double): Long {
+            if (count == 0L) return 0L
+            val target = (count * percent / 100.0).toLong().coerceAtLeast(1L)
+            var seen = 0L
+            buckets.forEachIndexed { bucket, bucketCount ->
+                seen += bucketCount
+                if (seen >= target) return if (bucket == 0) 0L else (1L shl bucket) - 1
+            }
+            return max
+        }
+
+        override fun toString() =
+            if (count == 0L) {
+                "no samples"
+            } else {
+                "count=$count, mean=${sum / count}, p50<=${percentile(50.0)}, " +
+                    "p90<=${percentile(90.0)}, p99<=${percentile(99.0)}, max=$max"
+            }
+    }
+
+    private companion object {
+        const val CAPACITY = 256
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data
+
+import android.os.Looper
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Measures how location callbacks are delivered: how long each one takes to handle, how much of
+ * that time is spent on the main thread, and how long fixes wait between being computed and
+ * reaching the callback. All methods are thread-safe.
+ *
+ * Callbacks delivered off the main thread still cause main-thread work, such as collecting
+ * [LocationRepository.lastLocation] and posting the notification. Code doing that work reports
+ * it with [recordMainThreadWork], and it's included in [mainThreadNanos].
+ */
+class LocationCallbackMetrics {
+
+    private val callbacks = AtomicLong()
+    private val mainThreadCallbacks = AtomicLong()
+    private val handlingNanos = AtomicLong()
+    private val mainThreadHandlingNanos = AtomicLong()
+    private val mainThreadWorkNanos = AtomicLong()
+    private val totalLatencyNanos = AtomicLong()
+    private val maxLatency = AtomicLong()
+
+    /** Number of callbacks handled. */
+    val callbackCount: Long
+        get() = callbacks.get()
+
+    /** Number of callbacks handled on the main thread. */
+    val mainThreadCallbackCount: Long
+        get() = mainThreadCallbacks.get()
+
+    /** Total time spent on the main thread, in callbacks and in the work that follows them. */
+    val mainThreadNanos: Long
+        get() = mainThreadHandlingNanos.get() + mainThreadWorkNanos.get()
+
+    /** Time spent handling callbacks on the main thread. */
+    val mainThreadCallbackNanos: Long
+        get() = mainThreadHandlingNanos.get()
+
+    /** Time reported by [recordMainThreadWork]. */
+    val mainThreadFollowUpNanos: Long
+        get() = mainThreadWorkNanos.get()
+
+    /** Average time spent handling a callback, on any thread. */
+    val averageHandlingNanos: Long
+        get() = average(handlingNanos)
+
+    /** Average time between a fix being computed and its callback starting. */
+    val averageLatencyNanos: Long
+        get() = average(totalLatencyNanos)
+
+    /** Longest time between a fix being computed and its callback starting. */
+    val maxLatencyNanos: Long
+        get() = maxLatency.get()
+
+    /**
+     * Records a callback that took [durationNanos] to handle, for a fix that had been waiting
+     * [latencyNanos] when the callback started.
+     */
+    fun record(latencyNanos: Long, durationNanos: Long) {
+        callbacks.incrementAndGet()
+        handlingNanos.addAndGet(durationNanos)
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mainThreadCallbacks.incrementAndGet()
+            mainThreadHandlingNanos.addAndGet(durationNanos)
+        }
+
+        val latency = latencyNanos.coerceAtLeast(0L)
+        totalLatencyNanos.addAndGet(latency)
+        var max = maxLatency.get()
+        while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+            max = maxLatency.get()
+        }
+    }
+
+    /**
+     * Records [durationNanos] spent on the main thread reacting to fixes outside the callback,
+     * e.g. collecting the flows they were published to.
+     */
+    fun recordMainThreadWork(durationNanos: Long) {
+        mainThreadWorkNanos.addAndGet(durationNanos)
+    }
+
+    private fun average(total: AtomicLong): Long {
+        val count = callbacks.get()
+        return if (count == 0L) 0L else total.get() / count
+    }
+
+    override fun toString() =
+        "callbacks=$callbackCount, mainThread=$mainThreadCallbackCount, " +
+            "mainThreadMillis=${mainThreadNanos / 1_000_000}, " +
+            "mainThreadFollowUpMillis=${mainThreadFollowUpNanos / 1_000_000}, " +
+            "avgHandlingMicros=${averageHandlingNanos / 1000}, " +
+            "avgLatencyMillis=${averageLatencyNanos / 1_000_000}, " +
+            "maxLatencyMillis=${maxLatencyNanos / 1_000_000}"
+}
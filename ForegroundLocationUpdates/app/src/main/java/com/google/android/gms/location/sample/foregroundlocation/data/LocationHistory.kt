@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data
+
+import android.location.Location
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.map
+
+/**
+ * The most recent [capacity] location fixes, kept in fixed-size primitive arrays so adding a fix
+ * never allocates and old fixes don't keep [Location] objects alive.
+ *
+ * Every change is announced on [snapshots]. A [Snapshot] is only a marker of which fixes were in
+ * the history at that moment; its [Snapshot.cursor] reads them straight from the arrays without
+ * copying. Fixes that have been overwritten by the time the cursor reaches them are skipped.
+ * Snapshots are only created when they're read, so adding fixes doesn't allocate even while
+ * [snapshots] is collected.
+ *
+ * All methods are thread-safe.
+ */
+class LocationHistory(val capacity: Int = DEFAULT_CAPACITY) {
+
+    init {
+        require(capacity > 0) { "capacity must be positive, was $capacity" }
+    }
+
+    private val lock = Any()
+    private val latitudes = DoubleArray(capacity)
+    private val longitudes = DoubleArray(capacity)
+    private val altitudes = DoubleArray(capacity)
+    private val times = LongArray(capacity)
+    private val accuracies = FloatArray(capacity)
+    private val speeds = FloatArray(capacity)
+    private val bearings = FloatArray(capacity)
+
+    // Number of fixes ever added. The fix with sequence number n is stored at n % capacity.
+    private var addedCount = 0L
+
+    // Signals that fixes were added. Unit is a singleton, so emitting doesn't allocate.
+    private val changes = MutableSharedFlow<Unit>(
+        replay = 1,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+
+    /**
+     * Emits a [Snapshot] of the latest fixes after fixes are added, and to new collectors once
+     * any have been added. Changes made while a collector is busy are conflated.
+     */
+    val snapshots: Flow<Snapshot> = changes.map { snapshot() }
+
+    /** Number of fixes currently held. */
+    val size: Int
+        get() = synchronized(lock) { addedCount.coerceAtMost(capacity.toLong()).toInt() }
+
+    /** Adds [locations] in order, overwriting the oldest fixes once the history is full. */
+    fun addAll(locations: List<Location>) {
+        if (locations.isEmpty()) return
+        synchronized(lock) {
+            for (location in locations) {
+                val index = (addedCount % capacity).toInt()
+                latitudes[index] = location.latitude
+                longitudes[index] = location.longitude
+                altitudes[index] = location.altitude
+                times[index] = location.time
+                accuracies[index] = location.accuracy
+                speeds[index] = location.speed
+                bearings[index] = location.bearing
+                addedCount++
+            }
+        }
+        changes.tryEmit(Unit)
+    }
+
+    /** Returns a [Snapshot] of the fixes currently held. */
+    fun snapshot(): Snapshot = synchronized(lock) { Snapshot(addedCount) }
+
+    /**
+     * The fixes held by the history when it was taken, identified by the sequence number just
+     * past the newest one.
+     */
+    inner class Snapshot internal constructor(private val endCount: Long) {
+
+        /** Number of fixes in this snapshot, some of which may have been overwritten since. */
+        val size: Int
+            get() = endCount.coerceAtMost(capacity.toLong()).toInt()
+
+        /** Returns a cursor over the fixes in this snapshot, oldest first. */
+        fun cursor() = Cursor(endCount - size, endCount)
+    }
+
+    /**
+     * Reads fixes directly from the history, oldest first. Call [moveToNext] before reading the
+     * first fix; the properties then describe the current fix. A cursor isn't thread-safe, but
+     * reading through it is safe while other threads add fixes.
+     */
+    inner class Cursor internal constructor(private var next: Long, private val end: Long) {
+
+        var latitude = 0.0
+            private set
+        var longitude = 0.0
+            private set
+        var altitude = 0.0
+            private set
+        var time = 0L
+            private set
+        var accuracy = 0f
+            private set
+        var speed = 0f
+            private set
+        var bearing = 0f
+            private set
+
+        /** Moves to the next fix that is still held, and returns false when there are none. */
+        fun moveToNext(): Boolean {
+            synchronized(lock) {
+                // Skip fixes that have been overwritten since the snapshot was taken.
+                next = next.coerceAtLeast(addedCount - capacity)
+                if (next >= end) return false
+                val index = (next % capacity).toInt()
+                latitude = latitudes[index]
+                longitude = longitudes[index]
+                altitude = altitudes[index]
+                time = times[index]
+                accuracy = accuracies[index]
+                speed = speeds[index]
+                bearing = bearings[index]
+                next++
+                return true
+            }
+        }
+    }
+
+    private companion object {
+        // About 10 minutes of fixes at 1 Hz.
+        const val DEFAULT_CAPACITY = 600
+    }
+}
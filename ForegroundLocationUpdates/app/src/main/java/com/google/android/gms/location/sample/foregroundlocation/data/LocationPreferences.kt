@@ -20,6 +20,7 @@ import androidx.datastore.core.DataStore
 import androidx.datastore.preferences.core.Preferences
 import androidx.datastore.preferences.core.booleanPreferencesKey
 import androidx.datastore.preferences.core.edit
+import androidx.datastore.preferences.core.longPreferencesKey
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.flow.map
 import kotlinx.coroutines.withContext
@@ -41,7 +42,23 @@ class LocationPreferences @Inject constructor(
         }
     }
 
+    /** ID of the trip being recorded, or null if no trip is being recorded. */
+    val activeTripId = dataStore.data.map {
+        it[activeTripIdKey]
+    }
+
+    suspend fun setActiveTripId(tripId: Long?) = withContext(Dispatchers.IO) {
+        dataStore.edit {
+            if (tripId != null) {
+                it[activeTripIdKey] = tripId
+            } else {
+                it.remove(activeTripIdKey)
+            }
+        }
+    }
+
     private companion object {
         val locationOnKey = booleanPreferencesKey("is_location_on")
+        val activeTripIdKey = longPreferencesKey("active_trip_id")
     }
 }
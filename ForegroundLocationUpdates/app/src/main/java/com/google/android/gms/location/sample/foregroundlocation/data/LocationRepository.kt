@@ -18,13 +18,21 @@ package com.google.android.gms.location.sample.foregroundlocation.data
 
 import android.annotation.SuppressLint
 import android.location.Location
+import android.os.Build.VERSION
+import android.os.Build.VERSION_CODES
+import android.os.HandlerThread
 import android.os.Looper
+import android.os.SystemClock
+import android.util.Log
 import com.google.android.gms.location.FusedLocationProviderClient
 import com.google.android.gms.location.LocationCallback
 import com.google.android.gms.location.LocationRequest
 import com.google.android.gms.location.LocationResult
+import com.google.android.gms.location.sample.foregroundlocation.data.trip.TripStats
+import com.google.android.gms.location.sample.foregroundlocation.data.trip.TripStatsAggregator
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import java.util.concurrent.CopyOnWriteArrayList
 import javax.inject.Inject
 import javax.inject.Singleton
 
@@ -34,40 +42,233 @@ class LocationRepository @Inject constructor(
 ) {
     private val callback = Callback()
 
+    // Location callbacks run here unless deliverOnMainThread is set. Created on first use and kept
+    // for the lifetime of the app, like this repository.
+    private val callbackThread by lazy {
+        HandlerThread("LocationCallbacks").apply { start() }
+    }
+
+    // Guards the subscriptions and the request made for them, and publishing to the flows, which
+    // happens on both the callback thread and the main thread.
+    private val lock = Any()
+
+    // Read on the callback thread without holding the lock.
+    private val subscriptions = CopyOnWriteArrayList<LocationSubscription>()
+
+    // The merged request currently registered with the fused location provider, if any.
+    private var activeIntervalMillis = 0L
+    private var activePriority = 0
+    private var activeLooper: Looper? = null
+
+    // Subscription backing startLocationUpdates(), which drives lastLocation.
+    private var updatesSubscription: LocationSubscription? = null
+
+    /**
+     * If true, location callbacks run on the main thread, where they compete with UI frames.
+     * Otherwise they run on a dedicated background thread. Takes effect the next time the merged
+     * request changes.
+     */
+    @Volatile
+    var deliverOnMainThread = false
+
+    /** Timing of location callbacks, including the time they took on the main thread. */
+    val callbackMetrics = LocationCallbackMetrics()
+
+    /** Looper that location callbacks run on when [deliverOnMainThread] is false. */
+    internal val callbackLooper: Looper
+        get() = callbackThread.looper
+
     private val _isReceivingUpdates = MutableStateFlow(false)
     val isReceivingLocationUpdates = _isReceivingUpdates.asStateFlow()
 
     private val _lastLocation = MutableStateFlow<Location?>(null)
     val lastLocation = _lastLocation.asStateFlow()
 
-    @SuppressLint("MissingPermission") // Only called when holding location permission.
+    /** Recent fixes. Unlike [lastLocation], the history is kept when updates stop. */
+    val locationHistory = LocationHistory()
+
+    // Only touched with the lock held.
+    private val tripStatsAggregator = TripStatsAggregator()
+
+    private val _tripStats = MutableStateFlow(TripStats())
+
+    /** Distance, speed and elevation since location updates were last started. */
+    val tripStats = _tripStats.asStateFlow()
+
+    /**
+     * Number of times [lastLocation] or [tripStats] has changed. StateFlow collectors only see the
+     * latest value, so comparing this with the number of values collected tells how many changes
+     * were conflated.
+     */
+    @Volatile
+    var stateVersion = 0L
+        private set
+
+    /**
+     * Registers a client that wants fixes about once per [intervalMillis] with the given
+     * [LocationRequest] priority. All clients share a single request to the fused location
+     * provider, made at the shortest interval and most accurate priority any of them needs, and
+     * each client's [listener] is called at its own interval. [listener] runs on the location
+     * callback thread.
+     *
+     * Call [LocationSubscription.close] when the client no longer needs updates.
+     *
+     * @throws SecurityException if the app doesn't hold location permission. The client isn't
+     * registered in that case.
+     */
+    fun subscribe(
+        intervalMillis: Long,
+        priority: Int = LocationRequest.PRIORITY_HIGH_ACCURACY,
+        listener: (Location) -> Unit
+    ): LocationSubscription {
+        require(intervalMillis > 0) { "intervalMillis must be positive, was $intervalMillis" }
+        val subscription = LocationSubscription(this, intervalMillis, priority, listener)
+        synchronized(lock) {
+            // Only registered once the provider has accepted the request it needs.
+            updateRequest(subscriptions + subscription)
+            subscriptions += subscription
+        }
+        return subscription
+    }
+
+    internal fun unsubscribe(subscription: LocationSubscription) {
+        synchronized(lock) {
+            if (subscriptions.remove(subscription)) {
+                updateRequest(subscriptions)
+            }
+        }
+    }
+
+    /**
+     * Starts the updates that drive [lastLocation] and [tripStats].
+     *
+     * @throws SecurityException if the app doesn't hold location permission. Updates stay off in
+     * that case.
+     */
     fun startLocationUpdates() {
-        val request = LocationRequest.create().apply {
-            priority = LocationRequest.PRIORITY_HIGH_ACCURACY
-            interval = 10_000 // 10 seconds
+        synchronized(lock) {
+            if (updatesSubscription != null) return
+            // The lock keeps the listener from running until the state below is committed.
+            val subscription = subscribe(UPDATES_INTERVAL_MILLIS) { location ->
+                synchronized(lock) {
+                    if (_isReceivingUpdates.value) {
+                        setLastLocation(location)
+                    }
+                }
+            }
+            updatesSubscription = subscription
+            _isReceivingUpdates.value = true
+            tripStatsAggregator.reset()
+            setTripStats(TripStats())
         }
-        // Note: For this sample it's fine to use the main looper, so our callback will run on the
-        // main thread. If your callback will perform any intensive operations (writing to disk,
-        // making a network request, etc.), either change to a background thread from the callback,
-        // or create a HandlerThread and pass its Looper here instead.
-        // See https://developer.android.com/reference/android/os/HandlerThread.
-        fusedLocationProviderClient.requestLocationUpdates(
-            request,
-            callback,
-            Looper.getMainLooper()
-        )
-        _isReceivingUpdates.value = true
     }
 
     fun stopLocationUpdates() {
-        fusedLocationProviderClient.removeLocationUpdates(callback)
-        _isReceivingUpdates.value = false
-        _lastLocation.value = null
+        // A callback may already be running on the callback thread; the lock makes sure it can't
+        // publish a location after this point.
+        synchronized(lock) {
+            updatesSubscription?.close()
+            updatesSubscription = null
+            _isReceivingUpdates.value = false
+            setLastLocation(null)
+        }
+        Log.d(TAG, "Location callbacks: $callbackMetrics")
+    }
+
+    // Makes the request to the fused location provider match [subscriptions], and only records it
+    // as active once the provider has accepted it. Must be called with the lock held.
+    @SuppressLint("MissingPermission") // Callers pass on the SecurityException without permission.
+    private fun updateRequest(subscriptions: List<LocationSubscription>) {
+        if (subscriptions.isEmpty()) {
+            if (activeLooper != null) {
+                fusedLocationProviderClient.removeLocationUpdates(callback)
+                activeLooper = null
+            }
+            return
+        }
+
+        // Lower priority constants ask for more accuracy.
+        val intervalMillis = subscriptions.minOf { it.intervalMillis }
+        val priority = subscriptions.minOf { it.priority }
+        // Writing to the StateFlows is thread-safe, so the callback doesn't need the main thread.
+        // Running it on its own HandlerThread keeps fix handling from delaying UI frames.
+        // See https://developer.android.com/reference/android/os/HandlerThread.
+        val looper = if (deliverOnMainThread) Looper.getMainLooper() else callbackLooper
+        if (intervalMillis == activeIntervalMillis && priority == activePriority &&
+            looper == activeLooper
+        ) {
+            return
+        }
+
+        val request = LocationRequest.create().apply {
+            this.priority = priority
+            interval = intervalMillis
+        }
+        // Requesting again with the same callback replaces the previous request.
+        fusedLocationProviderClient.requestLocationUpdates(request, callback, looper)
+        activeIntervalMillis = intervalMillis
+        activePriority = priority
+        activeLooper = looper
     }
 
     private inner class Callback : LocationCallback() {
         override fun onLocationResult(result: LocationResult) {
-            _lastLocation.value = result.lastLocation
+            val startNanos = System.nanoTime()
+            val location = result.lastLocation
+            val latencyNanos = SystemClock.elapsedRealtimeNanos() - location.elapsedRealtimeNanos
+            locationHistory.addAll(result.locations)
+            updateTripStats(result.locations)
+            for (subscription in subscriptions) {
+                for (fix in result.locations) {
+                    subscription.offer(fix)
+                }
+            }
+            callbackMetrics.record(latencyNanos, System.nanoTime() - startNanos)
+        }
+    }
+
+    // Stats are kept from every fix, not just those delivered at the updates interval, so they
+    // stay accurate when other subscriptions ask for more frequent fixes.
+    private fun updateTripStats(locations: List<Location>) {
+        synchronized(lock) {
+            if (!_isReceivingUpdates.value) return
+            for (location in locations) {
+                tripStatsAggregator.add(
+                    location.latitude,
+                    location.longitude,
+                    if (location.hasAltitude()) location.altitude else Double.NaN,
+                    if (location.hasSpeed()) location.speed else Float.NaN,
+                    location.time,
+                    if (location.hasAccuracy()) location.accuracy else Float.NaN,
+                    if (VERSION.SDK_INT >= VERSION_CODES.O && location.hasVerticalAccuracy()) {
+                        location.verticalAccuracyMeters
+                    } else {
+                        Float.NaN
+                    }
+                )
+            }
+            setTripStats(tripStatsAggregator.snapshot())
+        }
+    }
+
+    // These publish to the flows and count the change. Must be called with the lock held.
+
+    private fun setLastLocation(location: Location?) {
+        if (location != _lastLocation.value) {
+            _lastLocation.value = location
+            stateVersion++
         }
     }
+
+    private fun setTripStats(tripStats: TripStats) {
+        if (tripStats != _tripStats.value) {
+            _tripStats.value = tripStats
+            stateVersion++
+        }
+    }
+
+    private companion object {
+        const val TAG = "LocationRepository"
+        const val UPDATES_INTERVAL_MILLIS = 10_000L // 10 seconds
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data
+
+import android.location.Location
+import java.io.Closeable
+
+/**
+ * A client's registration for location updates from [LocationRepository.subscribe]. The client
+ * receives fixes at most about once per [intervalMillis], with at least the accuracy of
+ * [priority], until it calls [close].
+ */
+class LocationSubscription internal constructor(
+    private val repository: LocationRepository,
+    val intervalMillis: Long,
+    val priority: Int,
+    private val listener: (Location) -> Unit
+) : Closeable {
+
+    // Only touched on the thread location callbacks run on.
+    private var lastDeliveredTime = Long.MIN_VALUE
+
+    /** Stops updates for this client. Updates stop altogether once no subscriptions remain. */
+    override fun close() {
+        repository.unsubscribe(this)
+    }
+
+    /**
+     * Passes [location] on to the listener unless the last fix was delivered less than
+     * [intervalMillis] ago. Fixes may arrive slightly early, so a tenth of the interval is
+     * allowed as slack.
+     */
+    internal fun offer(location: Location) {
+        val last = lastDeliveredTime
+        if (last != Long.MIN_VALUE && location.time >= last &&
+            location.time - last < intervalMillis - intervalMillis / 10
+        ) {
+            return
+        }
+        lastDeliveredTime = location.time
+        listener(location)
+    }
+}
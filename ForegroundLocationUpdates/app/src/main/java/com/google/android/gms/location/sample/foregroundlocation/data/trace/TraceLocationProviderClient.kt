@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data.trace
+
+import android.annotation.SuppressLint
+import android.content.Context
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import com.google.android.gms.location.FusedLocationProviderClient
+import com.google.android.gms.location.LocationCallback
+import com.google.android.gms.location.LocationRequest
+import com.google.android.gms.location.LocationResult
+import com.google.android.gms.tasks.Task
+import com.google.android.gms.tasks.Tasks
+
+/**
+ * A [FusedLocationProviderClient] that replays a [LocationTrace] instead of using the device's
+ * location. Use it to drive the app with a known route, or to find out how many fixes per second
+ * the rest of the pipeline can handle.
+ *
+ * Fixes are delivered one per [LocationResult], with the spacing recorded in the trace divided by
+ * [speed]; a speed of 0 delivers them as fast as the callback's [Looper] can process them. A fix
+ * recorded t ms into the trace is stamped with the time playback started plus t / [speed] (t for
+ * a speed of 0), in both wall clock and elapsed realtime, so code downstream sees live fixes with
+ * their recorded spacing. Unless [loop] is false, each loop of the trace starts again from the
+ * current time.
+ *
+ * Only the calls used by this sample are replayed; everything else goes to the real client.
+ */
+class TraceLocationProviderClient(
+    context: Context,
+    private val trace: LocationTrace,
+    private val speed: Float = 1f,
+    private val loop: Boolean = true
+) : FusedLocationProviderClient(context) {
+
+    private val playbacks = HashMap<LocationCallback, Playback>()
+
+    @SuppressLint("MissingPermission")
+    override fun requestLocationUpdates(
+        request: LocationRequest,
+        callback: LocationCallback,
+        looper: Looper?
+    ): Task<Void> {
+        synchronized(playbacks) {
+            playbacks.remove(callback)?.stop()
+            val playback = Playback(callback, Handler(looper ?: Looper.getMainLooper()))
+            playbacks[callback] = playback
+            playback.start()
+        }
+        return Tasks.forResult(null)
+    }
+
+    override fun removeLocationUpdates(callback: LocationCallback): Task<Void> {
+        synchronized(playbacks) {
+            playbacks.remove(callback)?.stop()
+        }
+        return Tasks.forResult(null)
+    }
+
+    private inner class Playback(
+        private val callback: LocationCallback,
+        private val handler: Handler
+    ) : Runnable {
+
+        private val timeScale = if (speed > 0f) speed else 1f
+
+        private var index = 0
+        private var stopped = false
+
+        // Wall clock and elapsed realtime at the start of the current loop of the trace.
+        private var loopStartMillis = 0L
+        private var loopStartElapsedNanos = 0L
+
+        // Scaled offset of the last delivered fix from the start of the loop.
+        private var deliveredOffsetMillis = 0L
+
+        fun start() {
+            startLoop(System.currentTimeMillis(), SystemClock.elapsedRealtimeNanos())
+            scheduleNextFix()
+        }
+
+        fun stop() {
+            stopped = true
+            handler.removeCallbacks(this)
+        }
+
+        private fun startLoop(timeMillis: Long, elapsedNanos: Long) {
+            loopStartMillis = timeMillis
+            loopStartElapsedNanos = elapsedNanos
+            deliveredOffsetMillis = 0L
+            index = 0
+        }
+
+        private fun scaledOffsetOf(index: Int): Long = (trace.offsetOf(index) / timeScale).toLong()
+
+        // Runs again when the next fix is due.
+        private fun scheduleNextFix() {
+            if (speed > 0f) {
+                handler.postDelayed(
+                    this,
+                    (scaledOffsetOf(index) - deliveredOffsetMillis).coerceAtLeast(0L)
+                )
+            } else {
+                handler.post(this)
+            }
+        }
+
+        override fun run() {
+            if (stopped) return
+
+            deliveredOffsetMillis = scaledOffsetOf(index)
+            val location = trace.toLocation(
+                index++,
+                loopStartMillis + deliveredOffsetMillis,
+                loopStartElapsedNanos + deliveredOffsetMillis * 1_000_000L
+            )
+            callback.onLocationResult(LocationResult.create(listOf(location)))
+
+            if (index >= trace.size) {
+                if (!loop) return
+                // Stamps run ahead of the clock when replaying as fast as possible, so the next
+                // loop never starts before the last fix of this one.
+                startLoop(
+                    maxOf(System.currentTimeMillis(), loopStartMillis + deliveredOffsetMillis + 1),
+                    maxOf(
+                        SystemClock.elapsedRealtimeNanos(),
+                        loopStartElapsedNanos + (deliveredOffsetMillis + 1) * 1_000_000L
+                    )
+                )
+            }
+            scheduleNextFix()
+        }
+    }
+}
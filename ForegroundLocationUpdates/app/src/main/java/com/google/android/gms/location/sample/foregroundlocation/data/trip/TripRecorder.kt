@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.foregroundlocation.data.trip
+
+import android.app.Application
+import android.location.Location
+import android.os.SystemClock
+import android.util.Log
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Records trips to local storage, one append-only file per trip under files/trips.
+ *
+ * Fixes are collected in memory and written in batches, either once [BATCH_SIZE] fixes are
+ * waiting or [MAX_DELAY_MILLIS] after the first of them was recorded, whichever comes first.
+ * Every batch is synced to disk. All file access happens on a dedicated writer thread, so the
+ * recording methods can be called from any thread, including the main thread.
+ *
+ * Each fix is stored as a fixed-size big-endian record: time (long), latitude, longitude and
+ * altitude (double), then accuracy, speed and bearing (float).
+ *
+ * Trips are identified by the time they started. Calling [start] with the ID of an existing trip
+ * appends to it, which lets a restarted service resume the trip it was recording.
+ */
+@Singleton
+class TripRecorder @Inject constructor(application: Application) {
+
+    private val directory = File(application.filesDir, "trips")
+    private val writer = Executors.newSingleThreadScheduledExecutor()
+
+    // Guards everything below.
+    private val lock = Any()
+    private val buffer = ByteBuffer.allocate(BATCH_SIZE * RECORD_SIZE)
+    private var tripId: Long? = null
+    private var firstBufferedMillis = 0L
+    private var scheduledFlush: ScheduledFuture<*>? = null
+
+    /** Counters for the batches written so far. */
+    val stats = TripWriteStats()
+
+    /** Starts recording fixes to the trip with the given ID, flushing any previous trip. */
+    fun start(tripId: Long) {
+        synchronized(lock) {
+            flushLocked()
+            this.tripId = tripId
+        }
+    }
+
+    /** Flushes the current trip and stops recording. */
+    fun stop() {
+        synchronized(lock) {
+            flushLocked()
+            tripId = null
+        }
+        Log.d(TAG, "Trip writes: $stats")
+    }
+
+    /**
+     * Writes any fixes still waiting, without stopping the trip. Returns straight away; the
+     * writer thread finishes the write even if the caller, e.g. a destroyed service, is gone.
+     */
+    fun flush() {
+        synchronized(lock) {
+            flushLocked()
+        }
+    }
+
+    /**
+     * Like [flush], but blocks until every batch handed to the writer thread is on disk, or until
+     * [timeoutMillis] has passed. Returns true if everything was written. Never call this on the
+     * main thread, since each batch is synced to disk.
+     */
+    fun flushAndWait(timeoutMillis: Long): Boolean {
+        // The writer runs tasks in order, so this one finishes after every batch queued before it.
+        val written = synchronized(lock) {
+            flushLocked()
+            writer.submit {}
+        }
+        return try {
+            written.get(timeoutMillis, TimeUnit.MILLISECONDS)
+            true
+        } catch (e: TimeoutException) {
+            Log.w(TAG, "Trip writes didn't finish within $timeoutMillis ms")
+            false
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            false
+        }
+    }
+
+    /** Records [location] in the current trip. Does nothing if no trip is being recorded. */
+    fun append(location: Location) {
+        synchronized(lock) {
+            if (tripId == null) return
+            if (buffer.position() == 0) {
+                firstBufferedMillis = SystemClock.elapsedRealtime()
+                scheduledFlush = writer.schedule(
+                    { flush() },
+                    MAX_DELAY_MILLIS,
+                    TimeUnit.MILLISECONDS
+                )
+            }
+            buffer.putLong(location.time)
+                .putDouble(location.latitude)
+                .putDouble(location.longitude)
+                .putDouble(location.altitude)
+                .putFloat(location.accuracy)
+                .putFloat(location.speed)
+                .putFloat(location.bearing)
+            if (!buffer.hasRemaining()) {
+                flushLocked()
+            }
+        }
+    }
+
+    // Hands the buffered fixes to the writer thread. Must be called with the lock held.
+    private fun flushLocked() {
+        scheduledFlush?.cancel(false)
+        scheduledFlush = null
+        val tripId = tripId ?: return
+        if (buffer.position() == 0) return
+
+        val batch = buffer.array().copyOf(buffer.position())
+        val enqueuedMillis = firstBufferedMillis
+        buffer.clear()
+        writer.execute { write(tripId, batch, enqueuedMillis) }
+    }
+
+    private fun write(tripId: Long, batch: ByteArray, enqueuedMillis: Long) {
+        val startMillis = SystemClock.elapsedRealtime()
+        try {
+            directory.mkdirs()
+            val file = File(directory, "$tripId$FILE_SUFFIX")
+            val offset = file.length()
+            FileOutputStream(file, true).use { output ->
+                output.write(batch)
+                output.fd.sync()
+            }
+            val endMillis = SystemClock.elapsedRealtime()
+            stats.recordFlush(
+                batch.size / RECORD_SIZE,
+                offset,
+                batch.size,
+                endMillis - enqueuedMillis,
+                endMillis - startMillis
+            )
+        } catch (e: IOException) {
+            Log.w(TAG, "Couldn't write ${batch.size / RECORD_SIZE} fixes to trip $tripId", e)
+        }
+    }
+
+    private companion object {
+        const val TAG = "TripRecorder"
+        const val FILE_SUFFIX = ".trip"
+        const val RECORD_SIZE = 8 + 3 * 8 + 3 * 4
+        const val BATCH_SIZE = 32
+        const val MAX_DELAY_MILLIS = 30_000L // 30 seconds
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.foregroundlocation.data.trip
+
+/**
+ * Summary of a trip so far, produced by [TripStatsAggregator].
+ *
+ * @property movingTimeMillis time spent moving faster than the aggregator's minimum speed.
+ * @property averageSpeedMetersPerSecond [distanceMeters] divided by [movingTimeMillis].
+ */
+data class TripStats(
+    val distanceMeters: Double = 0.0,
+    val movingTimeMillis: Long = 0L,
+    val averageSpeedMetersPerSecond: Double = 0.0,
+    val maxSpeedMetersPerSecond: Double = 0.0,
+    val elevationGainMeters: Double = 0.0
+)
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.foregroundlocation.data.trip
+
+import java.util.concurrent.TimeUnit
+import kotlin.math.asin
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+// Mean radius of the Earth, used for distances between fixes.
+private const val EARTH_RADIUS_METERS = 6_371_000.0
+
+/**
+ * Keeps running [TripStats] over a stream of fixes. Each call to [add] takes constant time and
+ * doesn't allocate; a [TripStats] object is only created by [snapshot].
+ *
+ * Distance is measured from the last fix that was counted, not from the previous fix, so GPS
+ * jitter while standing still doesn't add up. A fix is only counted once it's further from that
+ * fix than their combined horizontal accuracy, and the device moved faster than
+ * [minMovingSpeed] to get there. A fix that reports a speed below [minMovingSpeed] is taken as
+ * standing still. Fixes more than [maxGapMillis] apart start a new segment without counting the
+ * gap.
+ *
+ * Elevation gain only counts climbs of at least [elevationThresholdMeters], or the fix's vertical
+ * accuracy if that's larger, and the reference altitude only drops after a descent of the same
+ * size, so altitude noise around a level road isn't counted as climbing.
+ *
+ * This class has no Android dependencies. It isn't thread-safe; each stream of fixes should own
+ * its own instance.
+ */
+class TripStatsAggregator(
+    private val minMovingSpeed: Double = 0.5,
+    private val elevationThresholdMeters: Double = 5.0,
+    private val maxGapMillis: Long = TimeUnit.MINUTES.toMillis(5)
+) {
+
+    // The last fix that distance was counted from.
+    private var hasAnchor = false
+    private var anchorLatitude = 0.0
+    private var anchorLongitude = 0.0
+    private var anchorAccuracy = Float.NaN
+    private var anchorTimeMillis = 0L
+
+    // Time of the previous fix, used to detect gaps.
+    private var lastTimeMillis = 0L
+
+    // Altitude climbs are measured from, or NaN before the first known altitude.
+    private var altitudeReference = Double.NaN
+
+    var distanceMeters = 0.0
+        private set
+    var movingTimeMillis = 0L
+        private set
+    var maxSpeedMetersPerSecond = 0.0
+        private set
+    var elevationGainMeters = 0.0
+        private set
+
+    val averageSpeedMetersPerSecond: Double
+        get() = if (movingTimeMillis == 0L) 0.0 else distanceMeters * 1000.0 / movingTimeMillis
+
+    /**
+     * Adds a fix to the trip.
+     *
+     * @param altitude altitude in metres, or NaN if the fix has none.
+     * @param speed speed reported with the fix in metres per second, or NaN if it has none. The
+     * speed between counted fixes is used when it's unknown.
+     * @param accuracy horizontal accuracy in metres, or NaN if the fix has none.
+     * @param verticalAccuracy altitude accuracy in metres, or NaN if the fix has none.
+     */
+    fun add(
+        latitude: Double,
+        longitude: Double,
+        altitude: Double,
+        speed: Float,
+        timeMillis: Long,
+        accuracy: Float = Float.NaN,
+        verticalAccuracy: Float = Float.NaN
+    ) {
+        addAltitude(altitude, verticalAccuracy)
+
+        val gapMillis = timeMillis - lastTimeMillis
+        val hadFix = hasAnchor
+        lastTimeMillis = timeMillis
+        if (!hadFix || gapMillis !in 1..maxGapMillis) {
+            moveAnchor(latitude, longitude, accuracy, timeMillis)
+            return
+        }
+        if (!speed.isNaN() && speed < minMovingSpeed) {
+            // Standing still: whatever distance the fixes show is noise.
+            moveAnchor(latitude, longitude, accuracy, timeMillis)
+            return
+        }
+
+        val meters = haversineMeters(anchorLatitude, anchorLongitude, latitude, longitude)
+        // Without accuracies, any step counts as long as it's fast enough.
+        val uncertainty = if (accuracy.isNaN() || anchorAccuracy.isNaN()) {
+            0.0
+        } else {
+            sqrt(anchorAccuracy.toDouble() * anchorAccuracy + accuracy.toDouble() * accuracy)
+        }
+        if (meters <= uncertainty) return
+
+        val elapsedMillis = timeMillis - anchorTimeMillis
+        val segmentSpeed = meters * 1000.0 / elapsedMillis
+        if (segmentSpeed >= minMovingSpeed) {
+            distanceMeters += meters
+            movingTimeMillis += elapsedMillis
+            val fixSpeed = if (speed.isNaN()) segmentSpeed else speed.toDouble()
+            if (fixSpeed > maxSpeedMetersPerSecond) maxSpeedMetersPerSecond = fixSpeed
+        }
+        // If it was too slow to be travel, e.g. drifting while stopped, it's skipped.
+        moveAnchor(latitude, longitude, accuracy, timeMillis)
+    }
+
+    private fun addAltitude(altitude: Double, verticalAccuracy: Float) {
+        if (altitude.isNaN()) return
+        if (altitudeReference.isNaN()) {
+            altitudeReference = altitude
+            return
+        }
+        val threshold = if (verticalAccuracy.isNaN()) {
+            elevationThresholdMeters
+        } else {
+            maxOf(elevationThresholdMeters, verticalAccuracy.toDouble())
+        }
+        if (altitude - altitudeReference >= threshold) {
+            elevationGainMeters += altitude - altitudeReference
+            altitudeReference = altitude
+        } else if (altitudeReference - altitude >= threshold) {
+            altitudeReference = altitude
+        }
+    }
+
+    private fun moveAnchor(latitude: Double, longitude: Double, accuracy: Float, timeMillis: Long) {
+        hasAnchor = true
+        anchorLatitude = latitude
+        anchorLongitude = longitude
+        anchorAccuracy = accuracy
+        anchorTimeMillis = timeMillis
+    }
+
+    /** Returns the stats so far. */
+    fun snapshot() = TripStats(
+        distanceMeters = distanceMeters,
+        movingTimeMillis = movingTimeMillis,
+        averageSpeedMetersPerSecond = averageSpeedMetersPerSecond,
+        maxSpeedMetersPerSecond = maxSpeedMetersPerSecond,
+        elevationGainMeters = elevationGainMeters
+    )
+
+    /** Starts a new trip. */
+    fun reset() {
+        hasAnchor = false
+        altitudeReference = Double.NaN
+        distanceMeters = 0.0
+        movingTimeMillis = 0L
+        maxSpeedMetersPerSecond = 0.0
+        elevationGainMeters = 0.0
+    }
+
+    // Great-circle (haversine) distance between two points, in metres.
+    private fun haversineMeters(lat1: Double, lng1: Double, lat2: Double, lng2: Double): Double {
+        val dLat = Math.toRadians(lat2 - lat1)
+        val dLng = Math.toRadians(lng2 - lng1)
+        val sinLat = sin(dLat / 2)
+        val sinLng = sin(dLng / 2)
+        val a = sinLat * sinLat +
+            cos(Math.toRadians(lat1)) * cos(Math.toRadians(lat2)) * sinLng * sinLng
+        return 2 * EARTH_RADIUS_METERS * asin(sqrt(a.coerceAtMost(1.0)))
+    }
+}
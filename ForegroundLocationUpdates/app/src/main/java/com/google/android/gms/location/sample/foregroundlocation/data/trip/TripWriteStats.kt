@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.foregroundlocation.data.trip
+
+/**
+ * Counters for the writes made by [TripRecorder]. All methods are thread-safe.
+ *
+ * Write amplification is estimated from the file system's point of view: every flush rewrites
+ * each [PAGE_SIZE] page it touches, including the partly filled last page that the previous
+ * flush already wrote. Larger batches touch fewer pages per byte of location data.
+ */
+class TripWriteStats {
+
+    private var flushes = 0L
+    private var records = 0L
+    private var payloadBytes = 0L
+    private var pageBytes = 0L
+    private var totalLatencyMillis = 0L
+    private var maxLatencyMillis = 0L
+    private var totalDurationMillis = 0L
+
+    /** Number of batches written. */
+    val flushCount: Long
+        @Synchronized get() = flushes
+
+    /** Number of fixes written. */
+    val recordCount: Long
+        @Synchronized get() = records
+
+    /** Bytes of pages rewritten per byte of location data, 1.0 or more. */
+    val writeAmplification: Double
+        @Synchronized get() = if (payloadBytes == 0L) 0.0 else pageBytes.toDouble() / payloadBytes
+
+    /** Average time from the first fix of a batch being recorded until it was on disk. */
+    val averageFlushLatencyMillis: Long
+        @Synchronized get() = if (flushes == 0L) 0L else totalLatencyMillis / flushes
+
+    /** Longest time from the first fix of a batch being recorded until it was on disk. */
+    val maxFlushLatencyMillis: Long
+        @Synchronized get() = maxLatencyMillis
+
+    /** Average time spent writing and syncing a batch. */
+    val averageFlushDurationMillis: Long
+        @Synchronized get() = if (flushes == 0L) 0L else totalDurationMillis / flushes
+
+    /**
+     * Records a flush of [recordCount] fixes, [byteCount] bytes long, appended at [offset] in the
+     * trip file.
+     */
+    @Synchronized
+    fun recordFlush(
+        recordCount: Int,
+        offset: Long,
+        byteCount: Int,
+        latencyMillis: Long,
+        durationMillis: Long
+    ) {
+        flushes++
+        records += recordCount
+        payloadBytes += byteCount
+        val firstPage = offset / PAGE_SIZE
+        val lastPage = (offset + byteCount - 1) / PAGE_SIZE
+        pageBytes += (lastPage - firstPage + 1) * PAGE_SIZE
+        totalLatencyMillis += latencyMillis
+        maxLatencyMillis = maxOf(maxLatencyMillis, latencyMillis)
+        totalDurationMillis += durationMillis
+    }
+
+    override fun toString() =
+        "flushes=$flushCount, records=$recordCount, " +
+            "writeAmplification=${"%.2f".format(writeAmplification)}, " +
+            "avgFlushLatencyMillis=$averageFlushLatencyMillis, " +
+            "maxFlushLatencyMillis=$maxFlushLatencyMillis, " +
+            "avgFlushDurationMillis=$averageFlushDurationMillis"
+
+    private companion object {
+        // Typical flash page and file system block size.
+        const val PAGE_SIZE = 4096L
+    }
+}
@@ -32,11 +32,13 @@ import androidx.compose.runtime.remember
 import androidx.compose.runtime.setValue
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
+import androidx.compose.ui.platform.LocalContext
 import androidx.compose.ui.res.stringResource
 import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.tooling.preview.Preview
 import androidx.compose.ui.unit.dp
 import com.google.android.gms.location.sample.foregroundlocation.R
+import com.google.android.gms.location.sample.foregroundlocation.data.trip.TripStats
 import com.google.android.gms.location.sample.foregroundlocation.ui.theme.ForegroundLocationTheme
 
 @Composable
@@ -45,7 +47,10 @@ fun LocationUpdatesScreen(
     needsPermissionRationale: Boolean,
     onButtonClick: () -> Unit,
     isLocationOn: Boolean,
-    location: Location?
+    location: Location?,
+    isRecordingTrip: Boolean,
+    onRecordClick: () -> Unit,
+    tripStats: TripStats
 ) {
     var showRationaleDialog by remember { mutableStateOf(false) }
     if (showRationaleDialog) {
@@ -93,9 +98,23 @@ fun LocationUpdatesScreen(
             style = MaterialTheme.typography.h6,
             textAlign = TextAlign.Center
         )
+        if (isLocationOn) {
+            Text(
+                text = LocalContext.current.formatTripStats(tripStats),
+                style = MaterialTheme.typography.body1,
+                textAlign = TextAlign.Center
+            )
+        }
         Button(onClick = { onClick() }) {
             Text(text = stringResource(id = labelResId))
         }
+        if (isLocationOn) {
+            val recordLabelResId =
+                if (isRecordingTrip) R.string.stop_recording else R.string.record_trip
+            Button(onClick = onRecordClick) {
+                Text(text = stringResource(id = recordLabelResId))
+            }
+        }
     }
 }
 
@@ -135,6 +154,9 @@ fun LocationUpdatesScreenPreview() {
             onButtonClick = {},
             isLocationOn = true,
             location = null,
+            isRecordingTrip = false,
+            onRecordClick = {},
+            tripStats = TripStats(),
         )
     }
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.ui
+
+import android.content.Context
+import android.text.format.DateUtils
+import com.google.android.gms.location.sample.foregroundlocation.R
+import com.google.android.gms.location.sample.foregroundlocation.data.trip.TripStats
+
+/** Formats [stats] for display, in kilometres and km/h. */
+internal fun Context.formatTripStats(stats: TripStats): String = getString(
+    R.string.trip_stats,
+    stats.distanceMeters / 1000.0,
+    stats.averageSpeedMetersPerSecond * 3.6,
+    stats.maxSpeedMetersPerSecond * 3.6,
+    stats.elevationGainMeters,
+    DateUtils.formatElapsedTime(stats.movingTimeMillis / 1000)
+)
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.benchmark
+
+import android.app.Service
+import android.content.Intent
+import android.os.IBinder
+import android.os.Looper
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.location.sample.foregroundlocation.LocationNotificationUpdater
+import com.google.android.gms.location.sample.foregroundlocation.data.LocationRepository
+import com.google.android.gms.location.sample.foregroundlocation.data.trace.LocationTrace
+import com.google.android.gms.location.sample.foregroundlocation.data.trace.TraceLocationProviderClient
+import java.time.Duration
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.launch
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.Robolectric
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+import org.robolectric.annotation.LooperMode
+
+// Simulated length of each run.
+private const val RUN_SECONDS = 60L
+
+// How often the main thread gets to run while callbacks are delivered on another thread.
+private const val STEP_MILLIS = 100L
+
+/**
+ * Measures how much main-thread time location updates take, with callbacks delivered on the
+ * main thread and on the repository's callback thread, at 1 Hz and 10 Hz.
+ *
+ * Fixes are replayed by [TraceLocationProviderClient] on Robolectric's simulated clock, while
+ * a [LocationNotificationUpdater] collects the repository's flows on the main thread, as it does
+ * in the foreground service. For each result, nanosPerOp is the main-thread time per delivered
+ * fix, in callbacks and in that collector, and opsPerSecond is the number of fixes delivered per
+ * simulated second, so their product is the main-thread time per second of updates. The
+ * `_callbacks` results count only the time spent in callbacks.
+ */
+@RunWith(RobolectricTestRunner::class)
+@LooperMode(LooperMode.Mode.PAUSED)
+class CallbackDeliveryBenchmark {
+
+    @Test
+    fun mainThreadTime() {
+        val benchmark = Microbenchmark("CallbackDeliveryBenchmark.mainThreadTime")
+        for (rateHz in intArrayOf(1, 10)) {
+            for (onMainThread in booleanArrayOf(true, false)) {
+                val repository = run(rateHz, onMainThread)
+                val metrics = repository.callbackMetrics
+                val fixes = metrics.callbackCount.coerceAtLeast(1L)
+                val name = "${if (onMainThread) "mainLooper" else "callbackThread"}_${rateHz}Hz"
+                benchmark.record(
+                    name,
+                    nanosPerOp = metrics.mainThreadNanos.toDouble() / fixes,
+                    opsPerSecond = metrics.callbackCount.toDouble() / RUN_SECONDS
+                )
+                benchmark.record(
+                    "${name}_callbacks",
+                    nanosPerOp = metrics.mainThreadCallbackNanos.toDouble() / fixes,
+                    opsPerSecond = metrics.callbackCount.toDouble() / RUN_SECONDS
+                )
+            }
+        }
+        benchmark.write()
+    }
+
+    private fun run(rateHz: Int, onMainThread: Boolean): LocationRepository {
+        val client = TraceLocationProviderClient(
+            ApplicationProvider.getApplicationContext(),
+            trace(rateHz),
+            loop = false
+        )
+        val repository = LocationRepository(client)
+        repository.deliverOnMainThread = onMainThread
+
+        // Show the notification the way the foreground service does.
+        val service = Robolectric.buildService(NotificationService::class.java).create().get()
+        val updater = LocationNotificationUpdater(service, 1, "benchmark", "stop")
+        updater.startForeground(null, repository.tripStats.value, repository.stateVersion)
+        val scope = CoroutineScope(Dispatchers.Main)
+        scope.launch {
+            updater.collectUpdates(repository, NOTIFICATION_MIN_INTERVAL_MILLIS) { true }
+        }
+
+        repository.startLocationUpdates()
+        // Let the main thread catch up after every step, so it collects updates as they come.
+        val mainLooper = shadowOf(Looper.getMainLooper())
+        val callbackLooper =
+            if (onMainThread) mainLooper else shadowOf(repository.callbackLooper)
+        repeat((RUN_SECONDS * 1000 / STEP_MILLIS).toInt()) {
+            callbackLooper.idleFor(Duration.ofMillis(STEP_MILLIS))
+            mainLooper.idle()
+        }
+
+        repository.stopLocationUpdates()
+        scope.cancel()
+        mainLooper.idle()
+        return repository
+    }
+
+    // A straight walk with one fix every 1 / rateHz seconds.
+    private fun trace(rateHz: Int): LocationTrace {
+        val csv = StringBuilder()
+        for (i in 0 until RUN_SECONDS * rateHz) {
+            csv.append(i * 1000 / rateHz).append(',')
+                .append(37.422 + i * 1e-6).append(',')
+                .append(-122.084 + i * 1e-6).append(",5\n")
+        }
+        return LocationTrace.fromCsv(csv.toString().byteInputStream())
+    }
+
+    private companion object {
+        // Same as the foreground service.
+        const val NOTIFICATION_MIN_INTERVAL_MILLIS = 5000L
+    }
+}
+
+/** Stands in for the foreground service, which needs Hilt, to host the notification. */
+class NotificationService : Service() {
+    override fun onBind(intent: Intent?): IBinder? = null
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.benchmark
+
+import android.location.Location
+import com.google.android.gms.location.sample.foregroundlocation.data.LocationHistory
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+private const val CAPACITY = 600
+private const val FIX_COUNT = 10_000
+
+/**
+ * Compares [LocationHistory] with keeping the same number of recent fixes in an
+ * [ArrayDeque] of [Location]s, for adding fixes and for reading back the whole history.
+ */
+@RunWith(RobolectricTestRunner::class)
+class LocationHistoryBenchmark {
+
+    private val fixes = List(FIX_COUNT) { i ->
+        Location("benchmark").apply {
+            latitude = 37.422 + i * 1e-6
+            longitude = -122.084 + i * 1e-6
+            time = 1_600_000_000_000L + i * 1000L
+            accuracy = 5f
+            speed = 1.4f
+        }
+    }
+
+    @Test
+    fun add() {
+        val benchmark = Microbenchmark("LocationHistoryBenchmark.add")
+
+        // Location objects are mutable and may be reused by the sender, so a list that keeps them
+        // has to keep copies.
+        benchmark.measure("arrayDeque", operations = FIX_COUNT) {
+            val deque = ArrayDeque<Location>(CAPACITY)
+            for (fix in fixes) {
+                if (deque.size == CAPACITY) deque.removeFirst()
+                deque.addLast(Location(fix))
+            }
+            consume(deque)
+        }
+
+        benchmark.measure("locationHistory", operations = FIX_COUNT) {
+            val history = LocationHistory(CAPACITY)
+            for (fix in fixes) {
+                history.addAll(listOf(fix))
+            }
+            consume(history)
+        }
+        benchmark.write()
+    }
+
+    @Test
+    fun iterate() {
+        val benchmark = Microbenchmark("LocationHistoryBenchmark.iterate")
+        val deque = ArrayDeque<Location>(CAPACITY)
+        val history = LocationHistory(CAPACITY)
+        for (fix in fixes.takeLast(CAPACITY)) {
+            deque.addLast(Location(fix))
+        }
+        history.addAll(fixes.takeLast(CAPACITY))
+        val passes = 100
+
+        benchmark.measure("arrayDeque", operations = passes * CAPACITY) {
+            var sum = 0.0
+            repeat(passes) {
+                for (location in deque) sum += location.latitude
+            }
+            consume(sum)
+        }
+
+        benchmark.measure("locationHistory", operations = passes * CAPACITY) {
+            var sum = 0.0
+            repeat(passes) {
+                val cursor = history.snapshot().cursor()
+                while (cursor.moveToNext()) sum += cursor.latitude
+            }
+            consume(sum)
+        }
+        benchmark.write()
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data
+
+import android.location.Location
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class LocationHistoryTest {
+
+    private fun location(time: Long) = Location("test").apply {
+        this.time = time
+        latitude = 37.422 + time * 1e-6
+        longitude = -122.084
+        altitude = 30.0
+        accuracy = 5f
+        speed = 1.5f
+        bearing = 90f
+    }
+
+    private fun times(cursor: LocationHistory.Cursor): List<Long> {
+        val times = mutableListOf<Long>()
+        while (cursor.moveToNext()) times += cursor.time
+        return times
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun constructor_rejectsEmptyCapacity() {
+        LocationHistory(0)
+    }
+
+    @Test
+    fun addAll_beyondCapacity_keepsNewestFixesOldestFirst() {
+        val history = LocationHistory(3)
+
+        history.addAll(List(5) { location(it * 1_000L) })
+
+        assertEquals(3, history.size)
+        assertEquals(listOf(2_000L, 3_000L, 4_000L), times(history.snapshot().cursor()))
+    }
+
+    @Test
+    fun cursor_readsEveryField() {
+        val history = LocationHistory(3)
+        history.addAll(listOf(location(1_000L)))
+
+        val cursor = history.snapshot().cursor()
+
+        assertTrue(cursor.moveToNext())
+        assertEquals(37.423, cursor.latitude, 1e-9)
+        assertEquals(-122.084, cursor.longitude, 0.0)
+        assertEquals(30.0, cursor.altitude, 0.0)
+        assertEquals(5f, cursor.accuracy, 0f)
+        assertEquals(1.5f, cursor.speed, 0f)
+        assertEquals(90f, cursor.bearing, 0f)
+        assertFalse(cursor.moveToNext())
+    }
+
+    @Test
+    fun snapshot_ignoresFixesAddedLater() {
+        val history = LocationHistory(5)
+        history.addAll(listOf(location(0L), location(1_000L)))
+
+        val snapshot = history.snapshot()
+        history.addAll(listOf(location(2_000L)))
+
+        assertEquals(2, snapshot.size)
+        assertEquals(listOf(0L, 1_000L), times(snapshot.cursor()))
+    }
+
+    @Test
+    fun cursor_skipsFixesOverwrittenAfterSnapshot() {
+        val history = LocationHistory(3)
+        history.addAll(List(3) { location(it * 1_000L) })
+
+        val cursor = history.snapshot().cursor()
+        history.addAll(listOf(location(3_000L), location(4_000L)))
+
+        assertEquals(listOf(2_000L), times(cursor))
+    }
+
+    @Test
+    fun snapshots_emitsLatestFixes() {
+        val history = LocationHistory(3)
+        history.addAll(listOf(location(0L)))
+        history.addAll(listOf(location(1_000L)))
+
+        val snapshot = runBlocking { history.snapshots.first() }
+
+        assertEquals(listOf(0L, 1_000L), times(snapshot.cursor()))
+    }
+}
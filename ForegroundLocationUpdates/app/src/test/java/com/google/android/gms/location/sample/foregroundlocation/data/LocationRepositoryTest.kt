@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data
+
+import android.content.Context
+import android.location.Location
+import android.os.Handler
+import android.os.Looper
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.location.FusedLocationProviderClient
+import com.google.android.gms.location.LocationCallback
+import com.google.android.gms.location.LocationRequest
+import com.google.android.gms.location.LocationResult
+import com.google.android.gms.tasks.Task
+import com.google.android.gms.tasks.Tasks
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertThrows
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+
+@RunWith(RobolectricTestRunner::class)
+class LocationRepositoryTest {
+
+    private val client =
+        RecordingLocationProviderClient(ApplicationProvider.getApplicationContext())
+    private val repository = LocationRepository(client)
+
+    private fun location(time: Long) = Location("test").apply {
+        this.time = time
+        latitude = 37.422
+        longitude = -122.084
+    }
+
+    // Delivers a result on the looper the request asked for, as the fused provider does.
+    private fun deliver(locations: List<Location>) {
+        val looper = checkNotNull(client.looper)
+        val callback = checkNotNull(client.callback)
+        Handler(looper).post { callback.onLocationResult(LocationResult.create(locations)) }
+        shadowOf(looper).idle()
+    }
+
+    @Test
+    fun subscribe_requestsShortestIntervalAndMostAccuratePriority() {
+        repository.subscribe(10_000L, LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY) {}
+        repository.subscribe(1_000L, LocationRequest.PRIORITY_HIGH_ACCURACY) {}
+
+        assertEquals(1_000L, client.request!!.interval)
+        assertEquals(LocationRequest.PRIORITY_HIGH_ACCURACY, client.request!!.priority)
+    }
+
+    @Test
+    fun subscribe_sameRequest_isNotMadeAgain() {
+        repository.subscribe(5_000L) {}
+        repository.subscribe(5_000L) {}
+
+        assertEquals(1, client.requestCount)
+    }
+
+    @Test
+    fun close_relaxesRequestToRemainingSubscriptions() {
+        repository.subscribe(10_000L, LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY) {}
+        val fast = repository.subscribe(1_000L, LocationRequest.PRIORITY_HIGH_ACCURACY) {}
+
+        fast.close()
+
+        assertEquals(10_000L, client.request!!.interval)
+        assertEquals(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY, client.request!!.priority)
+    }
+
+    @Test
+    fun close_lastSubscription_removesUpdates() {
+        val first = repository.subscribe(1_000L) {}
+        val second = repository.subscribe(5_000L) {}
+
+        first.close()
+        second.close()
+
+        assertNull(client.callback)
+    }
+
+    @Test
+    fun callback_deliversToEachSubscriptionAtItsInterval() {
+        val fast = mutableListOf<Long>()
+        val slow = mutableListOf<Long>()
+        repository.subscribe(1_000L) { fast += it.time }
+        repository.subscribe(5_000L) { slow += it.time }
+
+        for (i in 0 until 10) deliver(listOf(location(i * 1_000L)))
+
+        assertEquals(List(10) { it * 1_000L }, fast)
+        assertEquals(listOf(0L, 5_000L), slow)
+    }
+
+    @Test
+    fun callback_batchedResult_isSplitPerSubscription() {
+        val slow = mutableListOf<Long>()
+        repository.subscribe(1_000L) {}
+        repository.subscribe(5_000L) { slow += it.time }
+
+        deliver(List(10) { location(it * 1_000L) })
+
+        assertEquals(listOf(0L, 5_000L), slow)
+        assertEquals(10, repository.locationHistory.size)
+    }
+
+    @Test
+    fun startLocationUpdates_withoutPermission_leavesUpdatesOff() {
+        client.hasPermission = false
+
+        assertThrows(SecurityException::class.java) { repository.startLocationUpdates() }
+
+        assertFalse(repository.isReceivingLocationUpdates.value)
+        assertNull(client.request)
+
+        // Nothing was left behind, so starting again once permission is granted works.
+        client.hasPermission = true
+        repository.startLocationUpdates()
+        assertTrue(repository.isReceivingLocationUpdates.value)
+        deliver(listOf(location(1_000L)))
+        assertEquals(1_000L, repository.lastLocation.value?.time)
+    }
+
+    @Test
+    fun subscribe_withoutPermission_doesNotRegisterSubscription() {
+        repository.subscribe(10_000L) {}
+        client.hasPermission = false
+
+        assertThrows(SecurityException::class.java) { repository.subscribe(1_000L) {} }
+        client.hasPermission = true
+        repository.subscribe(5_000L) {}
+
+        assertEquals(5_000L, client.request!!.interval)
+    }
+
+    /** Records the request the repository makes instead of asking for real locations. */
+    private class RecordingLocationProviderClient(
+        context: Context
+    ) : FusedLocationProviderClient(context) {
+
+        var request: LocationRequest? = null
+        var callback: LocationCallback? = null
+        var looper: Looper? = null
+        var requestCount = 0
+
+        // When false, requests fail as they do once location permission is revoked.
+        var hasPermission = true
+
+        override fun requestLocationUpdates(
+            request: LocationRequest,
+            callback: LocationCallback,
+            looper: Looper?
+        ): Task<Void> {
+            if (!hasPermission) throw SecurityException("Client must have location permission")
+            this.request = request
+            this.callback = callback
+            this.looper = looper
+            requestCount++
+            return Tasks.forResult(null)
+        }
+
+        override fun removeLocationUpdates(callback: LocationCallback): Task<Void> {
+            if (callback == this.callback) {
+                request = null
+                this.callback = null
+                looper = null
+            }
+            return Tasks.forResult(null)
+        }
+    }
+}
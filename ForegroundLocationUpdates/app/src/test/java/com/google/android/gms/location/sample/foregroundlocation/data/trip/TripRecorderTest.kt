@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data.trip
+
+import android.app.Application
+import android.location.Location
+import androidx.test.core.app.ApplicationProvider
+import java.io.File
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+// Size of one stored fix: time, latitude, longitude, altitude, accuracy, speed and bearing.
+private const val RECORD_SIZE = 8 + 3 * 8 + 3 * 4
+
+@RunWith(RobolectricTestRunner::class)
+class TripRecorderTest {
+
+    private val application: Application = ApplicationProvider.getApplicationContext()
+    private val directory = File(application.filesDir, "trips")
+    private lateinit var recorder: TripRecorder
+
+    @Before
+    fun setUp() {
+        directory.deleteRecursively()
+        recorder = TripRecorder(application)
+    }
+
+    private fun location(time: Long) = Location("test").apply {
+        this.time = time
+        latitude = 37.422
+        longitude = -122.084
+    }
+
+    private fun tripFile(tripId: Long) = File(directory, "$tripId.trip")
+
+    @Test
+    fun flushAndWait_writesBufferedFixesBeforeReturning() {
+        recorder.start(1L)
+        repeat(3) { recorder.append(location(it * 1000L)) }
+
+        assertTrue(recorder.flushAndWait(5_000L))
+
+        assertEquals(3L * RECORD_SIZE, tripFile(1L).length())
+        assertEquals(1L, recorder.stats.flushCount)
+        assertEquals(3L, recorder.stats.recordCount)
+    }
+
+    @Test
+    fun flush_writesBufferedFixesOnWriterThread() {
+        recorder.start(1L)
+        repeat(3) { recorder.append(location(it * 1000L)) }
+
+        recorder.flush()
+        // Only waits for the batch the flush already handed to the writer thread.
+        recorder.flushAndWait(5_000L)
+
+        assertEquals(3L * RECORD_SIZE, tripFile(1L).length())
+        assertEquals(1L, recorder.stats.flushCount)
+    }
+
+    @Test
+    fun start_withExistingTripId_appendsToTrip() {
+        recorder.start(1L)
+        recorder.append(location(0L))
+        recorder.stop()
+
+        recorder.start(1L)
+        recorder.append(location(1000L))
+        recorder.flushAndWait(5_000L)
+
+        assertEquals(2L * RECORD_SIZE, tripFile(1L).length())
+    }
+
+    @Test
+    fun append_withoutTrip_recordsNothing() {
+        recorder.append(location(0L))
+        recorder.flushAndWait(5_000L)
+
+        assertFalse(directory.exists())
+        assertEquals(0L, recorder.stats.recordCount)
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.foregroundlocation.data.trip
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+// Length of a degree of latitude on the aggregator's spherical Earth.
+private const val METERS_PER_DEGREE = 111_195.0
+
+private const val START_LATITUDE = 37.422
+private const val START_LONGITUDE = -122.084
+
+class TripStatsAggregatorTest {
+
+    private val aggregator = TripStatsAggregator()
+
+    // Adds a fix [northMeters] and [eastMeters] from the start point.
+    private fun add(
+        timeMillis: Long,
+        northMeters: Double,
+        eastMeters: Double = 0.0,
+        speed: Float = Float.NaN,
+        accuracy: Float = Float.NaN,
+        altitude: Double = Double.NaN,
+        verticalAccuracy: Float = Float.NaN
+    ) {
+        val metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(START_LATITUDE))
+        aggregator.add(
+            START_LATITUDE + northMeters / METERS_PER_DEGREE,
+            START_LONGITUDE + eastMeters / metersPerDegreeLongitude,
+            altitude,
+            speed,
+            timeMillis,
+            accuracy,
+            verticalAccuracy
+        )
+    }
+
+    @Test
+    fun add_jitterWithinAccuracy_isNotCounted() {
+        // Standing still with fixes scattered up to 3 m around the true position.
+        for (i in 0 until 120) {
+            val offset = if (i % 2 == 0) 3.0 else -3.0
+            add(i * 1000L, northMeters = offset, eastMeters = -offset, accuracy = 10f)
+        }
+
+        assertEquals(0.0, aggregator.distanceMeters, 0.0)
+        assertEquals(0L, aggregator.movingTimeMillis)
+    }
+
+    @Test
+    fun add_reportedSpeedBelowMinimum_isNotCounted() {
+        // Large jumps with no accuracy, but every fix says the device isn't moving.
+        for (i in 0 until 60) {
+            add(i * 1000L, northMeters = if (i % 2 == 0) 20.0 else -20.0, speed = 0f)
+        }
+
+        assertEquals(0.0, aggregator.distanceMeters, 0.0)
+        assertEquals(0L, aggregator.movingTimeMillis)
+    }
+
+    @Test
+    fun add_slowDriftAfterStop_isNotCounted() {
+        add(0L, northMeters = 0.0, accuracy = 5f)
+        // Two minutes later, 10 m away: further than the accuracy, but far too slow to be travel.
+        add(120_000L, northMeters = 10.0, accuracy = 5f)
+
+        assertEquals(0.0, aggregator.distanceMeters, 0.0)
+    }
+
+    @Test
+    fun add_stepsSmallerThanAccuracy_countFromLastCountedFix() {
+        // 5 m/s north, one fix a second. Each 5 m step is within the combined accuracy, so
+        // distance is counted every other fix.
+        for (i in 0 until 60) {
+            add(i * 1000L, northMeters = i * 5.0, accuracy = 5f)
+        }
+
+        assertEquals(290.0, aggregator.distanceMeters, 0.5)
+        assertEquals(58_000L, aggregator.movingTimeMillis)
+        assertEquals(5.0, aggregator.averageSpeedMetersPerSecond, 0.01)
+    }
+
+    @Test
+    fun add_reportedSpeed_isUsedForMaxSpeed() {
+        add(0L, northMeters = 0.0, speed = 4f, accuracy = 3f)
+        add(10_000L, northMeters = 50.0, speed = 6f, accuracy = 3f)
+
+        assertEquals(50.0, aggregator.distanceMeters, 0.5)
+        assertEquals(6.0, aggregator.maxSpeedMetersPerSecond, 0.0)
+    }
+
+    @Test
+    fun add_gapLongerThanMax_startsNewSegment() {
+        add(0L, northMeters = 0.0, accuracy = 5f)
+        // Ten minutes later and 1 km away: the gap isn't counted.
+        add(600_000L, northMeters = 1000.0, accuracy = 5f)
+        add(610_000L, northMeters = 1050.0, accuracy = 5f)
+
+        assertEquals(50.0, aggregator.distanceMeters, 0.5)
+        assertEquals(10_000L, aggregator.movingTimeMillis)
+    }
+
+    @Test
+    fun add_fixGoingBackInTime_startsNewSegment() {
+        add(10_000L, northMeters = 0.0)
+        add(5_000L, northMeters = 100.0)
+
+        assertEquals(0.0, aggregator.distanceMeters, 0.0)
+    }
+
+    @Test
+    fun add_altitudeNoise_isNotCounted() {
+        for (i in 0 until 100) {
+            add(i * 1000L, northMeters = 0.0, altitude = if (i % 2 == 0) 102.0 else 98.0)
+        }
+
+        assertEquals(0.0, aggregator.elevationGainMeters, 0.0)
+    }
+
+    @Test
+    fun add_steadyClimb_isCounted() {
+        for (i in 0..30) {
+            add(i * 1000L, northMeters = 0.0, altitude = 100.0 + i)
+        }
+
+        assertEquals(30.0, aggregator.elevationGainMeters, 0.0)
+    }
+
+    @Test
+    fun add_climbWithinVerticalAccuracy_isNotCounted() {
+        for (i in 0..8) {
+            add(i * 1000L, northMeters = 0.0, altitude = 100.0 + i, verticalAccuracy = 10f)
+        }
+
+        assertEquals(0.0, aggregator.elevationGainMeters, 0.0)
+    }
+
+    @Test
+    fun reset_clearsStats() {
+        for (i in 0 until 10) {
+            add(i * 1000L, northMeters = i * 10.0, altitude = 100.0 + i * 2)
+        }
+
+        aggregator.reset()
+
+        assertEquals(TripStats(), aggregator.snapshot())
+    }
+}
@@ -19,12 +19,23 @@ package com.google.android.gms.location.sample.locationaddress
 import android.app.Application
 import android.location.Geocoder
 import com.google.android.gms.common.GoogleApiAvailability
+import com.google.android.gms.location.FusedLocationProviderClient
 import com.google.android.gms.location.LocationServices
+import com.google.android.gms.location.sample.locationaddress.data.PlaceSearchApi
+import com.google.android.gms.location.sample.locationaddress.data.ReverseGeocoder
+import com.google.android.gms.location.sample.locationaddress.data.asForwardGeocoder
+import com.google.android.gms.location.sample.locationaddress.data.asReverseGeocoder
+import com.google.android.gms.location.sample.locationaddress.data.cache.GeocodingCache
+import com.google.android.gms.location.sample.locationaddress.data.offline.OfflineReverseGeocoder
+import com.google.android.gms.location.sample.locationaddress.data.offline.PlaceTrie
+import com.google.android.gms.location.sample.locationaddress.data.trace.LocationTrace
+import com.google.android.gms.location.sample.locationaddress.data.trace.TraceLocationProviderClient
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
 import dagger.hilt.android.HiltAndroidApp
 import dagger.hilt.components.SingletonComponent
+import java.io.File
 import javax.inject.Singleton
 
 @HiltAndroidApp
@@ -40,10 +51,44 @@ object AppModule {
 
     @Provides
     @Singleton
-    fun provideLocationProviderClient(application: Application) =
-        LocationServices.getFusedLocationProviderClient(application)
+    fun provideLocationProviderClient(application: Application): FusedLocationProviderClient =
+        if (BuildConfig.LOCATION_TRACE.isNotEmpty()) {
+            TraceLocationProviderClient(
+                application,
+                LocationTrace.fromAsset(application, BuildConfig.LOCATION_TRACE)
+            )
+        } else {
+            LocationServices.getFusedLocationProviderClient(application)
+        }
 
     @Provides
     @Singleton
     fun provideGeocoder(application: Application) = Geocoder(application)
+
+    @Provides
+    @Singleton
+    fun provideReverseGeocoder(application: Application, geocoder: Geocoder): ReverseGeocoder =
+        if (BuildConfig.PLACES_DATASET.isNotEmpty()) {
+            OfflineReverseGeocoder(geocoder.asReverseGeocoder()) {
+                OfflineReverseGeocoder.loadGeoNamesAsset(application, BuildConfig.PLACES_DATASET)
+            }
+        } else {
+            geocoder.asReverseGeocoder()
+        }
+
+    @Provides
+    @Singleton
+    fun providePlaceSearchApi(application: Application, geocoder: Geocoder) =
+        PlaceSearchApi(geocoder.asForwardGeocoder()) {
+            if (BuildConfig.PLACES_DATASET.isNotEmpty()) {
+                PlaceTrie.loadGeoNamesAsset(application, BuildConfig.PLACES_DATASET)
+            } else {
+                null
+            }
+        }
+
+    @Provides
+    @Singleton
+    fun provideGeocodingCache(application: Application) =
+        GeocodingCache(File(application.cacheDir, "geocoding"))
 }
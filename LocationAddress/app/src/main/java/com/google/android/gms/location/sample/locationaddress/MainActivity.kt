@@ -85,10 +85,14 @@ fun MainScreen(
             showRationale = locationPermissionState.shouldShowRationale(),
             showProgress = viewModel.showProgress,
             addresses = viewModel.addressList,
+            timeToAddress = viewModel.timeToAddress,
             maxResults = viewModel.maxResults,
             maxResultsRange = viewModel.maxResultsRange,
             onMaxResultsChange = viewModel::updateMaxResults,
-            onFindAddressClick = { locationPermissionState.requestPermissions() }
+            onFindAddressClick = { locationPermissionState.requestPermissions() },
+            query = viewModel.query,
+            suggestions = viewModel.suggestions,
+            onQueryChange = viewModel::updateQuery
         )
     }
 }
@@ -16,6 +16,7 @@
 
 package com.google.android.gms.location.sample.locationaddress
 
+import android.util.Log
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.setValue
@@ -24,12 +25,19 @@ import androidx.lifecycle.viewModelScope
 import com.google.android.gms.location.sample.locationaddress.UiState.Initializing
 import com.google.android.gms.location.sample.locationaddress.UiState.PlayServicesAvailable
 import com.google.android.gms.location.sample.locationaddress.UiState.PlayServicesUnavailable
+import com.google.android.gms.location.sample.locationaddress.data.AddressRequestCoordinator
 import com.google.android.gms.location.sample.locationaddress.data.FormattedAddress
 import com.google.android.gms.location.sample.locationaddress.data.GeocodingApi
 import com.google.android.gms.location.sample.locationaddress.data.LocationApi
+import com.google.android.gms.location.sample.locationaddress.data.PlaceSearchApi
 import com.google.android.gms.location.sample.locationaddress.data.PlayServicesAvailabilityChecker
+import com.google.android.gms.location.sample.locationaddress.data.TimeToAddress
+import com.google.android.gms.location.sample.locationaddress.data.TimeToAddressMetrics
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.collectLatest
 import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.stateIn
 import kotlinx.coroutines.launch
@@ -39,9 +47,14 @@ import javax.inject.Inject
 class MainViewModel @Inject constructor(
     availabilityChecker: PlayServicesAvailabilityChecker,
     private val locationApi: LocationApi,
-    private val geocodingApi: GeocodingApi
+    geocodingApi: GeocodingApi,
+    private val placeSearchApi: PlaceSearchApi,
+    private val metrics: TimeToAddressMetrics
 ) : ViewModel() {
 
+    private val requestCoordinator =
+        AddressRequestCoordinator(viewModelScope, load = geocodingApi::getFromLocation)
+
     val uiState = flow {
         emit(
             if (availabilityChecker.isGooglePlayServicesAvailable()) {
@@ -58,6 +71,10 @@ class MainViewModel @Inject constructor(
     var showProgress by mutableStateOf(false)
         private set
 
+    /** How long the last address took to find, or null if none has been found yet. */
+    var timeToAddress by mutableStateOf<TimeToAddress?>(null)
+        private set
+
     val maxResultsRange = 1..7
     var maxResults by mutableStateOf(1)
         private set
@@ -66,19 +83,70 @@ class MainViewModel @Inject constructor(
         maxResults = max.coerceIn(maxResultsRange)
     }
 
-    fun getCurrentAddress() {
+    var query by mutableStateOf("")
+        private set
+
+    var suggestions by mutableStateOf(emptyList<FormattedAddress>())
+        private set
+
+    private val queries = MutableStateFlow("")
+
+    init {
         viewModelScope.launch {
-            showProgress = true
-            val location = locationApi.getCurrentLocation()
-            val addresses = if (location != null) {
-                geocodingApi.getFromLocation(location, maxResults)
-            } else {
-                emptyList()
+            // collectLatest cancels the work for a query when the next keystroke arrives, which
+            // also debounces the Geocoder search behind the delay.
+            queries.collectLatest { text ->
+                if (text.isBlank()) {
+                    suggestions = emptyList()
+                    return@collectLatest
+                }
+                val local = placeSearchApi.suggest(text, MAX_SUGGESTIONS)
+                suggestions = local
+                if (text.trim().length < MIN_SEARCH_LENGTH) return@collectLatest
+
+                delay(SEARCH_DEBOUNCE_MILLIS)
+                val remote = placeSearchApi.search(text, MAX_SUGGESTIONS)
+                suggestions = (local + remote).distinct()
             }
-            addressList = addresses
-            showProgress = false
         }
     }
+
+    fun updateQuery(text: String) {
+        query = text
+        queries.value = text
+    }
+
+    fun getCurrentAddress() {
+        // Repeated taps cancel the previous request, and only the latest one updates the UI.
+        showProgress = true
+        val requestedResults = maxResults
+        val start = System.nanoTime()
+        requestCoordinator.launchLatest(
+            request = {
+                val acquired = locationApi.acquireLocation()
+                if (acquired != null) {
+                    val addresses = requestCoordinator.geocode(acquired.location, requestedResults)
+                    val timing = metrics.recordAddress(acquired.source, System.nanoTime() - start)
+                    Log.d("MainViewModel", "Address from ${acquired.source}: $metrics")
+                    addresses to timing
+                } else {
+                    emptyList<FormattedAddress>() to null
+                }
+            },
+            onResult = { (addresses, timing) ->
+                addressList = addresses
+                if (timing != null) timeToAddress = timing
+                showProgress = false
+            }
+        )
+    }
+
+    private companion object {
+        const val MIN_SEARCH_LENGTH = 3
+        // Suggestions don't follow maxResults, which is for the addresses of the current location.
+        const val MAX_SUGGESTIONS = 5
+        const val SEARCH_DEBOUNCE_MILLIS = 300L
+    }
 }
 
 enum class UiState {
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import android.location.Address
+
+/**
+ * Turns [Address]es into [FormattedAddress]es without the garbage of the obvious approach.
+ *
+ * The display string is built in a reused [StringBuilder]. Recently formatted addresses are
+ * kept in a small direct-mapped table keyed by the display text, and an address identical to
+ * one in the table is returned as that same instance, so reverse geocoding the same place
+ * again allocates nothing here. Locality, admin area, country and postal code repeat across
+ * different addresses, so they're interned in a [StringPool]. Both tables have a fixed size;
+ * a new entry simply replaces whatever was in its slot.
+ *
+ * Instances are thread-safe.
+ */
+class AddressFormatter(capacity: Int = DEFAULT_CAPACITY) {
+
+    private val builder = StringBuilder(INITIAL_BUILDER_CAPACITY)
+    private val components = StringPool(capacity)
+    private val recent = arrayOfNulls<FormattedAddress>(StringPool.tableSize(capacity))
+
+    @Synchronized
+    fun format(address: Address): FormattedAddress {
+        builder.setLength(0)
+        for (i in 0..address.maxAddressLineIndex) {
+            if (i > 0) builder.append('\n')
+            builder.append(address.getAddressLine(i))
+        }
+
+        val slot = StringPool.hashOf(builder) and (recent.size - 1)
+        val cached = recent[slot]
+        if (cached != null &&
+            cached.display.contentEquals(builder) &&
+            cached.locality == address.locality &&
+            cached.adminArea == address.adminArea &&
+            cached.countryName == address.countryName &&
+            cached.countryCode == address.countryCode &&
+            cached.postalCode == address.postalCode
+        ) {
+            return cached
+        }
+
+        return FormattedAddress(
+            display = builder.toString(),
+            locality = components.intern(address.locality),
+            adminArea = components.intern(address.adminArea),
+            countryName = components.intern(address.countryName),
+            countryCode = components.intern(address.countryCode),
+            postalCode = components.intern(address.postalCode)
+        ).also { recent[slot] = it }
+    }
+
+    companion object {
+        const val DEFAULT_CAPACITY = 256
+        private const val INITIAL_BUILDER_CAPACITY = 128
+
+        /** Formatter shared by [toFormattedAddress]. */
+        val Default = AddressFormatter()
+    }
+}
+
+/**
+ * Bounded pool of canonical strings: a direct-mapped table where each string has one slot,
+ * chosen by its hash. Looking up text that's already in the pool returns the pooled instance
+ * without allocating. Not thread-safe.
+ */
+class StringPool(capacity: Int) {
+
+    private val slots = arrayOfNulls<String>(tableSize(capacity))
+
+    /** Returns the pooled string equal to [text], adding it to the pool if needed. */
+    fun intern(text: CharSequence?): String? {
+        if (text == null) return null
+        val slot = hashOf(text) and (slots.size - 1)
+        val pooled = slots[slot]
+        if (pooled != null && pooled.contentEquals(text)) return pooled
+        return text.toString().also { slots[slot] = it }
+    }
+
+    companion object {
+        /** Smallest power of two at least [capacity]. */
+        internal fun tableSize(capacity: Int) =
+            Integer.highestOneBit((capacity - 1).coerceAtLeast(1)) shl 1
+
+        /** Same as [String.hashCode], spread so the low bits depend on every char. */
+        internal fun hashOf(text: CharSequence): Int {
+            var hash = 0
+            for (i in text.indices) hash = 31 * hash + text[i].code
+            return hash xor (hash ushr 16)
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import android.location.Location
+import com.google.android.gms.location.sample.locationaddress.data.cache.GeocodingCache
+import com.google.android.gms.location.sample.locationaddress.data.cache.Geohash
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.async
+import kotlinx.coroutines.launch
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Coordinates address requests made from the UI.
+ *
+ * - Only the latest request started with [launchLatest] delivers its result. Starting a new one
+ *   cancels the previous one, so a slow, stale lookup can't overwrite a newer answer.
+ * - Lookups from [geocode] for the same cell and maxResults share a single call to [load]. The
+ *   shared call runs in [scope] rather than in the caller, so it isn't cancelled along with a
+ *   superseded request: Geocoder blocks and can't be interrupted anyway, and letting it finish
+ *   means the next request from the same place can reuse it.
+ *
+ * Must be used from the thread [scope] dispatches to.
+ */
+class AddressRequestCoordinator(
+    private val scope: CoroutineScope,
+    private val precision: Int = GeocodingCache.DEFAULT_PRECISION,
+    private val load: suspend (Location, Int) -> List<FormattedAddress>
+) {
+
+    private val inFlight = HashMap<String, Deferred<List<FormattedAddress>>>()
+    private var latestJob: Job? = null
+    private var generation = 0L
+
+    private val requestCount = AtomicLong()
+    private val loadCount = AtomicLong()
+    private val supersededCount = AtomicLong()
+
+    /** Number of calls to [geocode]. */
+    val requests: Long
+        get() = requestCount.get()
+
+    /** Number of calls to [load]. */
+    val loads: Long
+        get() = loadCount.get()
+
+    /** Number of [geocode] calls answered by a lookup that was already in flight. */
+    val coalesced: Long
+        get() = requests - loads
+
+    /** Number of requests cancelled because a newer one was started. */
+    val superseded: Long
+        get() = supersededCount.get()
+
+    /**
+     * Cancels the previous request, if it's still running, and starts [request]. [onResult] is
+     * only called if no newer request has been started by the time [request] returns.
+     */
+    fun <T> launchLatest(request: suspend () -> T, onResult: (T) -> Unit): Job {
+        latestJob?.let {
+            if (it.isActive) {
+                supersededCount.incrementAndGet()
+                it.cancel()
+            }
+        }
+        val requestGeneration = ++generation
+        return scope.launch {
+            val result = request()
+            if (requestGeneration == generation) {
+                onResult(result)
+            }
+        }.also { latestJob = it }
+    }
+
+    /** Looks up addresses for [location], joining a lookup for the same cell if one is running. */
+    suspend fun geocode(location: Location, maxResults: Int): List<FormattedAddress> {
+        requestCount.incrementAndGet()
+        val key = "${Geohash.encode(location.latitude, location.longitude, precision)}_$maxResults"
+        val deferred = inFlight.getOrPut(key) {
+            loadCount.incrementAndGet()
+            scope.async(start = CoroutineStart.LAZY) {
+                try {
+                    load(location, maxResults)
+                } finally {
+                    inFlight.remove(key)
+                }
+            }
+        }
+        deferred.start()
+        return deferred.await()
+    }
+
+    override fun toString() =
+        "requests=$requests, loads=$loads, coalesced=$coalesced, superseded=$superseded"
+}
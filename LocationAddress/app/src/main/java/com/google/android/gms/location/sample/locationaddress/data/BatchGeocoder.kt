@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import com.google.android.gms.location.sample.locationaddress.data.cache.GeocodingCache
+import com.google.android.gms.location.sample.locationaddress.data.cache.Geohash
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+
+data class Coordinates(val latitude: Double, val longitude: Double)
+
+data class BatchGeocodeResult(val coordinates: Coordinates, val addresses: List<FormattedAddress>)
+
+/**
+ * Reverse geocodes many points at once, e.g. the points of a stored track.
+ *
+ * Points are grouped by [Geohash] cell at [precision], and each cell is only looked up once
+ * while points in it are waiting: every such point gets the addresses of the first point seen in
+ * it. A cell is forgotten once its last waiting point has been emitted, so memory stays bounded
+ * by the read-ahead window however long the input is; a later point in the same cell is answered
+ * by [api]'s cache. Lookups go through [api], with its deadline, hedging and error handling, run
+ * on [dispatcher], at most `concurrency` at a time, and results are emitted in input order.
+ */
+class BatchGeocoder(
+    private val api: GeocodingApi,
+    private val precision: Int = GeocodingCache.DEFAULT_PRECISION,
+    private val dispatcher: CoroutineDispatcher = Dispatchers.IO
+) {
+
+    @Inject
+    constructor(api: GeocodingApi, cache: GeocodingCache) :
+        this(api, cache.precision, Dispatchers.IO)
+
+    // A cell being looked up, and how many points read so far are waiting for it.
+    private class Cell(val key: String, val addresses: Deferred<List<FormattedAddress>>) {
+        var waiting = 0
+    }
+
+    private val pointCount = AtomicLong()
+    private val lookupCount = AtomicLong()
+
+    /** Number of points geocoded. */
+    val points: Long
+        get() = pointCount.get()
+
+    /** Number of cells looked up after deduplication, including those answered from the cache. */
+    val lookups: Long
+        get() = lookupCount.get()
+
+    /**
+     * Returns a flow of addresses for [coordinates], in the same order. Up to [concurrency]
+     * lookups run at once; collecting stops reading [coordinates] while the oldest point still
+     * waiting to be emitted is more than a few lookups behind.
+     */
+    fun geocode(
+        coordinates: Flow<Coordinates>,
+        maxResults: Int = 1,
+        concurrency: Int = DEFAULT_CONCURRENCY
+    ): Flow<BatchGeocodeResult> = flow {
+        require(concurrency > 0) { "concurrency must be positive" }
+        coroutineScope {
+            val permits = Semaphore(concurrency)
+            // Touched by both the reader and the emitter, which may run on different threads.
+            val cells = HashMap<String, Cell>()
+            val pending = Channel<Pair<Coordinates, Cell>>(concurrency * WINDOW_PER_LOOKUP)
+
+            launch {
+                coordinates.collect { point ->
+                    val key = Geohash.encode(point.latitude, point.longitude, precision)
+                    val cell = synchronized(cells) {
+                        cells.getOrPut(key) {
+                            lookupCount.incrementAndGet()
+                            val addresses = async(dispatcher) {
+                                permits.withPermit { lookUp(point, maxResults) }
+                            }
+                            Cell(key, addresses)
+                        }.also { it.waiting++ }
+                    }
+                    pending.send(point to cell)
+                }
+                pending.close()
+            }
+
+            for ((point, cell) in pending) {
+                val addresses = cell.addresses.await()
+                synchronized(cells) {
+                    if (--cell.waiting == 0) cells.remove(cell.key)
+                }
+                pointCount.incrementAndGet()
+                emit(BatchGeocodeResult(point, addresses))
+            }
+        }
+    }
+
+    private suspend fun lookUp(point: Coordinates, maxResults: Int) =
+        api.getFromLocation(point.latitude, point.longitude, maxResults)
+
+    companion object {
+        const val DEFAULT_CONCURRENCY = 4
+
+        // How many points may be read ahead of the one being emitted, per concurrent lookup.
+        private const val WINDOW_PER_LOOKUP = 4
+    }
+}
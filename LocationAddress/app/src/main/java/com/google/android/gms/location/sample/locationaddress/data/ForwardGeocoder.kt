@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import android.location.Address
+import android.location.Geocoder
+import androidx.annotation.WorkerThread
+import java.io.IOException
+
+/**
+ * Blocking forward geocoding, as done by [Geocoder.getFromLocationName]. See [ReverseGeocoder]
+ * for why this isn't just a Geocoder.
+ */
+fun interface ForwardGeocoder {
+
+    /** Returns up to [maxResults] addresses matching [locationName]. */
+    @WorkerThread
+    @Throws(IOException::class)
+    fun getFromLocationName(locationName: String, maxResults: Int): List<Address>
+}
+
+fun Geocoder.asForwardGeocoder() = ForwardGeocoder { locationName, maxResults ->
+    getFromLocationName(locationName, maxResults) ?: emptyList()
+}
@@ -16,41 +16,173 @@
 
 package com.google.android.gms.location.sample.locationaddress.data
 
-import android.location.Geocoder
+import android.location.Address
 import android.location.Location
 import android.util.Log
+import com.google.android.gms.location.sample.locationaddress.data.cache.GeocodingCache
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.selects.select
 import kotlinx.coroutines.withContext
+import kotlinx.coroutines.withTimeoutOrNull
 import java.io.IOException
+import java.util.concurrent.atomic.AtomicLong
 import javax.inject.Inject
+import javax.inject.Singleton
 
-data class FormattedAddress(val display: String)
+/**
+ * An address ready for display. The structured fields are filled in when the address came from
+ * an [Address] that had them.
+ */
+data class FormattedAddress(
+    val display: String,
+    val locality: String? = null,
+    val adminArea: String? = null,
+    val countryName: String? = null,
+    val countryCode: String? = null,
+    val postalCode: String? = null
+)
 
-/** Provides an API to search for addresses from a [Location]. */
-class GeocodingApi @Inject constructor(
-    private val geocoder: Geocoder
+/**
+ * Provides an API to search for addresses from a [Location]. Results are cached by [cache], if
+ * there is one, so repeated lookups from the same place don't go back to the [geocoder].
+ *
+ * Geocoder calls are bounded by [deadlineMillis]. If [hedging] is on and a call hasn't
+ * returned by the 95th percentile of past calls, a second, identical call is made and
+ * whichever returns first is used. Every call's latency is recorded in [latency].
+ */
+@Singleton
+class GeocodingApi(
+    private val geocoder: ReverseGeocoder,
+    private val cache: GeocodingCache?,
+    private val deadlineMillis: Long = DEFAULT_DEADLINE_MILLIS,
+    private val hedging: Boolean = true
 ) {
+
+    @Inject
+    constructor(geocoder: ReverseGeocoder, cache: GeocodingCache) :
+        this(geocoder, cache, DEFAULT_DEADLINE_MILLIS, true)
+
+    // Geocoder calls block and can't be interrupted, so they run in their own scope rather
+    // than the caller's. A call that loses a race or misses the deadline finishes in the
+    // background, and its latency is still recorded.
+    private val callScope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+
+    /** Latency of every Geocoder call, including failed and abandoned ones. */
+    val latency = LatencyHistogram()
+
+    private val hedgeCount = AtomicLong()
+    private val timeoutCount = AtomicLong()
+
+    /** Number of lookups that made a second, hedged call. */
+    val hedges: Long
+        get() = hedgeCount.get()
+
+    /** Number of lookups that gave up at the deadline. */
+    val timeouts: Long
+        get() = timeoutCount.get()
+
     // Geocoder specifically says that this call can use network and that it must not be called
     // from the main thread, so move it to the IO dispatcher.
     suspend fun getFromLocation(
         location: Location,
         maxResults: Int = 1
+    ): List<FormattedAddress> = getFromLocation(location.latitude, location.longitude, maxResults)
+
+    /**
+     * Looks up addresses for [latitude], [longitude]. Returns an empty list if the Geocoder
+     * failed, rejected the coordinates or didn't answer in time.
+     */
+    suspend fun getFromLocation(
+        latitude: Double,
+        longitude: Double,
+        maxResults: Int
     ): List<FormattedAddress> = withContext(Dispatchers.IO) {
-        try {
-            val addresses = geocoder.getFromLocation(
-                location.latitude,
-                location.longitude,
-                maxResults
-            ) ?: emptyList()
-            addresses.map { address ->
-                FormattedAddress(
-                    (0..address.maxAddressLineIndex)
-                        .joinToString("\n") { address.getAddressLine(it) }
-                )
+        cache?.get(latitude, longitude, maxResults)?.let {
+            Log.d(TAG, "Answered from cache: ${cache.stats}")
+            return@withContext it
+        }
+        val start = System.nanoTime()
+        val formatted = lookUp(latitude, longitude, maxResults).map { it.toFormattedAddress() }
+        // An empty result may just mean the backend was unavailable, so don't remember it.
+        if (formatted.isNotEmpty()) {
+            cache?.put(latitude, longitude, maxResults, formatted, System.nanoTime() - start)
+        }
+        formatted
+    }
+
+    private suspend fun lookUp(
+        latitude: Double,
+        longitude: Double,
+        maxResults: Int
+    ): List<Address> {
+        val addresses = withTimeoutOrNull(deadlineMillis) {
+            val first = startCall(latitude, longitude, maxResults)
+            if (!hedging) return@withTimeoutOrNull first.await().orEmpty()
+
+            val early = withTimeoutOrNull(hedgeDelayMillis()) { first.await() }
+            if (early != null) return@withTimeoutOrNull early
+
+            // The first call is slow or failed, so race it against a second one.
+            hedgeCount.incrementAndGet()
+            val pending = mutableListOf(first, startCall(latitude, longitude, maxResults))
+            while (pending.isNotEmpty()) {
+                val (finished, result) = select<Pair<Deferred<List<Address>?>, List<Address>?>> {
+                    pending.forEach { call -> call.onAwait { result -> call to result } }
+                }
+                if (result != null) return@withTimeoutOrNull result
+                pending.remove(finished)
             }
-        } catch (e: IOException) {
-            Log.w("GeocodingApi", "Error trying to get address from location.", e)
             emptyList()
         }
+        if (addresses == null) {
+            timeoutCount.incrementAndGet()
+            Log.w(TAG, "Geocoder didn't answer within ${deadlineMillis}ms: $latency")
+        }
+        return addresses.orEmpty()
+    }
+
+    // Starts a Geocoder call. Its result is null if it failed.
+    private fun startCall(latitude: Double, longitude: Double, maxResults: Int) = callScope.async {
+        val start = System.nanoTime()
+        try {
+            geocoder.getFromLocation(latitude, longitude, maxResults)
+        } catch (e: IOException) {
+            Log.w(TAG, "Error trying to get address from location.", e)
+            null
+        } catch (e: IllegalArgumentException) {
+            Log.w(TAG, "Invalid location for Geocoder.", e)
+            null
+        } finally {
+            latency.record(System.nanoTime() - start)
+        }
+    }
+
+    // Until there are enough samples for a meaningful percentile, hedge after a fixed delay.
+    private fun hedgeDelayMillis() =
+        if (latency.count < MIN_HEDGE_SAMPLES) {
+            DEFAULT_HEDGE_DELAY_MILLIS
+        } else {
+            latency.percentileMillis(HEDGE_PERCENTILE)
+                .coerceIn(MIN_HEDGE_DELAY_MILLIS, deadlineMillis)
+        }
+
+    companion object {
+        private const val TAG = "GeocodingApi"
+
+        const val DEFAULT_DEADLINE_MILLIS = 5000L
+        private const val HEDGE_PERCENTILE = 95.0
+        private const val MIN_HEDGE_SAMPLES = 20
+        private const val DEFAULT_HEDGE_DELAY_MILLIS = 1000L
+        private const val MIN_HEDGE_DELAY_MILLIS = 10L
     }
 }
+
+/**
+ * Joins the address lines of an [Address] into a single display string, and keeps its main
+ * structured fields. See [AddressFormatter].
+ */
+fun Address.toFormattedAddress() = AddressFormatter.Default.format(this)
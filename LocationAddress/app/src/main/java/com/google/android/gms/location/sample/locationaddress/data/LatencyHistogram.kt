@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Histogram of latencies in the style of HdrHistogram: values are counted in buckets whose
+ * width grows with the value, so every value is recorded to within about 6% of its size, from
+ * microseconds to hours, in a few kilobytes. Recording is lock-free and allocation-free, and
+ * percentiles can be read at any time while values are being recorded.
+ */
+class LatencyHistogram {
+
+    private val counts = AtomicLongArray(BUCKETS)
+    private val totalCount = AtomicLong()
+    private val totalMicros = AtomicLong()
+    private val maxMicros = AtomicLong()
+
+    val count: Long
+        get() = totalCount.get()
+
+    /** Records a latency of [nanos]. */
+    fun record(nanos: Long) {
+        val micros = (nanos / 1000).coerceIn(0L, MAX_MICROS)
+        counts.incrementAndGet(indexOf(micros))
+        totalCount.incrementAndGet()
+        totalMicros.addAndGet(micros)
+        var max = maxMicros.get()
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get()
+        }
+    }
+
+    /**
+     * Returns the latency in milliseconds at or below which [percent] of the recorded values
+     * fall, or 0 if nothing has been recorded.
+     */
+    fun percentileMillis(percent: Double): Long {
+        val total = count
+        if (total == 0L) return 0L
+        val target = Math.ceil(total * percent / 100).toLong().coerceIn(1L, total)
+        var seen = 0L
+        for (index in 0 until BUCKETS) {
+            seen += counts.get(index)
+            if (seen >= target) {
+                return minOf(highestValueAt(index), maxMicros.get()) / 1000
+            }
+        }
+        return maxMicros.get() / 1000
+    }
+
+    fun meanMillis(): Long {
+        val total = count
+        return if (total == 0L) 0L else totalMicros.get() / total / 1000
+    }
+
+    fun maxMillis() = maxMicros.get() / 1000
+
+    override fun toString() =
+        "count=$count, mean=${meanMillis()}ms, p50=${percentileMillis(50.0)}ms, " +
+            "p95=${percentileMillis(95.0)}ms, p99=${percentileMillis(99.0)}ms, " +
+            "p99.9=${percentileMillis(99.9)}ms, max=${maxMillis()}ms"
+
+    private companion object {
+        // Values below SUB_BUCKETS get a bucket each. Above that, each power of two is split
+        // into HALF buckets.
+        const val SUB_BUCKET_BITS = 5
+        const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+        const val HALF = SUB_BUCKETS / 2
+        const val MAX_MICROS = (1L shl 36) - 1 // About 19 hours.
+        const val BUCKETS = SUB_BUCKETS + (36 - SUB_BUCKET_BITS) * HALF
+
+        fun indexOf(micros: Long): Int {
+            if (micros < SUB_BUCKETS) return micros.toInt()
+            val shift = (63 - java.lang.Long.numberOfLeadingZeros(micros)) - (SUB_BUCKET_BITS - 1)
+            return SUB_BUCKETS + (shift - 1) * HALF + ((micros shr shift).toInt() - HALF)
+        }
+
+        fun highestValueAt(index: Int): Long {
+            if (index < SUB_BUCKETS) return index.toLong()
+            val shift = (index - SUB_BUCKETS) / HALF + 1
+            val subBucket = (index - SUB_BUCKETS) % HALF + HALF
+            return ((subBucket + 1).toLong() shl shift) - 1
+        }
+    }
+}
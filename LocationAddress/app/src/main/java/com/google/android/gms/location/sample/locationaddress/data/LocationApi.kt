@@ -17,22 +17,128 @@
 package com.google.android.gms.location.sample.locationaddress.data
 
 import android.location.Location
+import android.os.SystemClock
 import android.util.Log
 import com.google.android.gms.location.FusedLocationProviderClient
 import com.google.android.gms.location.LocationRequest
 import com.google.android.gms.tasks.CancellationTokenSource
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.async
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.selects.select
 import kotlinx.coroutines.tasks.await
+import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 
+/** Where an [AcquiredLocation] came from. */
+enum class LocationSource {
+    LAST_LOCATION, BALANCED_POWER, HIGH_ACCURACY
+}
+
+data class AcquiredLocation(val location: Location, val source: LocationSource)
+
+/**
+ * Decides which locations are good enough for [LocationApi.acquireLocation].
+ *
+ * A cached last location is used as is if it's at most [maxAgeMillis] old and accurate to
+ * [maxAccuracyMeters]. Otherwise a high accuracy request is made and, if [raceBalancedPower],
+ * a balanced power one alongside it, which often answers sooner from Wi-Fi or cell data; the
+ * first fix accurate to [maxAccuracyMeters] wins.
+ */
+data class LocationPolicy(
+    val maxAgeMillis: Long = TimeUnit.SECONDS.toMillis(30),
+    val maxAccuracyMeters: Float = 100f,
+    val raceBalancedPower: Boolean = true
+) {
+    fun isAccurate(location: Location) =
+        location.hasAccuracy() && location.accuracy <= maxAccuracyMeters
+
+    fun isFresh(location: Location) =
+        SystemClock.elapsedRealtimeNanos() - location.elapsedRealtimeNanos <=
+            TimeUnit.MILLISECONDS.toNanos(maxAgeMillis)
+}
+
 class LocationApi @Inject constructor(
-    private val locationProvider: FusedLocationProviderClient
+    private val locationProvider: FusedLocationProviderClient,
+    private val metrics: TimeToAddressMetrics
 ) {
 
-    suspend fun getCurrentLocation(): Location? {
+    /**
+     * Gets a location that satisfies [policy], taking the fastest route available. If no fix
+     * is accurate enough, returns the most accurate one received, preferring fixes that report
+     * an accuracy, or null if there were none.
+     */
+    suspend fun acquireLocation(policy: LocationPolicy = LocationPolicy()): AcquiredLocation? {
+        val start = System.nanoTime()
+        val acquired = getFreshLastLocation(policy) ?: requestLocation(policy)
+        if (acquired != null) {
+            metrics.recordLocation(acquired.source, System.nanoTime() - start)
+        } else {
+            metrics.recordFailure()
+        }
+        return acquired
+    }
+
+    private suspend fun getFreshLastLocation(policy: LocationPolicy): AcquiredLocation? {
+        val location = try {
+            locationProvider.lastLocation.await()
+        } catch (e: SecurityException) {
+            Log.w("LocationApi", "Couldn't get location, did you request location permissions?", e)
+            null
+        }
+        return if (location != null && policy.isFresh(location) && policy.isAccurate(location)) {
+            AcquiredLocation(location, LocationSource.LAST_LOCATION)
+        } else {
+            null
+        }
+    }
+
+    private suspend fun requestLocation(policy: LocationPolicy): AcquiredLocation? =
+        coroutineScope {
+            val pending = mutableMapOf<Deferred<Location?>, LocationSource>()
+            fun request(priority: Int, source: LocationSource) {
+                pending[async { getCurrentLocation(priority) }] = source
+            }
+            request(LocationRequest.PRIORITY_HIGH_ACCURACY, LocationSource.HIGH_ACCURACY)
+            if (policy.raceBalancedPower) {
+                request(
+                    LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY,
+                    LocationSource.BALANCED_POWER
+                )
+            }
+
+            var best: AcquiredLocation? = null
+            while (pending.isNotEmpty()) {
+                val (finished, location) = select<Pair<Deferred<Location?>, Location?>> {
+                    pending.keys.forEach { deferred ->
+                        deferred.onAwait { deferred to it }
+                    }
+                }
+                val source = checkNotNull(pending.remove(finished))
+                if (location == null) continue
+
+                val acquired = AcquiredLocation(location, source)
+                if (policy.isAccurate(location)) {
+                    // Good enough; cancelling the other request also cancels its fix.
+                    pending.keys.forEach { it.cancel() }
+                    return@coroutineScope acquired
+                }
+                if (best == null || isMoreAccurate(location, best.location)) {
+                    best = acquired
+                }
+            }
+            best
+        }
+
+    // A fix with an accuracy beats one without, whose accuracy reads as 0.
+    private fun isMoreAccurate(location: Location, other: Location) =
+        location.hasAccuracy() && (!other.hasAccuracy() || location.accuracy < other.accuracy)
+
+    private suspend fun getCurrentLocation(priority: Int): Location? {
         val cancellationTokenSource = CancellationTokenSource()
         return try {
             locationProvider.getCurrentLocation(
-                LocationRequest.PRIORITY_HIGH_ACCURACY,
+                priority,
                 cancellationTokenSource.token
             ).await(cancellationTokenSource)
         } catch (e: SecurityException) {
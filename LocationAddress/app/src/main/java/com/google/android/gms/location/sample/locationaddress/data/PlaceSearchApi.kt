@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import android.util.Log
+import android.util.LruCache
+import com.google.android.gms.location.sample.locationaddress.data.offline.PlaceTrie
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.IOException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+/**
+ * Provides an API to search for places by name.
+ *
+ * [suggest] answers from a local [PlaceTrie], if [loadTrie] returns one, and is cheap enough to
+ * call on every keystroke. The trie is loaded on a background thread as soon as this is created,
+ * and [suggest] returns nothing until it's ready rather than waiting. [search] asks [geocoder],
+ * which is slow and may use the network, so callers should debounce it; its results are also
+ * kept in a small LRU cache.
+ */
+class PlaceSearchApi(
+    private val geocoder: ForwardGeocoder,
+    cacheEntries: Int = DEFAULT_CACHE_ENTRIES,
+    loadTrie: () -> PlaceTrie?
+) {
+
+    @Volatile
+    private var trie: PlaceTrie? = null
+    private val loaded = CountDownLatch(1)
+
+    init {
+        thread(name = "PlaceTrieLoader", isDaemon = true) {
+            try {
+                trie = loadTrie()
+            } catch (e: IOException) {
+                Log.w(TAG, "Couldn't load place names, only searching with Geocoder.", e)
+            } finally {
+                loaded.countDown()
+            }
+        }
+    }
+
+    private val cache = LruCache<String, List<FormattedAddress>>(cacheEntries)
+
+    private val cacheHitCount = AtomicLong()
+    private val geocoderCallCount = AtomicLong()
+
+    /** Number of [search] calls answered from the cache. */
+    val cacheHits: Long
+        get() = cacheHitCount.get()
+
+    /** Number of calls made to [geocoder]. */
+    val geocoderCalls: Long
+        get() = geocoderCallCount.get()
+
+    /**
+     * Waits up to [timeoutMillis] for the trie to finish loading. Returns true if it's loaded,
+     * false if there's none, it failed to load or it's still loading.
+     */
+    fun awaitTrie(timeoutMillis: Long): Boolean {
+        loaded.await(timeoutMillis, TimeUnit.MILLISECONDS)
+        return trie != null
+    }
+
+    /**
+     * Returns local suggestions for places whose names start with [prefix], or none while the
+     * trie is still loading.
+     */
+    fun suggest(prefix: String, maxResults: Int): List<FormattedAddress> =
+        trie?.search(prefix, maxResults)?.map { FormattedAddress(it.label) } ?: emptyList()
+
+    /** Returns addresses matching [query] from the geocoder, or from the cache. */
+    suspend fun search(query: String, maxResults: Int): List<FormattedAddress> =
+        withContext(Dispatchers.IO) {
+            val key = "${PlaceTrie.normalize(query).trimEnd()}_$maxResults"
+            cache.get(key)?.let {
+                cacheHitCount.incrementAndGet()
+                return@withContext it
+            }
+            try {
+                geocoderCallCount.incrementAndGet()
+                val addresses = geocoder.getFromLocationName(query, maxResults)
+                    .map { it.toFormattedAddress() }
+                if (addresses.isNotEmpty()) cache.put(key, addresses)
+                addresses
+            } catch (e: IOException) {
+                Log.w(TAG, "Error trying to get addresses for '$query'.", e)
+                emptyList()
+            }
+        }
+
+    companion object {
+        private const val TAG = "PlaceSearchApi"
+
+        const val DEFAULT_CACHE_ENTRIES = 64
+    }
+}
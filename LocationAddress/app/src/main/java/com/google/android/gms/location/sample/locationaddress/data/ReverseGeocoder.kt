@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import android.location.Address
+import android.location.Geocoder
+import androidx.annotation.WorkerThread
+import java.io.IOException
+
+/**
+ * Blocking reverse geocoding, as done by [Geocoder]. Geocoder is final, so code that should be
+ * testable with a stand-in takes one of these instead; use [asReverseGeocoder] to adapt the
+ * real one.
+ */
+fun interface ReverseGeocoder {
+
+    /** Returns up to [maxResults] addresses near [latitude], [longitude]. */
+    @WorkerThread
+    @Throws(IOException::class)
+    fun getFromLocation(latitude: Double, longitude: Double, maxResults: Int): List<Address>
+}
+
+fun Geocoder.asReverseGeocoder() = ReverseGeocoder { latitude, longitude, maxResults ->
+    getFromLocation(latitude, longitude, maxResults) ?: emptyList()
+}
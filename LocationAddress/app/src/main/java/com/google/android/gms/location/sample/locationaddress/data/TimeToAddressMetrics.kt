@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/** How long one request took to get an address, and the mean over all requests so far. */
+data class TimeToAddress(val source: LocationSource, val millis: Long, val meanMillis: Long)
+
+/**
+ * Records how long it takes to get a location, and then an address, for each [LocationSource],
+ * so the effect of a [LocationPolicy] can be compared. Times are measured from when the user
+ * asked for an address.
+ */
+@Singleton
+class TimeToAddressMetrics @Inject constructor() {
+
+    private val sources = LocationSource.values()
+    private val locationCounts = LongArray(sources.size)
+    private val locationNanos = LongArray(sources.size)
+    private val addressCounts = LongArray(sources.size)
+    private val addressNanos = LongArray(sources.size)
+    private val maxAddressNanos = LongArray(sources.size)
+    private var failures = 0L
+
+    @Synchronized
+    fun recordLocation(source: LocationSource, nanos: Long) {
+        locationCounts[source.ordinal]++
+        locationNanos[source.ordinal] += nanos
+    }
+
+    /**
+     * Records an address lookup that finished [nanos] after it was asked for, and returns the
+     * timing to show for it.
+     */
+    @Synchronized
+    fun recordAddress(source: LocationSource, nanos: Long): TimeToAddress {
+        addressCounts[source.ordinal]++
+        addressNanos[source.ordinal] += nanos
+        if (nanos > maxAddressNanos[source.ordinal]) maxAddressNanos[source.ordinal] = nanos
+        return TimeToAddress(source, nanos / 1_000_000, meanTimeToAddressMillis())
+    }
+
+    /** Records a request that couldn't get a location at all. */
+    @Synchronized
+    fun recordFailure() {
+        failures++
+    }
+
+    /** Mean time to an address over all sources, in milliseconds. */
+    @Synchronized
+    fun meanTimeToAddressMillis(): Long {
+        val count = addressCounts.sum()
+        return if (count == 0L) 0L else addressNanos.sum() / count / 1_000_000
+    }
+
+    @Synchronized
+    override fun toString() = buildString {
+        append("time to address: mean ${meanTimeToAddressMillis()}ms")
+        sources.forEach { source ->
+            val i = source.ordinal
+            if (locationCounts[i] == 0L) return@forEach
+            append("; ${source.name}: ${locationCounts[i]} locations")
+            append(" in ${locationNanos[i] / locationCounts[i] / 1_000_000}ms")
+            if (addressCounts[i] > 0) {
+                append(", addresses in ${addressNanos[i] / addressCounts[i] / 1_000_000}ms")
+                append(" (max ${maxAddressNanos[i] / 1_000_000}ms)")
+            }
+        }
+        append("; failures: $failures")
+    }
+}
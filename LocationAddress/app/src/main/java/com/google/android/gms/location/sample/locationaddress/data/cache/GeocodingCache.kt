@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.cache
+
+import android.util.Log
+import android.util.LruCache
+import androidx.annotation.WorkerThread
+import com.google.android.gms.location.sample.locationaddress.data.FormattedAddress
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Two-tier cache of reverse geocoding results.
+ *
+ * Results are keyed by the [Geohash] cell of the location at [precision], the number of
+ * results asked for and the [locale] they're written in, so any location within the same cell is
+ * answered from the cache. Recent entries are kept in memory, and every entry is also written to
+ * [directory] so it survives process death. Entries older than [ttlMillis] are treated as missing
+ * in both tiers.
+ *
+ * Expired entries are deleted from [directory] by [trim], which also deletes the oldest entries
+ * while the directory holds more than [maxDiskBytes]. It runs on the first write after the cache
+ * is created, and then every [TRIM_INTERVAL_WRITES] writes.
+ *
+ * Methods that touch the disk tier must not be called on the main thread.
+ */
+class GeocodingCache(
+    private val directory: File,
+    val precision: Int = DEFAULT_PRECISION,
+    memoryEntries: Int = DEFAULT_MEMORY_ENTRIES,
+    private val ttlMillis: Long = DEFAULT_TTL_MILLIS,
+    private val maxDiskBytes: Long = DEFAULT_MAX_DISK_BYTES,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val locale: () -> Locale = Locale::getDefault
+) {
+
+    private class Entry(val timeMillis: Long, val addresses: List<FormattedAddress>)
+
+    private val memory = LruCache<String, Entry>(memoryEntries)
+
+    private val memoryHits = AtomicLong()
+    private val diskHits = AtomicLong()
+    private val misses = AtomicLong()
+    private val hitNanos = AtomicLong()
+    private val loadNanos = AtomicLong()
+    private val loads = AtomicLong()
+
+    // Starts at the interval so the first write trims.
+    private val writesSinceTrim = AtomicInteger(TRIM_INTERVAL_WRITES)
+
+    val stats: GeocodingCacheStats
+        get() = GeocodingCacheStats(
+            memoryHits = memoryHits.get(),
+            diskHits = diskHits.get(),
+            misses = misses.get(),
+            hitNanos = hitNanos.get(),
+            loadNanos = loadNanos.get(),
+            loads = loads.get()
+        )
+
+    /** Returns the cached results for [latitude], [longitude], or null if there are none. */
+    @WorkerThread
+    fun get(latitude: Double, longitude: Double, maxResults: Int): List<FormattedAddress>? {
+        val start = System.nanoTime()
+        val key = key(latitude, longitude, maxResults)
+        val now = clock()
+
+        val cached = memory.get(key)
+        if (cached != null && !isExpired(cached, now)) {
+            memoryHits.incrementAndGet()
+            hitNanos.addAndGet(System.nanoTime() - start)
+            return cached.addresses
+        }
+
+        val stored = read(key)
+        if (stored != null && !isExpired(stored, now)) {
+            memory.put(key, stored)
+            diskHits.incrementAndGet()
+            hitNanos.addAndGet(System.nanoTime() - start)
+            return stored.addresses
+        }
+
+        if (cached != null) memory.remove(key)
+        if (stored != null) file(key).delete()
+        misses.incrementAndGet()
+        return null
+    }
+
+    /**
+     * Stores [addresses] for [latitude], [longitude]. [loadNanos] is how long they took to look
+     * up, and is used to estimate how much time hits save.
+     */
+    @WorkerThread
+    fun put(
+        latitude: Double,
+        longitude: Double,
+        maxResults: Int,
+        addresses: List<FormattedAddress>,
+        loadNanos: Long
+    ) {
+        this.loadNanos.addAndGet(loadNanos)
+        loads.incrementAndGet()
+
+        val key = key(latitude, longitude, maxResults)
+        val entry = Entry(clock(), addresses)
+        memory.put(key, entry)
+        write(key, entry)
+
+        if (writesSinceTrim.incrementAndGet() >= TRIM_INTERVAL_WRITES) {
+            writesSinceTrim.set(0)
+            trim()
+        }
+    }
+
+    /**
+     * Deletes expired entries from the disk tier, then the oldest entries until it holds at most
+     * [maxDiskBytes]. Returns the number of files deleted.
+     */
+    @WorkerThread
+    fun trim(): Int {
+        val files = directory.listFiles() ?: return 0
+        val now = clock()
+        var deleted = 0
+        var totalBytes = 0L
+        val kept = ArrayList<File>(files.size)
+        for (file in files) {
+            // Entry files are stamped with the time they were written, see write().
+            if (now - file.lastModified() > ttlMillis) {
+                if (file.delete()) deleted++
+            } else {
+                kept += file
+                totalBytes += file.length()
+            }
+        }
+        if (totalBytes > maxDiskBytes) {
+            kept.sortBy { it.lastModified() }
+            for (file in kept) {
+                if (totalBytes <= maxDiskBytes) break
+                val length = file.length()
+                if (file.delete()) {
+                    deleted++
+                    totalBytes -= length
+                }
+            }
+        }
+        return deleted
+    }
+
+    /** Removes every entry from both tiers. */
+    @WorkerThread
+    fun clear() {
+        memory.evictAll()
+        directory.listFiles()?.forEach { it.delete() }
+    }
+
+    // Addresses are written in the Geocoder's locale, so a change of language is a miss.
+    private fun key(latitude: Double, longitude: Double, maxResults: Int) =
+        "${Geohash.encode(latitude, longitude, precision)}_${maxResults}_" +
+            locale().toLanguageTag()
+
+    private fun isExpired(entry: Entry, now: Long) = now - entry.timeMillis > ttlMillis
+
+    private fun file(key: String) = File(directory, key)
+
+    private fun read(key: String): Entry? {
+        val file = file(key)
+        if (!file.exists()) return null
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                if (input.readInt() != FORMAT) throw IOException("Unknown format")
+                val timeMillis = input.readLong()
+                val addresses = List(input.readInt()) {
+                    FormattedAddress(
+                        display = input.readUTF(),
+                        locality = input.readOptionalUTF(),
+                        adminArea = input.readOptionalUTF(),
+                        countryName = input.readOptionalUTF(),
+                        countryCode = input.readOptionalUTF(),
+                        postalCode = input.readOptionalUTF()
+                    )
+                }
+                Entry(timeMillis, addresses)
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Discarding unreadable cache entry $key", e)
+            file.delete()
+            null
+        }
+    }
+
+    private fun write(key: String, entry: Entry) {
+        // Write to a temporary file first, so readers never see a partially written entry.
+        val file = file(key)
+        val temp = File(directory, "$key.tmp")
+        try {
+            directory.mkdirs()
+            DataOutputStream(temp.outputStream().buffered()).use { output ->
+                output.writeInt(FORMAT)
+                output.writeLong(entry.timeMillis)
+                output.writeInt(entry.addresses.size)
+                entry.addresses.forEach {
+                    output.writeUTF(it.display)
+                    output.writeOptionalUTF(it.locality)
+                    output.writeOptionalUTF(it.adminArea)
+                    output.writeOptionalUTF(it.countryName)
+                    output.writeOptionalUTF(it.countryCode)
+                    output.writeOptionalUTF(it.postalCode)
+                }
+            }
+            if (!temp.renameTo(file)) throw IOException("Couldn't rename $temp")
+            file.setLastModified(entry.timeMillis)
+        } catch (e: IOException) {
+            Log.w(TAG, "Couldn't write cache entry $key", e)
+            temp.delete()
+        }
+    }
+
+    private fun DataInputStream.readOptionalUTF(): String? =
+        if (readBoolean()) readUTF() else null
+
+    private fun DataOutputStream.writeOptionalUTF(value: String?) {
+        writeBoolean(value != null)
+        if (value != null) writeUTF(value)
+    }
+
+    companion object {
+        private const val TAG = "GeocodingCache"
+
+        // Written at the start of every entry, and changed whenever the layout changes, so
+        // entries in an old layout are discarded instead of misread.
+        private const val FORMAT = 0x47430002
+
+        /** Cells about 150 m across, roughly a city block. */
+        const val DEFAULT_PRECISION = 7
+        const val DEFAULT_MEMORY_ENTRIES = 64
+        val DEFAULT_TTL_MILLIS = TimeUnit.DAYS.toMillis(7)
+
+        /** Room for about 20,000 entries of a few hundred bytes each. */
+        const val DEFAULT_MAX_DISK_BYTES = 4L * 1024 * 1024
+        const val TRIM_INTERVAL_WRITES = 100
+    }
+}
+
+/** Hit and miss counts for a [GeocodingCache]. */
+data class GeocodingCacheStats(
+    val memoryHits: Long,
+    val diskHits: Long,
+    val misses: Long,
+    val hitNanos: Long,
+    val loadNanos: Long,
+    val loads: Long
+) {
+    val hits: Long
+        get() = memoryHits + diskHits
+
+    val hitRatio: Double
+        get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+
+    /**
+     * Estimated time saved by hits: the average time a lookup took when it missed, times the
+     * number of hits, less the time spent answering hits.
+     */
+    val savedMillis: Long
+        get() {
+            if (loads == 0L) return 0L
+            return (hits * (loadNanos / loads) - hitNanos) / 1_000_000
+        }
+
+    override fun toString() =
+        "hits=$hits (memory=$memoryHits, disk=$diskHits), misses=$misses, " +
+            "hitRatio=${"%.2f".format(hitRatio)}, saved=${savedMillis}ms"
+}
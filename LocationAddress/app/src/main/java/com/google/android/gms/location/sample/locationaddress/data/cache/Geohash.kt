@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.cache
+
+/**
+ * Encodes coordinates as geohashes. Nearby points share a prefix, so a geohash at a fixed
+ * precision names the cell a point falls in: about 5 km across at precision 5, 150 m at 7 and
+ * 5 m at 9.
+ */
+object Geohash {
+
+    private const val BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz"
+
+    /** Returns the geohash of [latitude], [longitude] with [precision] characters. */
+    fun encode(latitude: Double, longitude: Double, precision: Int): String {
+        require(precision in 1..12) { "precision must be in 1..12" }
+        var minLat = -90.0
+        var maxLat = 90.0
+        var minLng = -180.0
+        var maxLng = 180.0
+        val hash = CharArray(precision)
+        // Bits alternate between longitude and latitude, starting with longitude.
+        var evenBit = true
+        for (i in 0 until precision) {
+            var index = 0
+            for (bit in 0 until 5) {
+                index = index shl 1
+                if (evenBit) {
+                    val mid = (minLng + maxLng) / 2
+                    if (longitude >= mid) {
+                        index = index or 1
+                        minLng = mid
+                    } else {
+                        maxLng = mid
+                    }
+                } else {
+                    val mid = (minLat + maxLat) / 2
+                    if (latitude >= mid) {
+                        index = index or 1
+                        minLat = mid
+                    } else {
+                        maxLat = mid
+                    }
+                }
+                evenBit = !evenBit
+            }
+            hash[i] = BASE32[index]
+        }
+        return String(hash)
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.offline
+
+import java.io.BufferedReader
+
+/** A place read from a GeoNames dump. */
+data class GeoName(
+    val name: String,
+    val label: String,
+    val latitude: Double,
+    val longitude: Double,
+    val population: Long
+)
+
+/** Reads the places dumps published at https://download.geonames.org/export/dump/. */
+object GeoNames {
+
+    /**
+     * Calls [onPlace] for each place in [reader]. Each line has tab-separated fields, of which
+     * we use the name (1), latitude (4), longitude (5), country code (8), admin1 code (10) and
+     * population (14). Malformed lines are skipped.
+     */
+    fun read(reader: BufferedReader, onPlace: (GeoName) -> Unit) {
+        reader.forEachLine { line ->
+            val fields = line.split('\t')
+            if (fields.size <= 10) return@forEachLine
+            val latitude = fields[4].toDoubleOrNull() ?: return@forEachLine
+            val longitude = fields[5].toDoubleOrNull() ?: return@forEachLine
+            // Many countries use numeric admin1 codes, which mean nothing to users.
+            val admin1 = fields[10].takeIf { code -> code.none { it.isDigit() } }.orEmpty()
+            val label = listOf(fields[1], admin1, fields[8])
+                .filter { it.isNotEmpty() }
+                .joinToString(", ")
+            val population = fields.getOrNull(14)?.toLongOrNull() ?: 0L
+            onPlace(GeoName(fields[1], label, latitude, longitude, population))
+        }
+    }
+}
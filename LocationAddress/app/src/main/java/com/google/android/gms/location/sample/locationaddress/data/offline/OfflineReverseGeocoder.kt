@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.offline
+
+import android.content.Context
+import android.location.Address
+import android.util.Log
+import com.google.android.gms.location.sample.locationaddress.data.ReverseGeocoder
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+
+/**
+ * [ReverseGeocoder] which answers from a local [PlaceIndex], and only asks [fallback] when
+ * there's no place within [maxDistanceMeters] or the index couldn't be loaded.
+ *
+ * The index is loaded by [loadIndex] on a background thread as soon as this is created, which
+ * can take seconds the first time. Until it's ready, lookups go straight to [fallback] instead of
+ * waiting, so loading never counts against a caller's deadline.
+ */
+class OfflineReverseGeocoder(
+    private val fallback: ReverseGeocoder,
+    private val maxDistanceMeters: Double = DEFAULT_MAX_DISTANCE_METERS,
+    loadIndex: () -> PlaceIndex
+) : ReverseGeocoder {
+
+    @Volatile
+    private var index: PlaceIndex? = null
+    private val loaded = CountDownLatch(1)
+
+    init {
+        thread(name = "PlaceIndexLoader", isDaemon = true) {
+            try {
+                index = loadIndex()
+            } catch (e: IOException) {
+                Log.w(TAG, "Couldn't load place index, using the fallback geocoder.", e)
+            } finally {
+                loaded.countDown()
+            }
+        }
+    }
+
+    private val hitCount = AtomicLong()
+    private val fallbackCount = AtomicLong()
+
+    /** Number of lookups answered from the index. */
+    val hits: Long
+        get() = hitCount.get()
+
+    /** Number of lookups passed to the fallback geocoder. */
+    val fallbacks: Long
+        get() = fallbackCount.get()
+
+    /**
+     * Waits up to [timeoutMillis] for the index to finish loading. Returns true if it's loaded,
+     * false if it failed to load or is still loading.
+     */
+    fun awaitIndex(timeoutMillis: Long): Boolean {
+        loaded.await(timeoutMillis, TimeUnit.MILLISECONDS)
+        return index != null
+    }
+
+    override fun getFromLocation(
+        latitude: Double,
+        longitude: Double,
+        maxResults: Int
+    ): List<Address> {
+        val places = try {
+            index?.nearest(latitude, longitude, maxResults, maxDistanceMeters)
+        } catch (e: IOException) {
+            Log.w(TAG, "Place index is damaged, using the fallback geocoder.", e)
+            index = null
+            null
+        }
+        if (places.isNullOrEmpty()) {
+            fallbackCount.incrementAndGet()
+            return fallback.getFromLocation(latitude, longitude, maxResults)
+        }
+        hitCount.incrementAndGet()
+        return places.map { place ->
+            Address(Locale.getDefault()).apply {
+                this.latitude = place.latitude
+                this.longitude = place.longitude
+                featureName = place.label
+                setAddressLine(0, place.label)
+            }
+        }
+    }
+
+    companion object {
+        private const val TAG = "OfflineReverseGeocoder"
+
+        const val DEFAULT_MAX_DISTANCE_METERS = 5_000.0
+
+        // Part of every index file name. Change it whenever the index layout changes.
+        private const val INDEX_VERSION = 1
+
+        /**
+         * Loads the index for the GeoNames [asset] (for example cities500.txt from
+         * https://download.geonames.org/export/dump/). The index is built the first time and
+         * kept in the app's files directory, then memory-mapped from there.
+         *
+         * The file name includes the index version and the time the app was installed or
+         * updated, so an index built from an older copy of the asset is never opened; such files
+         * are deleted. A file that can't be opened is rebuilt.
+         */
+        @Throws(IOException::class)
+        fun loadGeoNamesAsset(context: Context, asset: String): PlaceIndex {
+            val directory = File(context.filesDir, "places")
+            val installTime = context.packageManager
+                .getPackageInfo(context.packageName, 0)
+                .lastUpdateTime
+            val name = "$asset.v$INDEX_VERSION.$installTime.kdt"
+            directory.listFiles { file -> file.name.startsWith("$asset.") && file.name != name }
+                ?.forEach { it.delete() }
+
+            val file = File(directory, name)
+            if (file.exists()) {
+                try {
+                    return PlaceIndex.open(file)
+                } catch (e: IOException) {
+                    Log.w(TAG, "Rebuilding damaged place index $file", e)
+                    file.delete()
+                }
+            }
+            buildIndex(context, asset, file)
+            return PlaceIndex.open(file)
+        }
+
+        @Throws(IOException::class)
+        private fun buildIndex(context: Context, asset: String, file: File) {
+            val start = System.nanoTime()
+            val builder = PlaceIndexBuilder()
+            context.assets.open(asset).bufferedReader().use { reader ->
+                GeoNames.read(reader) { builder.add(it.latitude, it.longitude, it.label) }
+            }
+
+            // Build into a temporary file, so a half-written index is never opened.
+            file.parentFile?.mkdirs()
+            val temp = File(file.path + ".tmp")
+            builder.writeTo(temp)
+            if (!temp.renameTo(file)) throw IOException("Couldn't rename $temp")
+            Log.d(
+                TAG,
+                "Indexed ${builder.size} places in ${(System.nanoTime() - start) / 1_000_000}ms"
+            )
+        }
+    }
+}
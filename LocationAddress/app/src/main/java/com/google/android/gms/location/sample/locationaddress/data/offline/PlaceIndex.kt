@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.offline
+
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import kotlin.math.cos
+import kotlin.math.sqrt
+
+/** A place found by [PlaceIndex.nearest]. */
+data class NearbyPlace(
+    val label: String,
+    val latitude: Double,
+    val longitude: Double,
+    val distanceMeters: Double
+)
+
+/**
+ * Read-only index of named places, for answering nearest-place queries without the network.
+ *
+ * The index is a file holding an implicit k-d tree: records are stored in an order where the
+ * node for any range of records is the one in the middle, with the records before it on one
+ * side of its splitting plane and the records after it on the other. Splits alternate between
+ * latitude and longitude. There are no pointers, so the file is memory-mapped and searched in
+ * place; nothing is loaded onto the heap except the labels of the places returned.
+ *
+ * Layout, big-endian:
+ * - header: magic, record count, offset of the label section
+ * - records: latitude (float), longitude (float), label offset (int)
+ * - labels: length (unsigned short) followed by UTF-8 bytes
+ *
+ * Distances are equirectangular approximations around the query point, which are accurate to
+ * well under 1% at the distances that matter here. Queries don't wrap around the antimeridian.
+ *
+ * Instances are thread-safe. Build index files with [PlaceIndexBuilder].
+ */
+class PlaceIndex private constructor(private val buffer: ByteBuffer) {
+
+    /** Number of places in the index. */
+    val size = buffer.getInt(COUNT_OFFSET)
+
+    private val labelsOffset = buffer.getInt(LABELS_OFFSET_OFFSET)
+
+    /**
+     * Returns up to [maxResults] places within [maxDistanceMeters] of [latitude], [longitude],
+     * nearest first. Throws [IOException] if a label runs past the end of the file.
+     */
+    @Throws(IOException::class)
+    fun nearest(
+        latitude: Double,
+        longitude: Double,
+        maxResults: Int,
+        maxDistanceMeters: Double = Double.MAX_VALUE
+    ): List<NearbyPlace> {
+        if (maxResults <= 0 || size == 0) return emptyList()
+        val search = Search(
+            latitude.toFloat(),
+            longitude.toFloat(),
+            cos(Math.toRadians(latitude)).toFloat(),
+            maxResults,
+            (maxDistanceMeters / METERS_PER_DEGREE).let { it * it }.toFloat()
+        )
+        search.visit(0, size, 0)
+
+        return List(search.found) { i ->
+            val record = search.records[i]
+            NearbyPlace(
+                label = label(record),
+                latitude = latitudeOf(record).toDouble(),
+                longitude = longitudeOf(record).toDouble(),
+                distanceMeters = sqrt(search.distances[i].toDouble()) * METERS_PER_DEGREE
+            )
+        }
+    }
+
+    private fun offsetOf(record: Int) = HEADER_SIZE + record * RECORD_SIZE
+
+    private fun latitudeOf(record: Int) = buffer.getFloat(offsetOf(record))
+
+    private fun longitudeOf(record: Int) = buffer.getFloat(offsetOf(record) + 4)
+
+    private fun label(record: Int): String {
+        val offset = labelsOffset + buffer.getInt(offsetOf(record) + 8)
+        if (offset < labelsOffset || offset > buffer.limit() - 2) {
+            throw IOException("Label of place $record is outside the index")
+        }
+        val length = buffer.getShort(offset).toInt() and 0xffff
+        if (length > buffer.limit() - offset - 2) {
+            throw IOException("Label of place $record runs past the end of the index")
+        }
+        val bytes = ByteArray(length)
+        // Absolute bulk gets need API 33, so read from a duplicate to keep the buffer shared.
+        buffer.duplicate().apply { position(offset + 2) }.get(bytes)
+        return String(bytes, Charsets.UTF_8)
+    }
+
+    /**
+     * State of one k-nearest search. The best records found so far are kept in [records] and
+     * [distances], sorted by squared distance in degrees.
+     */
+    private inner class Search(
+        val latitude: Float,
+        val longitude: Float,
+        val longitudeScale: Float,
+        val maxResults: Int,
+        var limit: Float
+    ) {
+        val records = IntArray(maxResults)
+        val distances = FloatArray(maxResults)
+        var found = 0
+
+        fun visit(from: Int, to: Int, depth: Int) {
+            if (from >= to) return
+            val node = (from + to) ushr 1
+            val nodeLatitude = latitudeOf(node)
+            val nodeLongitude = longitudeOf(node)
+
+            val dy = nodeLatitude - latitude
+            val dx = (nodeLongitude - longitude) * longitudeScale
+            offer(node, dx * dx + dy * dy)
+
+            // Search the side of the split holding the query first, then the other side only
+            // if the splitting plane is closer than the worst result we'd keep.
+            val planeDistance = if (depth % 2 == 0) dy else dx
+            if (planeDistance > 0) {
+                visit(from, node, depth + 1)
+                if (planeDistance * planeDistance < limit) visit(node + 1, to, depth + 1)
+            } else {
+                visit(node + 1, to, depth + 1)
+                if (planeDistance * planeDistance < limit) visit(from, node, depth + 1)
+            }
+        }
+
+        private fun offer(record: Int, distance: Float) {
+            if (distance >= limit) return
+            // Insertion sort into the result arrays, dropping the farthest if they're full.
+            var i = if (found < maxResults) found++ else maxResults - 1
+            while (i > 0 && distances[i - 1] > distance) {
+                records[i] = records[i - 1]
+                distances[i] = distances[i - 1]
+                i--
+            }
+            records[i] = record
+            distances[i] = distance
+            if (found == maxResults) limit = distances[maxResults - 1]
+        }
+    }
+
+    companion object {
+        internal const val MAGIC = 0x4b445431 // "KDT1"
+        internal const val HEADER_SIZE = 12
+        internal const val RECORD_SIZE = 12
+        private const val COUNT_OFFSET = 4
+        private const val LABELS_OFFSET_OFFSET = 8
+
+        // Mean length of a degree of latitude.
+        private const val METERS_PER_DEGREE = 111_195.0
+
+        /**
+         * Memory-maps the index in [file]. Throws [IOException] if the file isn't an index, or is
+         * too short for the number of places its header declares.
+         */
+        @Throws(IOException::class)
+        fun open(file: File): PlaceIndex {
+            val buffer = RandomAccessFile(file, "r").use {
+                it.channel.map(FileChannel.MapMode.READ_ONLY, 0, it.length())
+            }
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw IOException("$file is not a place index")
+            }
+            val count = buffer.getInt(COUNT_OFFSET)
+            val labelsOffset = buffer.getInt(LABELS_OFFSET_OFFSET)
+            // Long arithmetic, so a damaged count can't overflow into a plausible offset.
+            val recordsEnd = HEADER_SIZE + count.toLong() * RECORD_SIZE
+            if (count < 0 || labelsOffset.toLong() != recordsEnd || recordsEnd > buffer.limit()) {
+                throw IOException(
+                    "$file declares $count places but is only ${buffer.limit()} bytes long"
+                )
+            }
+            return PlaceIndex(buffer)
+        }
+    }
+}
+
+/**
+ * Collects places and writes them to a file that can be opened with [PlaceIndex.open].
+ */
+class PlaceIndexBuilder {
+
+    private var latitudes = FloatArray(INITIAL_CAPACITY)
+    private var longitudes = FloatArray(INITIAL_CAPACITY)
+    private val labels = ArrayList<String>(INITIAL_CAPACITY)
+
+    val size: Int
+        get() = labels.size
+
+    fun add(latitude: Double, longitude: Double, label: String) {
+        if (size == latitudes.size) {
+            latitudes = latitudes.copyOf(size * 2)
+            longitudes = longitudes.copyOf(size * 2)
+        }
+        latitudes[size] = latitude.toFloat()
+        longitudes[size] = longitude.toFloat()
+        labels += label
+    }
+
+    /** Arranges the places into a k-d tree and writes it to [file]. */
+    @Throws(IOException::class)
+    fun writeTo(file: File) {
+        val order = IntArray(size) { it }
+        arrange(order, 0, size, 0)
+
+        // Labels are written in record order, so their offsets are known up front.
+        val encoded = Array(size) { labels[order[it]].toByteArray(Charsets.UTF_8) }
+        DataOutputStream(file.outputStream().buffered()).use { output ->
+            output.writeInt(PlaceIndex.MAGIC)
+            output.writeInt(size)
+            output.writeInt(PlaceIndex.HEADER_SIZE + size * PlaceIndex.RECORD_SIZE)
+            var labelOffset = 0
+            for (i in 0 until size) {
+                output.writeFloat(latitudes[order[i]])
+                output.writeFloat(longitudes[order[i]])
+                output.writeInt(labelOffset)
+                labelOffset += 2 + minOf(encoded[i].size, MAX_LABEL_BYTES)
+            }
+            encoded.forEach { bytes ->
+                val length = minOf(bytes.size, MAX_LABEL_BYTES)
+                output.writeShort(length)
+                output.write(bytes, 0, length)
+            }
+        }
+    }
+
+    // Puts the median of [from, to) by the split dimension in the middle, smaller ones before
+    // it and larger ones after it, then does the same for each side with the other dimension.
+    private fun arrange(order: IntArray, from: Int, to: Int, depth: Int) {
+        if (to - from <= 1) return
+        val keys = if (depth % 2 == 0) latitudes else longitudes
+        val middle = (from + to) ushr 1
+        select(order, keys, from, to - 1, middle)
+        arrange(order, from, middle, depth + 1)
+        arrange(order, middle + 1, to, depth + 1)
+    }
+
+    // Quickselect: partially sorts order[left..right] so order[k] holds the k-th smallest key.
+    private fun select(order: IntArray, keys: FloatArray, left: Int, right: Int, k: Int) {
+        var lo = left
+        var hi = right
+        while (hi > lo) {
+            val pivot = keys[order[(lo + hi) ushr 1]]
+            var i = lo
+            var j = hi
+            while (i <= j) {
+                while (keys[order[i]] < pivot) i++
+                while (keys[order[j]] > pivot) j--
+                if (i <= j) {
+                    val swap = order[i]
+                    order[i] = order[j]
+                    order[j] = swap
+                    i++
+                    j--
+                }
+            }
+            when {
+                k <= j -> hi = j
+                k >= i -> lo = i
+                else -> return
+            }
+        }
+    }
+
+    private companion object {
+        const val INITIAL_CAPACITY = 1024
+        const val MAX_LABEL_BYTES = 0xffff
+    }
+}
@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.offline
+
+import android.content.Context
+import android.util.Log
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.text.Normalizer
+import java.util.Locale
+
+/** A place suggested by [PlaceTrie.search]. */
+data class PlaceSuggestion(val label: String, val latitude: Double, val longitude: Double)
+
+/**
+ * Prefix index of place names, for suggesting places as the user types.
+ *
+ * Places are sorted by their [normalized][normalize] name, so the places under any trie node
+ * are a contiguous range. The trie is only expanded while a range holds more than
+ * [BUCKET_SIZE] places; smaller ranges are left as buckets that are scanned. Every node stores
+ * the [TOP_K] highest scoring places in its range, so a query costs one step per character of
+ * the prefix, plus at most one bucket scan, regardless of how many places match.
+ *
+ * Everything, including the labels, is held in primitive arrays rather than objects per place
+ * or node, which keeps the heap small and the garbage collector out of the way. The arrays can
+ * be saved with [writeTo] and loaded again with [read], which is much faster than building.
+ * Instances are immutable and thread-safe. Build them with [PlaceTrieBuilder].
+ */
+class PlaceTrie internal constructor(
+    private val keyChars: CharArray,
+    private val keyOffsets: IntArray,
+    private val labelChars: CharArray,
+    private val labelOffsets: IntArray,
+    private val latitudes: FloatArray,
+    private val longitudes: FloatArray,
+    private val scores: LongArray,
+    private val nodeChars: CharArray,
+    private val firstChild: IntArray,
+    private val nextSibling: IntArray,
+    private val nodeStart: IntArray,
+    private val nodeEnd: IntArray,
+    private val top: IntArray
+) {
+
+    /** Number of places in the trie. */
+    val size: Int
+        get() = latitudes.size
+
+    /** Number of trie nodes, including buckets. */
+    val nodeCount: Int
+        get() = nodeChars.size
+
+    /**
+     * Returns up to [maxResults] (at most [TOP_K]) places whose names start with [prefix],
+     * highest scoring first.
+     */
+    fun search(prefix: String, maxResults: Int): List<PlaceSuggestion> {
+        val key = normalize(prefix)
+        val limit = maxResults.coerceAtMost(TOP_K)
+        if (key.isEmpty() || limit <= 0 || size == 0) return emptyList()
+
+        var node = ROOT
+        for (depth in key.indices) {
+            if (isBucket(node)) return scan(node, key, limit)
+            var child = firstChild[node]
+            while (child >= 0 && nodeChars[child] != key[depth]) {
+                child = nextSibling[child]
+            }
+            if (child < 0) return emptyList()
+            node = child
+        }
+
+        // Every place under the node matches, and the best of them were picked when building.
+        val results = ArrayList<PlaceSuggestion>(limit)
+        for (i in 0 until limit) {
+            val place = top[node * TOP_K + i]
+            if (place < 0) break
+            results += suggestion(place)
+        }
+        return results
+    }
+
+    private fun isBucket(node: Int) = nodeEnd[node] - nodeStart[node] <= BUCKET_SIZE
+
+    private fun scan(node: Int, key: String, limit: Int): List<PlaceSuggestion> {
+        val best = IntArray(limit) { -1 }
+        for (place in nodeStart[node] until nodeEnd[node]) {
+            if (startsWith(place, key)) insertByScore(best, place, scores)
+        }
+        return best.filter { it >= 0 }.map(::suggestion)
+    }
+
+    private fun startsWith(place: Int, key: String): Boolean {
+        val offset = keyOffsets[place]
+        if (keyOffsets[place + 1] - offset < key.length) return false
+        for (i in key.indices) {
+            if (keyChars[offset + i] != key[i]) return false
+        }
+        return true
+    }
+
+    private fun suggestion(place: Int) = PlaceSuggestion(
+        String(labelChars, labelOffsets[place], labelOffsets[place + 1] - labelOffsets[place]),
+        latitudes[place].toDouble(),
+        longitudes[place].toDouble()
+    )
+
+    /** Saves the trie to [file], to be loaded again with [read]. */
+    @Throws(IOException::class)
+    fun writeTo(file: File) {
+        DataOutputStream(file.outputStream().buffered()).use { output ->
+            output.writeInt(MAGIC)
+            output.writeChars(keyChars)
+            output.writeInts(keyOffsets)
+            output.writeChars(labelChars)
+            output.writeInts(labelOffsets)
+            output.writeFloats(latitudes)
+            output.writeFloats(longitudes)
+            output.writeLongs(scores)
+            output.writeChars(nodeChars)
+            output.writeInts(firstChild)
+            output.writeInts(nextSibling)
+            output.writeInts(nodeStart)
+            output.writeInts(nodeEnd)
+            output.writeInts(top)
+        }
+    }
+
+    companion object {
+        private const val TAG = "PlaceTrie"
+
+        internal const val MAGIC = 0x54524945 // "TRIE"
+
+        // Part of every trie file name. Change it whenever the file layout changes.
+        private const val TRIE_VERSION = 1
+
+        /** Most results a query can return. */
+        const val TOP_K = 8
+
+        /** Largest range of places left unexpanded. */
+        const val BUCKET_SIZE = 32
+
+        internal const val ROOT = 0
+
+        private val DIACRITICS = Regex("\\p{Mn}+")
+        private val WHITESPACE = Regex("\\s+")
+
+        /** Folds case, accents and runs of whitespace, so "São  Paulo" matches "sao p". */
+        fun normalize(text: String): String =
+            Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replace(DIACRITICS, "")
+                .replace(WHITESPACE, " ")
+                .trimStart()
+                .lowercase(Locale.ROOT)
+
+        /**
+         * Inserts [place] into [best], which is sorted by descending score with -1 for empty
+         * slots, if it scores higher than the lowest entry. Ties keep the earlier place.
+         */
+        internal fun insertByScore(best: IntArray, place: Int, scores: LongArray) {
+            val score = scores[place]
+            var i = best.size
+            while (i > 0 && (best[i - 1] < 0 || scores[best[i - 1]] < score)) i--
+            if (i == best.size) return
+            System.arraycopy(best, i, best, i + 1, best.size - i - 1)
+            best[i] = place
+        }
+
+        /**
+         * Loads a trie saved by [writeTo]. Throws [IOException] if the file isn't a trie, or is
+         * cut short or inconsistent.
+         */
+        @Throws(IOException::class)
+        fun read(file: File): PlaceTrie {
+            val buffer = RandomAccessFile(file, "r").use {
+                it.channel.map(FileChannel.MapMode.READ_ONLY, 0, it.length())
+            }
+            try {
+                if (buffer.getInt() != MAGIC) throw IOException("$file is not a place trie")
+                val keyChars = buffer.getChars()
+                val keyOffsets = buffer.getInts()
+                val labelChars = buffer.getChars()
+                val labelOffsets = buffer.getInts()
+                val latitudes = buffer.getFloats()
+                val longitudes = buffer.getFloats()
+                val scores = buffer.getLongs()
+                val nodeChars = buffer.getChars()
+                val firstChild = buffer.getInts()
+                val nextSibling = buffer.getInts()
+                val nodeStart = buffer.getInts()
+                val nodeEnd = buffer.getInts()
+                val top = buffer.getInts()
+
+                val places = latitudes.size
+                val nodes = nodeChars.size
+                val consistent = keyOffsets.size == places + 1 &&
+                    labelOffsets.size == places + 1 &&
+                    longitudes.size == places &&
+                    scores.size == places &&
+                    keyOffsets.last() == keyChars.size &&
+                    labelOffsets.last() == labelChars.size &&
+                    nodes > 0 &&
+                    firstChild.size == nodes &&
+                    nextSibling.size == nodes &&
+                    nodeStart.size == nodes &&
+                    nodeEnd.size == nodes &&
+                    top.size == nodes * TOP_K
+                if (!consistent) throw IOException("$file is not a consistent place trie")
+                return PlaceTrie(
+                    keyChars, keyOffsets, labelChars, labelOffsets, latitudes, longitudes,
+                    scores, nodeChars, firstChild, nextSibling, nodeStart, nodeEnd, top
+                )
+            } catch (e: BufferUnderflowException) {
+                throw IOException("$file is cut short", e)
+            } catch (e: IllegalArgumentException) {
+                throw IOException("$file is cut short", e)
+            } catch (e: NegativeArraySizeException) {
+                throw IOException("$file is not a consistent place trie", e)
+            }
+        }
+
+        /**
+         * Loads the trie of the places in the GeoNames [asset], scored by population. The trie
+         * is built from the whole dump the first time and kept in the app's files directory,
+         * then read from there, so call it from a background thread.
+         *
+         * Like [OfflineReverseGeocoder.loadGeoNamesAsset], the file name includes the layout
+         * version and the time the app was installed or updated, and older files are deleted. A
+         * file that can't be read is rebuilt.
+         */
+        @Throws(IOException::class)
+        fun loadGeoNamesAsset(context: Context, asset: String): PlaceTrie {
+            val directory = File(context.filesDir, "place-names")
+            val installTime = context.packageManager
+                .getPackageInfo(context.packageName, 0)
+                .lastUpdateTime
+            val name = "$asset.v$TRIE_VERSION.$installTime.trie"
+            directory.listFiles { file -> file.name.startsWith("$asset.") && file.name != name }
+                ?.forEach { it.delete() }
+
+            val file = File(directory, name)
+            if (file.exists()) {
+                try {
+                    return read(file)
+                } catch (e: IOException) {
+                    Log.w(TAG, "Rebuilding damaged place trie $file", e)
+                    file.delete()
+                }
+            }
+            return buildTrie(context, asset).also { trie ->
+                // Write to a temporary file, so a half-written trie is never read.
+                directory.mkdirs()
+                val temp = File(file.path + ".tmp")
+                trie.writeTo(temp)
+                if (!temp.renameTo(file)) throw IOException("Couldn't rename $temp")
+            }
+        }
+
+        @Throws(IOException::class)
+        private fun buildTrie(context: Context, asset: String): PlaceTrie {
+            val start = System.nanoTime()
+            val builder = PlaceTrieBuilder()
+            context.assets.open(asset).bufferedReader().use { reader ->
+                GeoNames.read(reader) {
+                    builder.add(it.name, it.label, it.latitude, it.longitude, it.population)
+                }
+            }
+            return builder.build().also {
+                Log.d(
+                    TAG,
+                    "Indexed ${it.size} place names into ${it.nodeCount} nodes in " +
+                        "${(System.nanoTime() - start) / 1_000_000}ms"
+                )
+            }
+        }
+
+        // Each array is written as its length followed by its elements.
+
+        private fun DataOutputStream.writeChars(array: CharArray) {
+            writeInt(array.size)
+            array.forEach { writeChar(it.code) }
+        }
+
+        private fun DataOutputStream.writeInts(array: IntArray) {
+            writeInt(array.size)
+            array.forEach { writeInt(it) }
+        }
+
+        private fun DataOutputStream.writeFloats(array: FloatArray) {
+            writeInt(array.size)
+            array.forEach { writeFloat(it) }
+        }
+
+        private fun DataOutputStream.writeLongs(array: LongArray) {
+            writeInt(array.size)
+            array.forEach { writeLong(it) }
+        }
+
+        private fun ByteBuffer.getChars(): CharArray =
+            CharArray(getInt()).also {
+                asCharBuffer().get(it)
+                position(position() + it.size * 2)
+            }
+
+        private fun ByteBuffer.getInts(): IntArray =
+            IntArray(getInt()).also {
+                asIntBuffer().get(it)
+                position(position() + it.size * 4)
+            }
+
+        private fun ByteBuffer.getFloats(): FloatArray =
+            FloatArray(getInt()).also {
+                asFloatBuffer().get(it)
+                position(position() + it.size * 4)
+            }
+
+        private fun ByteBuffer.getLongs(): LongArray =
+            LongArray(getInt()).also {
+                asLongBuffer().get(it)
+                position(position() + it.size * 8)
+            }
+    }
+}
+
+/** Collects places and builds a [PlaceTrie] of them. */
+class PlaceTrieBuilder {
+
+    private val keys = ArrayList<String>()
+    private val labels = ArrayList<String>()
+    private var latitudes = FloatArray(INITIAL_CAPACITY)
+    private var longitudes = FloatArray(INITIAL_CAPACITY)
+    private var scores = LongArray(INITIAL_CAPACITY)
+
+    val size: Int
+        get() = keys.size
+
+    /** Adds a place called [name], shown as [label]. Higher [score]s are suggested first. */
+    fun add(name: String, label: String, latitude: Double, longitude: Double, score: Long) {
+        if (size == latitudes.size) {
+            latitudes = latitudes.copyOf(size * 2)
+            longitudes = longitudes.copyOf(size * 2)
+            scores = scores.copyOf(size * 2)
+        }
+        latitudes[size] = latitude.toFloat()
+        longitudes[size] = longitude.toFloat()
+        scores[size] = score
+        keys += PlaceTrie.normalize(name)
+        labels += label
+    }
+
+    fun build(): PlaceTrie = Nodes(keys.indices.sortedBy { keys[it] }).build()
+
+    /** Lays out the places in [order] and grows the node arrays as the trie is built. */
+    private inner class Nodes(private val order: List<Int>) {
+        private val keyOffsets = IntArray(order.size + 1)
+        private val keyChars: CharArray
+        private val sortedScores = LongArray(order.size) { scores[order[it]] }
+
+        private var count = 0
+        private var nodeChars = CharArray(INITIAL_CAPACITY)
+        private var firstChild = IntArray(INITIAL_CAPACITY)
+        private var nextSibling = IntArray(INITIAL_CAPACITY)
+        private var nodeStart = IntArray(INITIAL_CAPACITY)
+        private var nodeEnd = IntArray(INITIAL_CAPACITY)
+        private var top = IntArray(INITIAL_CAPACITY * PlaceTrie.TOP_K)
+
+        init {
+            order.forEachIndexed { i, place ->
+                keyOffsets[i + 1] = keyOffsets[i] + keys[place].length
+            }
+            keyChars = CharArray(keyOffsets[order.size])
+            order.forEachIndexed { i, place ->
+                keys[place].toCharArray(keyChars, keyOffsets[i])
+            }
+        }
+
+        fun build(): PlaceTrie {
+            addNode('\u0000', 0, 0, order.size)
+            val labelOffsets = IntArray(order.size + 1)
+            order.forEachIndexed { i, place ->
+                labelOffsets[i + 1] = labelOffsets[i] + labels[place].length
+            }
+            val labelChars = CharArray(labelOffsets[order.size])
+            order.forEachIndexed { i, place ->
+                labels[place].toCharArray(labelChars, labelOffsets[i])
+            }
+            return PlaceTrie(
+                keyChars = keyChars,
+                keyOffsets = keyOffsets,
+                labelChars = labelChars,
+                labelOffsets = labelOffsets,
+                latitudes = FloatArray(order.size) { latitudes[order[it]] },
+                longitudes = FloatArray(order.size) { longitudes[order[it]] },
+                scores = sortedScores,
+                nodeChars = nodeChars.copyOf(count),
+                firstChild = firstChild.copyOf(count),
+                nextSibling = nextSibling.copyOf(count),
+                nodeStart = nodeStart.copyOf(count),
+                nodeEnd = nodeEnd.copyOf(count),
+                top = top.copyOf(count * PlaceTrie.TOP_K)
+            )
+        }
+
+        private fun keyLength(place: Int) = keyOffsets[place + 1] - keyOffsets[place]
+
+        private fun keyChar(place: Int, depth: Int) = keyChars[keyOffsets[place] + depth]
+
+        // Adds the node for places [start, end), whose keys share their first [depth] chars,
+        // and its subtree. Returns the new node.
+        private fun addNode(char: Char, depth: Int, start: Int, end: Int): Int {
+            val node = newNode(char, start, end)
+            if (end - start <= PlaceTrie.BUCKET_SIZE) return node
+
+            // Keys that end here sort first and belong to no child.
+            var i = start
+            while (i < end && keyLength(i) == depth) i++
+            var previous = -1
+            while (i < end) {
+                val childChar = keyChar(i, depth)
+                var j = i + 1
+                while (j < end && keyChar(j, depth) == childChar) j++
+                // The arrays may be reallocated while adding the child, so index them after.
+                val child = addNode(childChar, depth + 1, i, j)
+                if (previous < 0) firstChild[node] = child else nextSibling[previous] = child
+                previous = child
+                i = j
+            }
+            return node
+        }
+
+        private fun newNode(char: Char, start: Int, end: Int): Int {
+            if (count == nodeChars.size) {
+                val capacity = count * 2
+                nodeChars = nodeChars.copyOf(capacity)
+                firstChild = firstChild.copyOf(capacity)
+                nextSibling = nextSibling.copyOf(capacity)
+                nodeStart = nodeStart.copyOf(capacity)
+                nodeEnd = nodeEnd.copyOf(capacity)
+                top = top.copyOf(capacity * PlaceTrie.TOP_K)
+            }
+            val node = count++
+            nodeChars[node] = char
+            firstChild[node] = -1
+            nextSibling[node] = -1
+            nodeStart[node] = start
+            nodeEnd[node] = end
+
+            val best = IntArray(PlaceTrie.TOP_K) { -1 }
+            for (place in start until end) PlaceTrie.insertByScore(best, place, sortedScores)
+            best.copyInto(top, node * PlaceTrie.TOP_K)
+            return node
+        }
+    }
+
+    private companion object {
+        const val INITIAL_CAPACITY = 1024
+    }
+}
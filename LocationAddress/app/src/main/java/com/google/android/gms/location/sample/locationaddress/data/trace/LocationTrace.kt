@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.trace
+
+import android.content.Context
+import android.location.Location
+import java.io.InputStream
+
+/**
+ * A recorded list of places, used by [TraceLocationProviderClient] to answer location requests
+ * without real location hardware. Fixes are kept in primitive arrays and only turned into
+ * [Location] objects when they're returned.
+ *
+ * Traces are CSV, one fix per line: `time_millis,latitude,longitude[,accuracy]`, the same layout
+ * the other samples replay. Only the position and accuracy are used here, since fixes are stamped
+ * with the current time; further fields are ignored. Blank lines, lines starting with `#` and a
+ * header line starting with `time` are skipped.
+ */
+class LocationTrace private constructor(
+    private val latitudes: DoubleArray,
+    private val longitudes: DoubleArray,
+    private val accuracies: FloatArray
+) {
+
+    val size: Int
+        get() = latitudes.size
+
+    /** Creates a [Location] for fix [index], stamped with [timeMillis] and [elapsedNanos]. */
+    fun toLocation(index: Int, timeMillis: Long, elapsedNanos: Long) = Location(PROVIDER).apply {
+        latitude = latitudes[index]
+        longitude = longitudes[index]
+        time = timeMillis
+        elapsedRealtimeNanos = elapsedNanos
+        if (!accuracies[index].isNaN()) accuracy = accuracies[index]
+    }
+
+    companion object {
+        const val PROVIDER = "trace"
+
+        /** Loads a CSV trace from the app's assets. */
+        fun fromAsset(context: Context, name: String): LocationTrace =
+            context.assets.open(name).use(::fromCsv)
+
+        fun fromCsv(input: InputStream): LocationTrace {
+            val latitudes = ArrayList<Double>()
+            val longitudes = ArrayList<Double>()
+            val accuracies = ArrayList<Float>()
+            input.bufferedReader().forEachLine { line ->
+                val trimmed = line.trim()
+                if (trimmed.isEmpty() || trimmed.startsWith("#") ||
+                    trimmed.startsWith("time", ignoreCase = true)
+                ) {
+                    return@forEachLine
+                }
+                val fields = trimmed.split(',')
+                require(fields.size >= 3) { "Expected time,latitude,longitude but got: $line" }
+                latitudes += fields[1].trim().toDouble()
+                longitudes += fields[2].trim().toDouble()
+                accuracies += fields.getOrNull(3)?.trim()?.toFloatOrNull() ?: Float.NaN
+            }
+            require(latitudes.isNotEmpty()) { "Trace contains no fixes" }
+            return LocationTrace(
+                latitudes.toDoubleArray(),
+                longitudes.toDoubleArray(),
+                accuracies.toFloatArray()
+            )
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.trace
+
+import android.annotation.SuppressLint
+import android.content.Context
+import android.location.Location
+import android.os.SystemClock
+import com.google.android.gms.location.FusedLocationProviderClient
+import com.google.android.gms.tasks.CancellationToken
+import com.google.android.gms.tasks.Task
+import com.google.android.gms.tasks.Tasks
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * A [FusedLocationProviderClient] that answers location requests from a [LocationTrace] instead
+ * of the device's location. Every call to [getCurrentLocation] returns the next fix in the trace,
+ * stamped with the current time, and wraps around at the end. This makes it possible to load
+ * test the geocoding path with a known set of places, without waiting for a real fix.
+ *
+ * Only the calls used by this sample are replayed; everything else goes to the real client.
+ */
+class TraceLocationProviderClient(
+    context: Context,
+    private val trace: LocationTrace
+) : FusedLocationProviderClient(context) {
+
+    private val nextIndex = AtomicInteger()
+
+    @Volatile
+    private var lastLocation: Location? = null
+
+    @SuppressLint("MissingPermission")
+    override fun getCurrentLocation(priority: Int, token: CancellationToken?): Task<Location> {
+        if (token?.isCancellationRequested == true) {
+            return Tasks.forCanceled()
+        }
+        val index = (nextIndex.getAndIncrement() and Int.MAX_VALUE) % trace.size
+        val location = trace.toLocation(
+            index,
+            System.currentTimeMillis(),
+            SystemClock.elapsedRealtimeNanos()
+        )
+        lastLocation = location
+        return Tasks.forResult(location)
+    }
+
+    @SuppressLint("MissingPermission")
+    override fun getLastLocation(): Task<Location> = Tasks.forResult(lastLocation)
+}
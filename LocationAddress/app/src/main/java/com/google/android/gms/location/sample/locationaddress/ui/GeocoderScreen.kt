@@ -36,8 +36,10 @@ import androidx.compose.material.Button
 import androidx.compose.material.CircularProgressIndicator
 import androidx.compose.material.Icon
 import androidx.compose.material.MaterialTheme
+import androidx.compose.material.OutlinedTextField
 import androidx.compose.material.Text
 import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.Search
 import androidx.compose.material.icons.filled.Warning
 import androidx.compose.runtime.Composable
 import androidx.compose.ui.Alignment
@@ -50,6 +52,8 @@ import androidx.compose.ui.unit.dp
 import androidx.constraintlayout.compose.ConstraintLayout
 import com.google.android.gms.location.sample.locationaddress.R
 import com.google.android.gms.location.sample.locationaddress.data.FormattedAddress
+import com.google.android.gms.location.sample.locationaddress.data.LocationSource
+import com.google.android.gms.location.sample.locationaddress.data.TimeToAddress
 import com.google.android.gms.location.sample.locationaddress.ui.theme.LocationAddressTheme
 
 @Composable
@@ -57,55 +61,93 @@ fun GeocoderScreen(
     showRationale: Boolean,
     showProgress: Boolean,
     addresses: List<FormattedAddress>,
+    timeToAddress: TimeToAddress?,
     maxResults: Int,
     maxResultsRange: IntRange,
     onMaxResultsChange: (Int) -> Unit,
-    onFindAddressClick: () -> Unit
+    onFindAddressClick: () -> Unit,
+    query: String,
+    suggestions: List<FormattedAddress>,
+    onQueryChange: (String) -> Unit
 ) {
-    val orientation = LocalConfiguration.current.orientation
-    if (orientation == Configuration.ORIENTATION_PORTRAIT) {
-        Column {
-            GeocoderControls(
-                showRationale = showRationale,
-                maxResults = maxResults,
-                maxResultsRange = maxResultsRange,
-                onMaxResultsChange = onMaxResultsChange,
-                findAddressEnabled = !showProgress,
-                onFindAddressClick = onFindAddressClick,
-                modifier = Modifier
-                    .fillMaxWidth()
-                    .weight(.4f)
-                    .padding(all = 16.dp)
-            )
-            GeocoderResults(
-                showProgress = showProgress,
-                addresses = addresses,
-                modifier = Modifier.weight(.6f)
-            )
-        }
-    } else {
-        Row {
-            GeocoderControls(
-                showRationale = showRationale,
-                maxResults = maxResults,
-                maxResultsRange = maxResultsRange,
-                onMaxResultsChange = onMaxResultsChange,
-                findAddressEnabled = !showProgress,
-                onFindAddressClick = onFindAddressClick,
-                modifier = Modifier
-                    .fillMaxHeight()
-                    .weight(.5f)
-                    .padding(all = 16.dp)
-            )
-            GeocoderResults(
-                showProgress = showProgress,
-                addresses = addresses,
-                modifier = Modifier.weight(.5f)
-            )
+    // While the user is searching, the results show suggestions for the query instead.
+    val searching = query.isNotBlank()
+    val results = if (searching) suggestions else addresses
+    val timing = if (searching) null else timeToAddress
+    val showResultsProgress = showProgress && !searching
+
+    Column {
+        PlaceSearchField(
+            query = query,
+            onQueryChange = onQueryChange,
+            modifier = Modifier
+                .fillMaxWidth()
+                .padding(start = 16.dp, top = 16.dp, end = 16.dp)
+        )
+
+        val orientation = LocalConfiguration.current.orientation
+        if (orientation == Configuration.ORIENTATION_PORTRAIT) {
+            Column(modifier = Modifier.weight(1f)) {
+                GeocoderControls(
+                    showRationale = showRationale,
+                    maxResults = maxResults,
+                    maxResultsRange = maxResultsRange,
+                    onMaxResultsChange = onMaxResultsChange,
+                    findAddressEnabled = !showProgress,
+                    onFindAddressClick = onFindAddressClick,
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .weight(.4f)
+                        .padding(all = 16.dp)
+                )
+                GeocoderResults(
+                    showProgress = showResultsProgress,
+                    addresses = results,
+                    timeToAddress = timing,
+                    modifier = Modifier.weight(.6f)
+                )
+            }
+        } else {
+            Row(modifier = Modifier.weight(1f)) {
+                GeocoderControls(
+                    showRationale = showRationale,
+                    maxResults = maxResults,
+                    maxResultsRange = maxResultsRange,
+                    onMaxResultsChange = onMaxResultsChange,
+                    findAddressEnabled = !showProgress,
+                    onFindAddressClick = onFindAddressClick,
+                    modifier = Modifier
+                        .fillMaxHeight()
+                        .weight(.5f)
+                        .padding(all = 16.dp)
+                )
+                GeocoderResults(
+                    showProgress = showResultsProgress,
+                    addresses = results,
+                    timeToAddress = timing,
+                    modifier = Modifier.weight(.5f)
+                )
+            }
         }
     }
 }
 
+@Composable
+fun PlaceSearchField(
+    query: String,
+    onQueryChange: (String) -> Unit,
+    modifier: Modifier = Modifier
+) {
+    OutlinedTextField(
+        value = query,
+        onValueChange = onQueryChange,
+        label = { Text(text = stringResource(id = R.string.search_places)) },
+        leadingIcon = { Icon(Icons.Filled.Search, contentDescription = null) },
+        singleLine = true,
+        modifier = modifier
+    )
+}
+
 @Composable
 fun GeocoderControls(
     modifier: Modifier = Modifier,
@@ -171,6 +213,7 @@ fun GeocoderControls(
 fun GeocoderResults(
     showProgress: Boolean,
     addresses: List<FormattedAddress>,
+    timeToAddress: TimeToAddress?,
     modifier: Modifier = Modifier
 ) {
     val resultText = if (showProgress) {
@@ -185,6 +228,18 @@ fun GeocoderResults(
             style = MaterialTheme.typography.h6,
             modifier = Modifier.padding(horizontal = 16.dp)
         )
+        if (!showProgress && timeToAddress != null) {
+            Text(
+                text = stringResource(
+                    id = R.string.time_to_address,
+                    timeToAddress.millis,
+                    stringResource(id = timeToAddress.source.labelRes),
+                    timeToAddress.meanMillis
+                ),
+                style = MaterialTheme.typography.caption,
+                modifier = Modifier.padding(horizontal = 16.dp)
+            )
+        }
         Spacer(
             modifier = Modifier
                 .fillMaxWidth()
@@ -215,6 +270,13 @@ fun GeocoderResults(
     }
 }
 
+private val LocationSource.labelRes: Int
+    get() = when (this) {
+        LocationSource.LAST_LOCATION -> R.string.location_source_last_location
+        LocationSource.BALANCED_POWER -> R.string.location_source_balanced_power
+        LocationSource.HIGH_ACCURACY -> R.string.location_source_high_accuracy
+    }
+
 @Preview(showBackground = true)
 @Composable
 fun GeocoderScreenPreview() {
@@ -223,10 +285,14 @@ fun GeocoderScreenPreview() {
             showRationale = true,
             showProgress = false,
             addresses = previewData,
+            timeToAddress = TimeToAddress(LocationSource.BALANCED_POWER, 850, 1200),
             maxResults = 5,
             maxResultsRange = 1..5,
             onMaxResultsChange = {},
-            onFindAddressClick = {}
+            onFindAddressClick = {},
+            query = "",
+            suggestions = emptyList(),
+            onQueryChange = {}
         )
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.benchmark
+
+import com.google.android.gms.location.sample.locationaddress.data.BatchGeocoder
+import com.google.android.gms.location.sample.locationaddress.data.Coordinates
+import com.google.android.gms.location.sample.locationaddress.data.GeocodingApi
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Benchmarks [BatchGeocoder] on a track against a [FakeReverseGeocoder], reporting points per
+ * second at different levels of parallelism.
+ */
+@RunWith(RobolectricTestRunner::class)
+class BatchGeocodingBenchmark {
+
+    // A 10 km drive with a fix every 10 m, which crosses around a hundred geohash cells.
+    private val track = List(1_000) { i ->
+        Coordinates(37.3861 + i * 0.00006, -122.0839 + i * 0.00007)
+    }
+
+    @Test
+    fun geocodeTrack() {
+        val benchmark = Microbenchmark("BatchGeocodingBenchmark.geocodeTrack")
+        for (concurrency in listOf(1, 2, 4, 8, 16)) {
+            val geocoder = FakeReverseGeocoder(GEOCODER_LATENCY_MILLIS)
+            benchmark.measure(
+                "concurrency$concurrency",
+                operations = track.size,
+                warmupIterations = WARMUP_ITERATIONS,
+                iterations = ITERATIONS
+            ) {
+                var count = 0
+                runBlocking {
+                    // Without a cache, so every run calls the geocoder.
+                    BatchGeocoder(GeocodingApi(geocoder, cache = null))
+                        .geocode(track.asFlow(), concurrency = concurrency)
+                        .collect { result ->
+                            count++
+                            consume(result)
+                        }
+                }
+                assertEquals(track.size, count)
+            }
+            val callsPerRun = geocoder.calls / (WARMUP_ITERATIONS + ITERATIONS)
+            println("concurrency $concurrency: $callsPerRun Geocoder calls per run")
+        }
+        benchmark.write()
+    }
+
+    private companion object {
+        const val GEOCODER_LATENCY_MILLIS = 10L
+        const val WARMUP_ITERATIONS = 1
+        const val ITERATIONS = 3
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.benchmark
+
+import android.location.Address
+import com.google.android.gms.location.sample.locationaddress.data.ReverseGeocoder
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Stand-in for the platform Geocoder which blocks for [latencyMillis] per call, like a network
+ * lookup would, and answers with a made-up street address.
+ */
+class FakeReverseGeocoder(private val latencyMillis: Long) : ReverseGeocoder {
+
+    private val callCount = AtomicInteger()
+
+    val calls: Int
+        get() = callCount.get()
+
+    override fun getFromLocation(
+        latitude: Double,
+        longitude: Double,
+        maxResults: Int
+    ): List<Address> {
+        callCount.incrementAndGet()
+        Thread.sleep(latencyMillis)
+        return List(maxResults) { i ->
+            Address(Locale.US).apply {
+                this.latitude = latitude
+                this.longitude = longitude
+                setAddressLine(0, "${(latitude * 1000).toInt() % 1000 + i} Amphitheatre Parkway")
+                setAddressLine(1, "Mountain View, CA 94043")
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.benchmark
+
+import android.location.Address
+import com.google.android.gms.location.sample.locationaddress.data.FormattedAddress
+import com.google.android.gms.location.sample.locationaddress.data.cache.GeocodingCache
+import com.google.android.gms.location.sample.locationaddress.data.toFormattedAddress
+import java.nio.file.Files
+import java.util.Locale
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Benchmarks formatting of [Address] results returned by the Geocoder, and lookups in the
+ * [GeocodingCache] that sits in front of it.
+ */
+@RunWith(RobolectricTestRunner::class)
+class GeocodingBenchmark {
+
+    @Test
+    fun formatAddress() {
+        val benchmark = Microbenchmark("GeocodingBenchmark.formatAddress")
+        val addresses = List(10_000) { i ->
+            Address(Locale.US).apply {
+                setAddressLine(0, "${1600 + i % 100} Amphitheatre Parkway")
+                setAddressLine(1, "Mountain View, CA 94043")
+                setAddressLine(2, "USA")
+                locality = "Mountain View"
+                adminArea = "California"
+                countryName = "United States"
+            }
+        }
+
+        // Before: the original implementation, which allocated a range, a list and a string
+        // per line for every address.
+        benchmark.measure("joinToString", operations = addresses.size) {
+            addresses.forEach { address ->
+                consume(
+                    FormattedAddress(
+                        (0..address.maxAddressLineIndex).joinToString("\n") {
+                            address.getAddressLine(it)
+                        }
+                    )
+                )
+            }
+        }
+        // After: the 100 distinct addresses are answered from the formatter's table.
+        benchmark.measure("toFormattedAddress", operations = addresses.size) {
+            addresses.forEach { consume(it.toFormattedAddress()) }
+        }
+        // After, with every address different, so only the components are interned.
+        val uniqueAddresses = List(10_000) { i ->
+            Address(Locale.US).apply {
+                setAddressLine(0, "${1600 + i} Amphitheatre Parkway")
+                setAddressLine(1, "Mountain View, CA 94043")
+                locality = "Mountain View"
+                adminArea = "California"
+                countryName = "United States"
+            }
+        }
+        benchmark.measure("toFormattedAddressUnique", operations = uniqueAddresses.size) {
+            uniqueAddresses.forEach { consume(it.toFormattedAddress()) }
+        }
+        benchmark.write()
+    }
+
+    @Test
+    fun cacheLookup() {
+        val benchmark = Microbenchmark("GeocodingBenchmark.cacheLookup")
+        val directory = Files.createTempDirectory("geocoding").toFile()
+        val addresses = listOf(FormattedAddress("1600 Amphitheatre Parkway\nMountain View"))
+        // A few hundred places around Mountain View, visited over and over.
+        val points = List(10_000) { i ->
+            val place = i % 300
+            Pair(37.38 + (place / 20) * 0.002, -122.09 + (place % 20) * 0.002)
+        }
+
+        try {
+            // Memory only: everything fits.
+            val memoryCache = GeocodingCache(directory, memoryEntries = 512)
+            points.forEach { (lat, lng) -> memoryCache.put(lat, lng, 1, addresses, 0L) }
+            benchmark.measure("memoryHit", operations = points.size) {
+                points.forEach { (lat, lng) -> consume(memoryCache.get(lat, lng, 1)) }
+            }
+
+            // Mostly disk: the memory tier only holds a few cells.
+            val diskCache = GeocodingCache(directory, memoryEntries = 8)
+            benchmark.measure("diskHit", operations = points.size) {
+                points.forEach { (lat, lng) -> consume(diskCache.get(lat, lng, 1)) }
+            }
+
+            val emptyCache = GeocodingCache(directory, precision = 9)
+            benchmark.measure("miss", operations = points.size) {
+                points.forEach { (lat, lng) -> consume(emptyCache.get(lat, lng, 1)) }
+            }
+        } finally {
+            directory.deleteRecursively()
+        }
+        benchmark.write()
+    }
+}
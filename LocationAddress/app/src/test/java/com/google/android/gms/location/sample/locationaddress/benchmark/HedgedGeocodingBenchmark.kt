@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.benchmark
+
+import android.location.Address
+import android.location.Location
+import com.google.android.gms.location.sample.locationaddress.data.GeocodingApi
+import com.google.android.gms.location.sample.locationaddress.data.LatencyHistogram
+import com.google.android.gms.location.sample.locationaddress.data.ReverseGeocoder
+import com.google.android.gms.location.sample.locationaddress.data.cache.GeocodingCache
+import java.nio.file.Files
+import java.util.Locale
+import java.util.Random
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Compares end-to-end lookup latency through [GeocodingApi] with and without hedging, against a
+ * geocoder that's usually fast but occasionally stalls.
+ */
+@RunWith(RobolectricTestRunner::class)
+class HedgedGeocodingBenchmark {
+
+    @Test
+    fun heavyTail() {
+        val benchmark = Microbenchmark("HedgedGeocodingBenchmark.heavyTail")
+        val plain = run(hedging = false)
+        val hedged = run(hedging = true)
+        println("without hedging: $plain")
+        println("with hedging: $hedged")
+
+        listOf("plain" to plain, "hedged" to hedged).forEach { (name, histogram) ->
+            listOf(50.0, 99.0).forEach { percentile ->
+                val nanos = histogram.percentileMillis(percentile) * 1e6
+                benchmark.record("$name.p${percentile.toInt()}", nanos, 1e9 / nanos)
+            }
+        }
+        benchmark.write()
+
+        assertTrue(hedged.percentileMillis(99.0) < plain.percentileMillis(99.0))
+    }
+
+    // Returns the latency of each lookup as seen by the caller.
+    private fun run(hedging: Boolean): LatencyHistogram {
+        val random = Random(42)
+        val geocoder = ReverseGeocoder { latitude, longitude, _ ->
+            Thread.sleep(if (random.nextInt(100) < STALL_PERCENT) STALL_MILLIS else FAST_MILLIS)
+            listOf(
+                Address(Locale.US).apply {
+                    this.latitude = latitude
+                    this.longitude = longitude
+                    setAddressLine(0, "1600 Amphitheatre Parkway")
+                }
+            )
+        }
+        val directory = Files.createTempDirectory("geocoding").toFile()
+        val api = GeocodingApi(
+            geocoder,
+            GeocodingCache(directory, precision = 12),
+            deadlineMillis = 2_000,
+            hedging = hedging
+        )
+        val histogram = LatencyHistogram()
+        try {
+            runBlocking {
+                repeat(LOOKUPS) { i ->
+                    // Different places every time, so nothing is answered from the cache.
+                    val location = Location("benchmark").apply {
+                        latitude = 37.0 + i * 0.001
+                        longitude = -122.0
+                    }
+                    val start = System.nanoTime()
+                    api.getFromLocation(location)
+                    histogram.record(System.nanoTime() - start)
+                }
+            }
+        } finally {
+            directory.deleteRecursively()
+        }
+        return histogram
+    }
+
+    private companion object {
+        const val LOOKUPS = 300
+        const val FAST_MILLIS = 10L
+        const val STALL_MILLIS = 500L
+        const val STALL_PERCENT = 3
+    }
+}
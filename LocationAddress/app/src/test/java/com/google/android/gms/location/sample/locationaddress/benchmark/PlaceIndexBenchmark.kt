@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.benchmark
+
+import com.google.android.gms.location.sample.locationaddress.data.offline.PlaceIndex
+import com.google.android.gms.location.sample.locationaddress.data.offline.PlaceIndexBuilder
+import java.io.File
+import java.util.Random
+import kotlin.math.cos
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Benchmarks building, opening and querying a [PlaceIndex] of a million places.
+ */
+class PlaceIndexBenchmark {
+
+    @Test
+    fun millionPlaces() {
+        val benchmark = Microbenchmark("PlaceIndexBenchmark.millionPlaces")
+        val random = Random(42)
+        // Places spread over the inhabited latitudes, denser than any real dataset.
+        val latitudes = DoubleArray(PLACES) { -55 + random.nextDouble() * 125 }
+        val longitudes = DoubleArray(PLACES) { -180 + random.nextDouble() * 360 }
+        val file = File.createTempFile("places", ".kdt")
+
+        try {
+            val buildStart = System.nanoTime()
+            val builder = PlaceIndexBuilder()
+            for (i in 0 until PLACES) builder.add(latitudes[i], longitudes[i], "Place $i")
+            builder.writeTo(file)
+            val buildNanos = System.nanoTime() - buildStart
+            benchmark.record("build", buildNanos.toDouble() / PLACES, PLACES * 1e9 / buildNanos)
+
+            val openStart = System.nanoTime()
+            val index = PlaceIndex.open(file)
+            val openNanos = System.nanoTime() - openStart
+            benchmark.record("open", openNanos.toDouble(), 1e9 / openNanos)
+
+            val queries = List(QUERIES) {
+                Pair(-55 + random.nextDouble() * 125, -180 + random.nextDouble() * 360)
+            }
+            benchmark.measure("nearest1", operations = queries.size) {
+                queries.forEach { (lat, lng) -> consume(index.nearest(lat, lng, maxResults = 1)) }
+            }
+            benchmark.measure("nearest7", operations = queries.size) {
+                queries.forEach { (lat, lng) -> consume(index.nearest(lat, lng, maxResults = 7)) }
+            }
+
+            // Check a few answers against a linear scan.
+            queries.take(20).forEach { (lat, lng) ->
+                val scale = cos(Math.toRadians(lat))
+                val expected = (0 until PLACES).minByOrNull { i ->
+                    val dy = latitudes[i] - lat
+                    val dx = (longitudes[i] - lng) * scale
+                    dx * dx + dy * dy
+                }
+                assertEquals("Place $expected", index.nearest(lat, lng, 1).single().label)
+            }
+        } finally {
+            file.delete()
+        }
+        benchmark.write()
+    }
+
+    private companion object {
+        const val PLACES = 1_000_000
+        const val QUERIES = 10_000
+    }
+}
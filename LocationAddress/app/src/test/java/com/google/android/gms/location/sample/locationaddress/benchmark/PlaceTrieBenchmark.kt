@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.benchmark
+
+import com.google.android.gms.location.sample.locationaddress.data.offline.PlaceTrie
+import com.google.android.gms.location.sample.locationaddress.data.offline.PlaceTrieBuilder
+import java.util.Random
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+/**
+ * Benchmarks building a [PlaceTrie] of a million place names and querying it one keystroke at
+ * a time.
+ */
+class PlaceTrieBenchmark {
+
+    private val syllables = listOf(
+        "san", "ta", "mo", "ri", "ver", "lo", "na", "ka", "el", "bur", "ton", "vil", "le", "ham",
+        "ber", "g", "sk", "os", "ia", "po", "rt", "do", "mi", "fe", "de", "ca", "stle", "wood"
+    )
+
+    @Test
+    fun millionNames() {
+        val benchmark = Microbenchmark("PlaceTrieBenchmark.millionNames")
+        val random = Random(42)
+        val names = List(PLACES) {
+            buildString {
+                repeat(2 + random.nextInt(4)) { append(syllables[random.nextInt(syllables.size)]) }
+                if (random.nextInt(5) == 0) append(" ").append(syllables[random.nextInt(10)])
+            }.replaceFirstChar { it.uppercaseChar() }
+        }
+        // Populations are heavily skewed, as they are in real datasets.
+        val populations = LongArray(PLACES) { (1e7 * Math.pow(random.nextDouble(), 8.0)).toLong() }
+
+        val buildStart = System.nanoTime()
+        val builder = PlaceTrieBuilder()
+        names.forEachIndexed { i, name ->
+            builder.add(name, "$name #$i", 0.0, 0.0, populations[i])
+        }
+        val trie = builder.build()
+        val buildNanos = System.nanoTime() - buildStart
+        benchmark.record("build", buildNanos.toDouble() / PLACES, PLACES * 1e9 / buildNanos)
+        println("${trie.size} names in ${trie.nodeCount} nodes")
+
+        // Every prefix of some names, as if they were typed.
+        val keystrokes = names.shuffled(random).take(1_000).flatMap { name ->
+            (1..name.length).map { name.substring(0, it) }
+        }
+        benchmark.measure("keystroke", operations = keystrokes.size) {
+            keystrokes.forEach { consume(trie.search(it, PlaceTrie.TOP_K)) }
+        }
+        benchmark.write()
+
+        // Check a few answers against a linear scan.
+        val keys = names.map(PlaceTrie::normalize)
+        keystrokes.shuffled(random).take(20).forEach { prefix ->
+            val key = PlaceTrie.normalize(prefix)
+            val expected = names.indices
+                .filter { keys[it].startsWith(key) }
+                .sortedByDescending { populations[it] }
+                .take(PlaceTrie.TOP_K)
+                .map { populations[it] }
+            val actual = trie.search(prefix, PlaceTrie.TOP_K)
+                .map { populations[it.label.substringAfterLast('#').toInt()] }
+            assertEquals(expected, actual)
+        }
+    }
+
+    private companion object {
+        const val PLACES = 1_000_000
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.benchmark
+
+import android.location.Location
+import com.google.android.gms.location.sample.locationaddress.data.AddressRequestCoordinator
+import com.google.android.gms.location.sample.locationaddress.data.FormattedAddress
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Replays a user tapping "Find address" over and over through [AddressRequestCoordinator], and
+ * reports how many of the Geocoder calls the taps would have made were actually made. The
+ * behaviour itself is checked by AddressRequestCoordinatorTest.
+ */
+@RunWith(RobolectricTestRunner::class)
+class TapStormBenchmark {
+
+    @Test
+    fun tapStorm() {
+        val benchmark = Microbenchmark("TapStormBenchmark.tapStorm")
+        val backendCalls = AtomicInteger()
+
+        val startNanos = System.nanoTime()
+        val coordinator = runBlocking {
+            val coordinator = AddressRequestCoordinator(this) { location, _ ->
+                backendCalls.incrementAndGet()
+                delay(GEOCODER_LATENCY_MILLIS)
+                listOf(FormattedAddress("%.5f,%.5f".format(location.latitude, location.longitude)))
+            }
+            repeat(TAPS) { tap ->
+                coordinator.launchLatest(
+                    request = {
+                        // Each tap gets a slightly different fix from the same spot.
+                        delay(LOCATION_LATENCY_MILLIS)
+                        coordinator.geocode(location(tap), maxResults = 1)
+                    },
+                    onResult = {}
+                )
+                delay(TAP_INTERVAL_MILLIS)
+            }
+            coordinator
+        }
+        val elapsedNanos = System.nanoTime() - startNanos
+
+        println(
+            "$TAPS taps: ${backendCalls.get()} Geocoder calls instead of $TAPS " +
+                "(${TAPS - backendCalls.get()} removed); $coordinator"
+        )
+        benchmark.record(
+            "tap",
+            nanosPerOp = elapsedNanos.toDouble() / TAPS,
+            opsPerSecond = TAPS * 1e9 / elapsedNanos
+        )
+        benchmark.write()
+    }
+
+    private fun location(tap: Int) = Location("tap").apply {
+        latitude = 37.4220 + (tap % 5) * 0.00001
+        longitude = -122.0841 + (tap % 3) * 0.00001
+    }
+
+    private companion object {
+        const val TAPS = 50
+        const val TAP_INTERVAL_MILLIS = 20L
+        const val LOCATION_LATENCY_MILLIS = 10L
+        const val GEOCODER_LATENCY_MILLIS = 300L
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import android.location.Location
+import java.util.concurrent.atomic.AtomicInteger
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.async
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.yield
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class AddressRequestCoordinatorTest {
+
+    private val loads = AtomicInteger()
+
+    private fun location(latitude: Double, longitude: Double) = Location("test").apply {
+        this.latitude = latitude
+        this.longitude = longitude
+    }
+
+    // Answers with the coordinates after [latencyMillis], or once [gate] completes.
+    private fun CoroutineScope.coordinator(
+        latencyMillis: Long = 0L,
+        gate: CompletableDeferred<Unit>? = null
+    ) = AddressRequestCoordinator(this) { location, _ ->
+        loads.incrementAndGet()
+        gate?.await()
+        delay(latencyMillis)
+        listOf(FormattedAddress("%.5f,%.5f".format(location.latitude, location.longitude)))
+    }
+
+    @Test
+    fun launchLatest_tapStorm_deliversOnlyLastTapAndCoalescesLookups() {
+        var delivered: List<FormattedAddress>? = null
+        var deliveries = 0
+
+        runBlocking {
+            val coordinator = coordinator(latencyMillis = GEOCODER_LATENCY_MILLIS)
+            repeat(TAPS) { tap ->
+                coordinator.launchLatest(
+                    request = {
+                        // Each tap gets a slightly different fix from the same spot.
+                        delay(LOCATION_LATENCY_MILLIS)
+                        coordinator.geocode(
+                            location(37.4220 + (tap % 5) * 0.00001, -122.0841), maxResults = 1)
+                    },
+                    onResult = {
+                        delivered = it
+                        deliveries++
+                    }
+                )
+                delay(TAP_INTERVAL_MILLIS)
+            }
+        }
+
+        assertEquals(1, deliveries)
+        assertNotNull(delivered)
+        assertTrue("${loads.get()} lookups for $TAPS taps", loads.get() <= TAPS / 5)
+    }
+
+    @Test
+    fun launchLatest_newRequest_cancelsPrevious() {
+        val results = mutableListOf<Int>()
+
+        val coordinator = runBlocking {
+            val coordinator = coordinator()
+            coordinator.launchLatest(request = { delay(1_000L); 1 }, onResult = { results += it })
+            coordinator.launchLatest(request = { 2 }, onResult = { results += it })
+            coordinator
+        }
+
+        assertEquals(listOf(2), results)
+        assertEquals(1L, coordinator.superseded)
+    }
+
+    @Test
+    fun launchLatest_finishedRequest_isNotCountedAsSuperseded() {
+        val results = mutableListOf<Int>()
+
+        val coordinator = runBlocking {
+            val coordinator = coordinator()
+            coordinator.launchLatest(request = { 1 }, onResult = { results += it })
+            yield()
+            coordinator.launchLatest(request = { 2 }, onResult = { results += it })
+            coordinator
+        }
+
+        assertEquals(listOf(1, 2), results)
+        assertEquals(0L, coordinator.superseded)
+    }
+
+    @Test
+    fun geocode_sameCellAndMaxResults_sharesOneLoad() {
+        val gate = CompletableDeferred<Unit>()
+
+        val (coordinator, results) = runBlocking {
+            val coordinator = coordinator(gate = gate)
+            val first = async { coordinator.geocode(location(37.42200, -122.08410), 1) }
+            val second = async { coordinator.geocode(location(37.42201, -122.08411), 1) }
+            yield()
+            gate.complete(Unit)
+            coordinator to listOf(first.await(), second.await())
+        }
+
+        assertEquals(1, loads.get())
+        assertEquals(results[0], results[1])
+        assertEquals(2L, coordinator.requests)
+        assertEquals(1L, coordinator.coalesced)
+    }
+
+    @Test
+    fun geocode_differentMaxResults_loadsSeparately() {
+        val gate = CompletableDeferred<Unit>()
+
+        runBlocking {
+            val coordinator = coordinator(gate = gate)
+            val first = async { coordinator.geocode(location(37.42200, -122.08410), 1) }
+            val second = async { coordinator.geocode(location(37.42200, -122.08410), 5) }
+            yield()
+            gate.complete(Unit)
+            first.await()
+            second.await()
+        }
+
+        assertEquals(2, loads.get())
+    }
+
+    @Test
+    fun geocode_afterLoadFinishes_loadsAgain() {
+        runBlocking {
+            val coordinator = coordinator()
+            coordinator.geocode(location(37.42200, -122.08410), 1)
+            coordinator.geocode(location(37.42200, -122.08410), 1)
+        }
+
+        assertEquals(2, loads.get())
+    }
+
+    @Test
+    fun geocode_supersededRequest_leavesSharedLoadForNextRequest() {
+        val gate = CompletableDeferred<Unit>()
+        val results = mutableListOf<List<FormattedAddress>>()
+
+        runBlocking {
+            val coordinator = coordinator(gate = gate)
+            repeat(2) {
+                coordinator.launchLatest(
+                    request = { coordinator.geocode(location(37.42200, -122.08410), 1) },
+                    onResult = { results += it }
+                )
+                yield()
+            }
+            gate.complete(Unit)
+        }
+
+        assertEquals(1, loads.get())
+        assertEquals(1, results.size)
+    }
+
+    private companion object {
+        const val TAPS = 50
+        const val TAP_INTERVAL_MILLIS = 20L
+        const val LOCATION_LATENCY_MILLIS = 10L
+        const val GEOCODER_LATENCY_MILLIS = 300L
+    }
+}
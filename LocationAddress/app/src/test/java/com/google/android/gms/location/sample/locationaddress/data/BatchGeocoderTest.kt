@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import android.location.Address
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicInteger
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.toList
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class BatchGeocoderTest {
+
+    private val calls = AtomicInteger()
+
+    // Answers with the latitude as the street number, and rejects latitudes above 90.
+    private val geocoder = ReverseGeocoder { latitude, longitude, _ ->
+        calls.incrementAndGet()
+        require(latitude <= 90.0) { "Invalid latitude $latitude" }
+        listOf(
+            Address(Locale.US).apply {
+                this.latitude = latitude
+                this.longitude = longitude
+                setAddressLine(0, "${latitude.toInt()} Main Street")
+            }
+        )
+    }
+
+    private fun geocode(points: List<Coordinates>): List<BatchGeocodeResult> = runBlocking {
+        BatchGeocoder(GeocodingApi(geocoder, cache = null, hedging = false))
+            .geocode(points.asFlow())
+            .toList()
+    }
+
+    @Test
+    fun geocode_keepsInputOrder() {
+        val points = List(20) { Coordinates(10.0 + it, 20.0) }
+
+        val results = geocode(points)
+
+        assertEquals(points, results.map { it.coordinates })
+        assertEquals(
+            points.map { "${it.latitude.toInt()} Main Street" },
+            results.map { it.addresses.single().display }
+        )
+    }
+
+    @Test
+    fun geocode_pointsInSameCell_lookUpOnce() {
+        val points = List(10) { Coordinates(37.4220 + it * 1e-6, -122.0840) }
+
+        val results = geocode(points)
+
+        assertEquals(10, results.size)
+        assertEquals(1, calls.get())
+    }
+
+    @Test
+    fun geocode_rejectedPoint_getsNoAddressesAndOthersContinue() {
+        val points = listOf(
+            Coordinates(10.0, 20.0),
+            Coordinates(95.0, 20.0),
+            Coordinates(11.0, 20.0)
+        )
+
+        val results = geocode(points)
+
+        assertEquals(listOf(1, 0, 1), results.map { it.addresses.size })
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class LatencyHistogramTest {
+
+    private fun LatencyHistogram.recordMillis(millis: Long) =
+        record(TimeUnit.MILLISECONDS.toNanos(millis))
+
+    @Test
+    fun empty_reportsZero() {
+        val histogram = LatencyHistogram()
+
+        assertEquals(0L, histogram.count)
+        assertEquals(0L, histogram.percentileMillis(50.0))
+        assertEquals(0L, histogram.meanMillis())
+        assertEquals(0L, histogram.maxMillis())
+    }
+
+    @Test
+    fun percentileMillis_isWithinBucketPrecision() {
+        val histogram = LatencyHistogram()
+
+        for (millis in 1L..1_000L) histogram.recordMillis(millis)
+
+        assertEquals(1_000L, histogram.count)
+        assertEquals(500.0, histogram.percentileMillis(50.0).toDouble(), 500 * 0.06)
+        assertEquals(950.0, histogram.percentileMillis(95.0).toDouble(), 950 * 0.06)
+        assertEquals(1_000L, histogram.percentileMillis(100.0))
+        assertEquals(500L, histogram.meanMillis())
+        assertEquals(1_000L, histogram.maxMillis())
+    }
+
+    @Test
+    fun percentileMillis_neverExceedsMax() {
+        val histogram = LatencyHistogram()
+
+        histogram.recordMillis(1_234L)
+
+        assertEquals(1_234L, histogram.percentileMillis(99.9))
+    }
+
+    @Test
+    fun record_clampsOutOfRangeValues() {
+        val histogram = LatencyHistogram()
+
+        histogram.record(-1L)
+        histogram.record(Long.MAX_VALUE)
+
+        assertEquals(0L, histogram.percentileMillis(50.0))
+        // The largest value the histogram holds, about 19 hours.
+        assertEquals(((1L shl 36) - 1) / 1000, histogram.maxMillis())
+    }
+
+    @Test
+    fun record_fromManyThreads_countsEveryValue() {
+        val histogram = LatencyHistogram()
+
+        List(4) {
+            thread { repeat(10_000) { histogram.recordMillis(it % 100L) } }
+        }.forEach { it.join() }
+
+        assertEquals(40_000L, histogram.count)
+        assertEquals(99L, histogram.maxMillis())
+    }
+}
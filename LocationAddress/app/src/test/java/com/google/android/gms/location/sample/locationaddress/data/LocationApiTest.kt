@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data
+
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.location.sample.locationaddress.data.trace.LocationTrace
+import com.google.android.gms.location.sample.locationaddress.data.trace.TraceLocationProviderClient
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class LocationApiTest {
+
+    // The high accuracy request gets the first fix and the balanced power one the second.
+    private fun locationApi(trace: String) = LocationApi(
+        TraceLocationProviderClient(
+            ApplicationProvider.getApplicationContext(),
+            LocationTrace.fromCsv(trace.byteInputStream())
+        ),
+        TimeToAddressMetrics()
+    )
+
+    @Test
+    fun acquireLocation_noAccurateFix_prefersFixWithAccuracy() {
+        val api = locationApi("0,37.4220,-122.0840\n1000,37.4221,-122.0841,50")
+
+        val acquired = runBlocking { api.acquireLocation(LocationPolicy(maxAccuracyMeters = 1f)) }
+
+        assertTrue(acquired!!.location.hasAccuracy())
+        assertEquals(LocationSource.BALANCED_POWER, acquired.source)
+    }
+
+    @Test
+    fun acquireLocation_noAccurateFix_returnsMostAccurate() {
+        val api = locationApi("0,37.4220,-122.0840,80\n1000,37.4221,-122.0841,50")
+
+        val acquired = runBlocking { api.acquireLocation(LocationPolicy(maxAccuracyMeters = 1f)) }
+
+        assertEquals(50f, acquired!!.location.accuracy, 0f)
+    }
+
+    @Test
+    fun acquireLocation_accurateFix_returnsIt() {
+        val api = locationApi("0,37.4220,-122.0840,5\n1000,37.4221,-122.0841,50")
+
+        val acquired = runBlocking { api.acquireLocation() }
+
+        assertEquals(LocationSource.HIGH_ACCURACY, acquired!!.source)
+        assertEquals(5f, acquired.location.accuracy, 0f)
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.cache
+
+import com.google.android.gms.location.sample.locationaddress.data.FormattedAddress
+import java.io.File
+import java.util.Locale
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+private const val TTL_MILLIS = 60_000L
+
+@RunWith(RobolectricTestRunner::class)
+class GeocodingCacheTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var directory: File
+    private var now = 1_600_000_000_000L
+    private var locale = Locale.US
+
+    private val addresses = listOf(
+        FormattedAddress("1600 Amphitheatre Parkway", locality = "Mountain View")
+    )
+
+    @Before
+    fun setUp() {
+        directory = folder.newFolder("geocoding")
+    }
+
+    private fun cache(memoryEntries: Int = 8, maxDiskBytes: Long = Long.MAX_VALUE) =
+        GeocodingCache(
+            directory,
+            memoryEntries = memoryEntries,
+            ttlMillis = TTL_MILLIS,
+            maxDiskBytes = maxDiskBytes,
+            clock = { now },
+            locale = { locale }
+        )
+
+    @Test
+    fun get_sameCell_isAnsweredFromCache() {
+        val cache = cache()
+        cache.put(37.4220, -122.0840, 1, addresses, loadNanos = 0L)
+
+        assertEquals(addresses, cache.get(37.4221, -122.0841, 1))
+        assertEquals(1L, cache.stats.memoryHits)
+    }
+
+    @Test
+    fun get_afterRestart_isAnsweredFromDisk() {
+        cache().put(37.422, -122.084, 1, addresses, loadNanos = 0L)
+
+        val cache = cache()
+
+        assertEquals(addresses, cache.get(37.422, -122.084, 1))
+        assertEquals(1L, cache.stats.diskHits)
+    }
+
+    @Test
+    fun get_otherLocale_misses() {
+        val cache = cache()
+        cache.put(37.422, -122.084, 1, addresses, loadNanos = 0L)
+
+        locale = Locale.FRANCE
+
+        assertNull(cache.get(37.422, -122.084, 1))
+    }
+
+    @Test
+    fun get_expiredEntry_misses() {
+        val cache = cache()
+        cache.put(37.422, -122.084, 1, addresses, loadNanos = 0L)
+
+        now += TTL_MILLIS + 1
+
+        assertNull(cache.get(37.422, -122.084, 1))
+        assertEquals(0, directory.list()!!.size)
+    }
+
+    @Test
+    fun trim_deletesExpiredFiles() {
+        val cache = cache()
+        cache.put(37.422, -122.084, 1, addresses, loadNanos = 0L)
+        now += TTL_MILLIS + 1
+        cache.put(40.713, -74.006, 1, addresses, loadNanos = 0L)
+
+        assertEquals(1, cache.trim())
+        assertEquals(1, directory.list()!!.size)
+    }
+
+    @Test
+    fun trim_overSizeLimit_deletesOldestFiles() {
+        val writer = cache()
+        for (i in 0 until 10) {
+            writer.put(37.0 + i, -122.0, 1, addresses, loadNanos = 0L)
+            now += 1000L
+        }
+        val entryBytes = directory.listFiles()!!.first().length()
+
+        val cache = cache(memoryEntries = 1, maxDiskBytes = 3 * entryBytes)
+
+        assertEquals(7, cache.trim())
+        // The newest entries are kept.
+        assertEquals(addresses, cache.get(46.0, -122.0, 1))
+        assertNull(cache.get(37.0, -122.0, 1))
+    }
+}
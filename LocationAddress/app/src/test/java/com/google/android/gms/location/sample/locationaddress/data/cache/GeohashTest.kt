@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.cache
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Test
+
+class GeohashTest {
+
+    @Test
+    fun encode_matchesKnownGeohashes() {
+        assertEquals("ezs42", Geohash.encode(42.605, -5.603, 5))
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11))
+        assertEquals("9q9hvumnf", Geohash.encode(37.4220, -122.0841, 9))
+    }
+
+    @Test
+    fun encode_corners() {
+        assertEquals("00000", Geohash.encode(-90.0, -180.0, 5))
+        assertEquals("zzzzz", Geohash.encode(90.0, 180.0, 5))
+    }
+
+    @Test
+    fun encode_lowerPrecision_isPrefix() {
+        val hash = Geohash.encode(37.4220, -122.0841, 12)
+
+        for (precision in 1..11) {
+            assertEquals(
+                hash.substring(0, precision),
+                Geohash.encode(37.4220, -122.0841, precision)
+            )
+        }
+    }
+
+    @Test
+    fun encode_nearbyPointsShareCell() {
+        // About 10 m apart: one ~150 m cell at precision 7, but different ~5 m cells at 9.
+        val south = Pair(37.42200, -122.08410)
+        val north = Pair(37.42209, -122.08410)
+
+        assertEquals(
+            Geohash.encode(south.first, south.second, 7),
+            Geohash.encode(north.first, north.second, 7)
+        )
+        assertNotEquals(
+            Geohash.encode(south.first, south.second, 9),
+            Geohash.encode(north.first, north.second, 9)
+        )
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun encode_rejectsPrecisionAbove12() {
+        Geohash.encode(0.0, 0.0, 13)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun encode_rejectsPrecisionBelow1() {
+        Geohash.encode(0.0, 0.0, 0)
+    }
+}
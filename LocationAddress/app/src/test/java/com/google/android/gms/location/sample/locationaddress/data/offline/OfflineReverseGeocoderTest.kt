@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.offline
+
+import android.location.Address
+import com.google.android.gms.location.sample.locationaddress.data.ReverseGeocoder
+import java.io.File
+import java.io.IOException
+import java.util.Locale
+import java.util.concurrent.CountDownLatch
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class OfflineReverseGeocoderTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val fallback = ReverseGeocoder { latitude, longitude, _ ->
+        listOf(
+            Address(Locale.US).apply {
+                this.latitude = latitude
+                this.longitude = longitude
+                setAddressLine(0, "Fallback")
+            }
+        )
+    }
+
+    private fun index(): PlaceIndex {
+        val file = File(folder.root, "places.kdt")
+        PlaceIndexBuilder().apply { add(37.4220, -122.0840, "Mountain View") }.writeTo(file)
+        return PlaceIndex.open(file)
+    }
+
+    private fun OfflineReverseGeocoder.lookUp(): String =
+        getFromLocation(37.42, -122.08, 1).single().getAddressLine(0)
+
+    @Test
+    fun getFromLocation_whileIndexLoads_usesFallbackWithoutWaiting() {
+        val release = CountDownLatch(1)
+        val index = index()
+        val geocoder = OfflineReverseGeocoder(fallback) {
+            release.await()
+            index
+        }
+
+        assertEquals("Fallback", geocoder.lookUp())
+
+        release.countDown()
+        assertTrue(geocoder.awaitIndex(5_000L))
+        assertEquals("Mountain View", geocoder.lookUp())
+        assertEquals(1L, geocoder.hits)
+    }
+
+    @Test
+    fun getFromLocation_indexFailedToLoad_usesFallback() {
+        val geocoder = OfflineReverseGeocoder(fallback) { throw IOException("No dataset") }
+
+        assertFalse(geocoder.awaitIndex(5_000L))
+        assertEquals("Fallback", geocoder.lookUp())
+    }
+}
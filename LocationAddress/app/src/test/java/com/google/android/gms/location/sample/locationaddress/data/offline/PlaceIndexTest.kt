@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.offline
+
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.Random
+import kotlin.math.cos
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class PlaceIndexTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var file: File
+
+    @Before
+    fun setUp() {
+        file = folder.newFile("places.kdt")
+    }
+
+    private fun build(vararg places: Triple<Double, Double, String>): PlaceIndex {
+        val builder = PlaceIndexBuilder()
+        places.forEach { (latitude, longitude, label) -> builder.add(latitude, longitude, label) }
+        builder.writeTo(file)
+        return PlaceIndex.open(file)
+    }
+
+    @Test
+    fun nearest_matchesLinearScan() {
+        val random = Random(42)
+        val latitudes = DoubleArray(PLACES) { -55 + random.nextDouble() * 125 }
+        val longitudes = DoubleArray(PLACES) { -180 + random.nextDouble() * 360 }
+        val builder = PlaceIndexBuilder()
+        for (i in 0 until PLACES) builder.add(latitudes[i], longitudes[i], "Place $i")
+        builder.writeTo(file)
+        val index = PlaceIndex.open(file)
+
+        repeat(100) {
+            val lat = -55 + random.nextDouble() * 125
+            val lng = -180 + random.nextDouble() * 360
+            val scale = cos(Math.toRadians(lat))
+            val expected = (0 until PLACES).sortedBy { i ->
+                val dy = latitudes[i] - lat
+                val dx = (longitudes[i] - lng) * scale
+                dx * dx + dy * dy
+            }.take(3).map { "Place $it" }
+
+            assertEquals(expected, index.nearest(lat, lng, 3).map { it.label })
+        }
+    }
+
+    @Test
+    fun nearest_returnsNearestFirstWithDistance() {
+        val index = build(
+            Triple(37.4220, -122.0840, "Mountain View"),
+            Triple(37.7749, -122.4194, "San Francisco"),
+            Triple(40.7128, -74.0060, "New York")
+        )
+
+        val places = index.nearest(37.42, -122.08, 2)
+
+        assertEquals(listOf("Mountain View", "San Francisco"), places.map { it.label })
+        assertTrue(places[0].distanceMeters < 500)
+    }
+
+    @Test
+    fun nearest_excludesPlacesBeyondMaxDistance() {
+        val index = build(Triple(40.7128, -74.0060, "New York"))
+
+        assertEquals(emptyList<NearbyPlace>(), index.nearest(37.42, -122.08, 1, 5_000.0))
+    }
+
+    @Test(expected = IOException::class)
+    fun open_truncatedFile_throws() {
+        build(
+            Triple(37.4220, -122.0840, "Mountain View"),
+            Triple(37.7749, -122.4194, "San Francisco")
+        )
+        RandomAccessFile(file, "rw").use { it.setLength(PlaceIndex.HEADER_SIZE + 4L) }
+
+        PlaceIndex.open(file)
+    }
+
+    @Test(expected = IOException::class)
+    fun open_countLargerThanFile_throws() {
+        build(Triple(37.4220, -122.0840, "Mountain View"))
+        RandomAccessFile(file, "rw").use {
+            it.seek(4)
+            it.writeInt(Int.MAX_VALUE)
+        }
+
+        PlaceIndex.open(file)
+    }
+
+    @Test(expected = IOException::class)
+    fun open_notAnIndex_throws() {
+        file.writeText("geonameid\tname\n")
+
+        PlaceIndex.open(file)
+    }
+
+    private companion object {
+        const val PLACES = 10_000
+    }
+}
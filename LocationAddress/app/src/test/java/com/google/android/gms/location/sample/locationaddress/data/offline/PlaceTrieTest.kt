@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.gms.location.sample.locationaddress.data.offline
+
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.Random
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class PlaceTrieTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private fun trie(vararg places: Pair<String, Long>): PlaceTrie {
+        val builder = PlaceTrieBuilder()
+        places.forEach { (name, score) -> builder.add(name, name, 0.0, 0.0, score) }
+        return builder.build()
+    }
+
+    @Test
+    fun normalize_foldsCaseAccentsAndWhitespace() {
+        assertEquals("sao paulo", PlaceTrie.normalize("  São \t Paulo"))
+        assertEquals("zurich", PlaceTrie.normalize("ZÜRICH"))
+    }
+
+    @Test
+    fun search_returnsMatchesHighestScoreFirst() {
+        val trie = trie("Springfield" to 100L, "Spring Hill" to 5_000L, "Sprague" to 50L,
+            "Boston" to 600_000L)
+
+        val labels = trie.search("spr", 8).map { it.label }
+
+        assertEquals(listOf("Spring Hill", "Springfield", "Sprague"), labels)
+    }
+
+    @Test
+    fun search_ignoresCaseAndAccents() {
+        val trie = trie("Zürich" to 400_000L, "Zug" to 30_000L)
+
+        assertEquals(listOf("Zürich"), trie.search("ZUR", 8).map { it.label })
+    }
+
+    @Test
+    fun search_limitsResults() {
+        val trie = trie(*Array(20) { "Place $it" to it.toLong() })
+
+        assertEquals(3, trie.search("place", 3).size)
+        assertEquals(PlaceTrie.TOP_K, trie.search("place", 20).size)
+        assertTrue(trie.search("place", 0).isEmpty())
+        assertTrue(trie.search("", 8).isEmpty())
+        assertTrue(trie.search("x", 8).isEmpty())
+    }
+
+    @Test
+    fun search_keepsCoordinates() {
+        val builder = PlaceTrieBuilder()
+        builder.add("Mountain View", "Mountain View, CA", 37.386, -122.084, 80_000L)
+
+        val suggestion = builder.build().search("moun", 1).single()
+
+        assertEquals("Mountain View, CA", suggestion.label)
+        assertEquals(37.386, suggestion.latitude, 1e-4)
+        assertEquals(-122.084, suggestion.longitude, 1e-4)
+    }
+
+    @Test
+    fun search_largeTrie_matchesLinearScan() {
+        // Enough places that the trie is expanded well past its buckets.
+        val random = Random(42)
+        val syllables = listOf("san", "ta", "mo", "ri", "ver", "lo", "na", "ka", "el", "bur")
+        val names = List(20_000) {
+            buildString {
+                repeat(2 + random.nextInt(3)) { append(syllables[random.nextInt(syllables.size)]) }
+            }
+        }
+        val scores = LongArray(names.size) { random.nextInt(1_000_000).toLong() }
+        val builder = PlaceTrieBuilder()
+        names.forEachIndexed { i, name -> builder.add(name, "$name #$i", 0.0, 0.0, scores[i]) }
+        val trie = builder.build()
+        assertTrue(trie.nodeCount > 1)
+
+        names.shuffled(random).take(50).forEach { name ->
+            (1..name.length).forEach { length ->
+                val prefix = name.substring(0, length)
+                val expected = names.indices
+                    .filter { names[it].startsWith(prefix) }
+                    .map { scores[it] }
+                    .sortedDescending()
+                    .take(PlaceTrie.TOP_K)
+                val actual = trie.search(prefix, PlaceTrie.TOP_K)
+                    .map { scores[it.label.substringAfterLast('#').toInt()] }
+                assertEquals(prefix, expected, actual)
+            }
+        }
+    }
+
+    @Test
+    fun read_writtenTrie_answersSameSearches() {
+        val builder = PlaceTrieBuilder()
+        repeat(100) {
+            builder.add("Place $it", "Place $it, Earth", it.toDouble(), -it.toDouble(), it.toLong())
+        }
+        val trie = builder.build()
+        val file = folder.newFile("places.trie")
+
+        trie.writeTo(file)
+        val read = PlaceTrie.read(file)
+
+        assertEquals(trie.size, read.size)
+        assertEquals(trie.nodeCount, read.nodeCount)
+        listOf("p", "place 1", "place 42", "place 9", "x").forEach { prefix ->
+            assertEquals(prefix, trie.search(prefix, 8), read.search(prefix, 8))
+        }
+    }
+
+    @Test(expected = IOException::class)
+    fun read_truncatedFile_throws() {
+        val file = folder.newFile("places.trie")
+        trie("Springfield" to 100L, "Boston" to 600_000L).writeTo(file)
+        RandomAccessFile(file, "rw").use { it.setLength(it.length() / 2) }
+
+        PlaceTrie.read(file)
+    }
+
+    @Test(expected = IOException::class)
+    fun read_notATrie_throws() {
+        val file = folder.newFile("places.trie")
+        file.writeText("geonameid\tname\n")
+
+        PlaceTrie.read(file)
+    }
+}
@@ -19,12 +19,12 @@ import android.app.ActivityManager
 import android.content.BroadcastReceiver
 import android.content.Context
 import android.content.Intent
+import android.location.Location
 import android.util.Log
 import com.google.android.gms.location.LocationAvailability
 import com.google.android.gms.location.LocationResult
 import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationRepository
-import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationEntity
-import java.util.Date
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.trace.TraceLocationProviderClient
 import java.util.concurrent.Executors
 
 private const val TAG = "LUBroadcastReceiver"
@@ -57,44 +57,50 @@ class LocationUpdatesBroadcastReceiver : BroadcastReceiver() {
             }
 
             LocationResult.extractResult(intent)?.let { locationResult ->
-                val locations = locationResult.locations.map { location ->
-                    MyLocationEntity(
-                        latitude = location.latitude,
-                        longitude = location.longitude,
-                        foreground = isAppInForeground(context),
-                        date = Date(location.time)
-                    )
-                }
-                if (locations.isNotEmpty()) {
-                    LocationRepository.getInstance(context, Executors.newSingleThreadExecutor())
-                        .addLocations(locations)
-                }
-            }
-        }
-    }
-
-    // Note: This function's implementation is only for debugging purposes. If you are going to do
-    // this in a production app, you should instead track the state of all your activities in a
-    // process via android.app.Application.ActivityLifecycleCallbacks's
-    // unregisterActivityLifecycleCallbacks(). For more information, check out the link:
-    // https://developer.android.com/reference/android/app/Application.html#unregisterActivityLifecycleCallbacks(android.app.Application.ActivityLifecycleCallbacks
-    private fun isAppInForeground(context: Context): Boolean {
-        val activityManager = context.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
-        val appProcesses = activityManager.runningAppProcesses ?: return false
-
-        appProcesses.forEach { appProcess ->
-            if (appProcess.importance ==
-                ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND &&
-                appProcess.processName == context.packageName) {
-                return true
+                processLocations(context, locationResult.locations)
             }
         }
-        return false
     }
 
     companion object {
         const val ACTION_PROCESS_UPDATES =
             "com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.action." +
                     "PROCESS_UPDATES"
+
+        /**
+         * Filters and stores a batch of location updates. Called for every broadcast, and directly
+         * by [TraceLocationProviderClient] when a recorded trace is replayed.
+         */
+        fun processLocations(context: Context, locations: List<Location>) {
+            val repository =
+                LocationRepository.getInstance(context, Executors.newSingleThreadExecutor())
+            val foreground = isAppInForeground(context)
+            val entities = locations.mapNotNull { location ->
+                repository.processLocation(location, foreground)
+            }
+            if (entities.isNotEmpty()) {
+                repository.addLocations(entities)
+            }
+        }
+
+        // Note: This function's implementation is only for debugging purposes. If you are going to
+        // do this in a production app, you should instead track the state of all your activities
+        // in a process via android.app.Application.ActivityLifecycleCallbacks's
+        // unregisterActivityLifecycleCallbacks(). For more information, check out the link:
+        // https://developer.android.com/reference/android/app/Application.html#unregisterActivityLifecycleCallbacks(android.app.Application.ActivityLifecycleCallbacks
+        private fun isAppInForeground(context: Context): Boolean {
+            val activityManager =
+                context.getSystemService(Context.ACTIVITY_SERVICE) as ActivityManager
+            val appProcesses = activityManager.runningAppProcesses ?: return false
+
+            appProcesses.forEach { appProcess ->
+                if (appProcess.importance ==
+                    ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND &&
+                    appProcess.processName == context.packageName) {
+                    return true
+                }
+            }
+            return false
+        }
     }
 }
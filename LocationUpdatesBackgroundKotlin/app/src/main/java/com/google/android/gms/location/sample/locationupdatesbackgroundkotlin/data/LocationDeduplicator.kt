@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import kotlin.math.roundToLong
+
+/**
+ * Identifies a raw fix by its time and its coordinates rounded to 1e-5 degrees (about a metre).
+ */
+data class FixKey(val timeMillis: Long, val latitudeE5: Long, val longitudeE5: Long)
+
+/**
+ * Drops fixes that have already been ingested, e.g. when Play Services redelivers a batched
+ * LocationResult after process death, or when two batches overlap.
+ *
+ * Fixes are identified by their [FixKey]. The most recent [capacity] keys are remembered in
+ * memory, which catches overlapping batches without touching the database. The same date and
+ * rounded coordinates are stored with every row under a unique index, so duplicates that slip
+ * past the in-memory window (e.g. after a restart) are ignored by the insert instead.
+ *
+ * Note: This class isn't thread-safe; each stream of fixes should own its own instance.
+ */
+class LocationDeduplicator(private val capacity: Int = 1024) {
+
+    private val recentKeys = object : LinkedHashMap<FixKey, Unit>(capacity, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<FixKey, Unit>?): Boolean =
+            size > capacity
+    }
+
+    /**
+     * Number of fixes checked so far.
+     */
+    var checkedCount = 0L
+        private set
+
+    /**
+     * Number of duplicates caught by the in-memory window.
+     */
+    var memoryHitCount = 0L
+        private set
+
+    /**
+     * Number of duplicates that were only caught by the unique index.
+     */
+    var storageHitCount = 0L
+        private set
+
+    /**
+     * Fraction of checked fixes that turned out to be duplicates.
+     */
+    val hitRate: Double
+        get() = if (checkedCount == 0L) 0.0 else
+            (memoryHitCount + storageHitCount).toDouble() / checkedCount
+
+    /**
+     * Returns true if the fix with this key was seen recently, and remembers it otherwise.
+     */
+    fun isDuplicate(key: FixKey): Boolean {
+        checkedCount++
+        if (recentKeys.put(key, Unit) != null) {
+            memoryHitCount++
+            return true
+        }
+        return false
+    }
+
+    /**
+     * Records duplicates that the database ignored on insert.
+     */
+    fun recordStorageHits(count: Int) {
+        storageHitCount += count
+    }
+
+    companion object {
+
+        /**
+         * Builds the deduplication key for a fix from its time and its coordinates.
+         */
+        fun fixKey(latitude: Double, longitude: Double, timeMillis: Long): FixKey =
+            FixKey(timeMillis, (latitude * 1e5).roundToLong(), (longitude * 1e5).roundToLong())
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import java.util.concurrent.TimeUnit
+
+// Accuracy assumed for fixes that don't report one.
+private const val DEFAULT_ACCURACY_METERS = 30.0
+
+// Smallest accuracy accepted, so a fix claiming perfect accuracy can't collapse the filter.
+private const val MIN_ACCURACY_METERS = 1.0
+
+/**
+ * Constant-velocity Kalman filter that smooths a single stream of location fixes.
+ *
+ * Latitude and longitude are filtered independently, each with a position/velocity state and a
+ * 2x2 covariance. The reported accuracy of every fix is used as its measurement noise, so
+ * imprecise fixes move the estimate less than precise ones.
+ *
+ * All state lives in primitive fields and [update] doesn't allocate, which keeps the filter
+ * cheap enough to run on every fix as well as for bulk reprocessing of stored data.
+ *
+ * Note: This class isn't thread-safe; each stream of fixes should own its own instance.
+ *
+ * @param accelerationNoise process noise, expressed as the expected acceleration variance of the
+ * device in (m/s^2)^2. Larger values make the filter follow the raw fixes more closely.
+ * @param maxGapMillis if two fixes are further apart than this, the filter restarts from the
+ * newer fix instead of predicting across the gap.
+ */
+class LocationKalmanFilter(
+    private val accelerationNoise: Double = 1.0,
+    private val maxGapMillis: Long = TimeUnit.MINUTES.toMillis(10)
+) {
+
+    private var initialized = false
+    private var lastTimeMillis = 0L
+
+    // Latitude state (degrees, degrees/second) and covariance.
+    private var lat = 0.0
+    private var latVelocity = 0.0
+    private var latP00 = 0.0
+    private var latP01 = 0.0
+    private var latP11 = 0.0
+
+    // Longitude state (degrees, degrees/second) and covariance.
+    private var lng = 0.0
+    private var lngVelocity = 0.0
+    private var lngP00 = 0.0
+    private var lngP01 = 0.0
+    private var lngP11 = 0.0
+
+    /**
+     * Smoothed latitude after the last call to [update].
+     */
+    val latitude: Double
+        get() = lat
+
+    /**
+     * Smoothed longitude after the last call to [update].
+     */
+    val longitude: Double
+        get() = lng
+
+    /**
+     * Feeds a raw fix into the filter. Read the smoothed position from [latitude] and
+     * [longitude] afterwards.
+     *
+     * @param accuracyMeters horizontal accuracy of the fix, or NaN or a value <= 0 if unknown.
+     */
+    fun update(latitude: Double, longitude: Double, accuracyMeters: Float, timeMillis: Long) {
+        val accuracy = when {
+            accuracyMeters.isNaN() || accuracyMeters <= 0f -> DEFAULT_ACCURACY_METERS
+            accuracyMeters < MIN_ACCURACY_METERS -> MIN_ACCURACY_METERS
+            else -> accuracyMeters.toDouble()
+        }
+
+        // Converts metres into degrees along each axis, so noise can be expressed in the same
+        // units as the state.
+        val latScale = METERS_PER_DEGREE
+        val lngScale = metersPerDegreeLongitude(latitude)
+        val latVariance = (accuracy / latScale) * (accuracy / latScale)
+        val lngVariance = (accuracy / lngScale) * (accuracy / lngScale)
+
+        val deltaMillis = timeMillis - lastTimeMillis
+        if (!initialized || deltaMillis > maxGapMillis || deltaMillis < 0) {
+            initialized = true
+            lastTimeMillis = timeMillis
+            lat = latitude
+            latVelocity = 0.0
+            latP00 = latVariance
+            latP01 = 0.0
+            latP11 = latVariance
+            lng = longitude
+            lngVelocity = 0.0
+            lngP00 = lngVariance
+            lngP01 = 0.0
+            lngP11 = lngVariance
+            return
+        }
+        lastTimeMillis = timeMillis
+
+        val dt = deltaMillis / 1000.0
+        val dt2 = dt * dt
+        val q00 = dt2 * dt2 / 4.0
+        val q01 = dt2 * dt / 2.0
+        val q11 = dt2
+
+        // Latitude: predict, then correct with the measurement.
+        val latQ = accelerationNoise / (latScale * latScale)
+        lat += latVelocity * dt
+        latP00 += 2.0 * dt * latP01 + dt2 * latP11 + latQ * q00
+        latP01 += dt * latP11 + latQ * q01
+        latP11 += latQ * q11
+
+        val latInnovation = latitude - lat
+        val latS = latP00 + latVariance
+        val latK0 = latP00 / latS
+        val latK1 = latP01 / latS
+        lat += latK0 * latInnovation
+        latVelocity += latK1 * latInnovation
+        latP11 -= latK1 * latP01
+        latP00 *= 1.0 - latK0
+        latP01 *= 1.0 - latK0
+
+        // Longitude: predict, then correct with the measurement.
+        val lngQ = accelerationNoise / (lngScale * lngScale)
+        lng += lngVelocity * dt
+        lngP00 += 2.0 * dt * lngP01 + dt2 * lngP11 + lngQ * q00
+        lngP01 += dt * lngP11 + lngQ * q01
+        lngP11 += lngQ * q11
+
+        val lngInnovation = longitude - lng
+        val lngS = lngP00 + lngVariance
+        val lngK0 = lngP00 / lngS
+        val lngK1 = lngP01 / lngS
+        lng += lngK0 * lngInnovation
+        lngVelocity += lngK1 * lngInnovation
+        lngP11 -= lngK1 * lngP01
+        lngP00 *= 1.0 - lngK0
+        lngP01 *= 1.0 - lngK0
+    }
+
+    /**
+     * Discards all state; the next fix passed to [update] restarts the filter.
+     */
+    fun reset() {
+        initialized = false
+    }
+}
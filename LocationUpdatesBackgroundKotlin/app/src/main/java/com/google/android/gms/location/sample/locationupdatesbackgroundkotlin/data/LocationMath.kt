@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import kotlin.math.asin
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * Approximate length of one degree of latitude (and of longitude at the equator).
+ */
+internal const val METERS_PER_DEGREE = 111_320.0
+
+// Mean radius of the Earth, used for distances between fixes.
+private const val EARTH_RADIUS_METERS = 6_371_000.0
+
+/**
+ * Returns the length of one degree of longitude at the given latitude. Clamped near the poles
+ * so callers can safely divide by it.
+ */
+internal fun metersPerDegreeLongitude(latitude: Double): Double =
+    METERS_PER_DEGREE * cos(Math.toRadians(latitude)).coerceAtLeast(0.01)
+
+/**
+ * Great-circle (haversine) distance between two points, in metres. Unlike
+ * {@link android.location.Location#distanceBetween}, this doesn't allocate.
+ */
+internal fun distanceMeters(lat1: Double, lng1: Double, lat2: Double, lng2: Double): Double {
+    val dLat = Math.toRadians(lat2 - lat1)
+    val dLng = Math.toRadians(lng2 - lng1)
+    val sinLat = sin(dLat / 2)
+    val sinLng = sin(dLng / 2)
+    val a = sinLat * sinLat +
+            cos(Math.toRadians(lat1)) * cos(Math.toRadians(lat2)) * sinLng * sinLng
+    return 2 * EARTH_RADIUS_METERS * asin(sqrt(a.coerceAtMost(1.0)))
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Rejects implausible location fixes before they are written to the database.
+ *
+ * A fix is rejected if its reported accuracy is worse than [maxAccuracyMeters], or if reaching it
+ * from the last accepted fix would require moving faster than [maxSpeedMetersPerSecond]. Both
+ * fixes may be off by their accuracy, so that much extra distance is always allowed. Fixes that
+ * don't report an accuracy are taken to be as inaccurate as [maxAccuracyMeters] allows.
+ *
+ * The last accepted fix may itself have been wrong, e.g. a coarse network fix before GPS locks.
+ * Every later fix would then look like an impossible jump, so after [maxConsecutiveRejections]
+ * fixes in a row fail the speed check, the filter accepts the next one and measures from it
+ * instead. Fixes more than [maxGapMillis] after the last accepted one aren't checked for speed
+ * either, since the device may have been carried anywhere in between, e.g. on a flight.
+ *
+ * Note: This class isn't thread-safe; each stream of fixes should own its own instance.
+ */
+class LocationOutlierFilter(
+    private val maxAccuracyMeters: Float = 100f,
+    private val maxSpeedMetersPerSecond: Double = 70.0,
+    private val maxConsecutiveRejections: Int = 5,
+    private val maxGapMillis: Long = TimeUnit.MINUTES.toMillis(10)
+) {
+
+    private var hasLastFix = false
+    private var lastLatitude = 0.0
+    private var lastLongitude = 0.0
+    private var lastAccuracy = 0f
+    private var lastTimeMillis = 0L
+
+    // Fixes that failed the speed check since the last accepted one.
+    private var consecutiveRejections = 0
+
+    /**
+     * Number of fixes accepted so far.
+     */
+    var acceptedCount = 0L
+        private set
+
+    /**
+     * Number of fixes rejected so far.
+     */
+    var rejectedCount = 0L
+        private set
+
+    /**
+     * Number of times the last accepted fix was given up on after too many rejections.
+     */
+    var resetCount = 0L
+        private set
+
+    /**
+     * Returns true if the fix should be stored. Accepted fixes become the reference for the speed
+     * check of the next fix.
+     *
+     * @param accuracyMeters horizontal accuracy of the fix, or NaN if unknown.
+     */
+    fun accept(
+        latitude: Double,
+        longitude: Double,
+        accuracyMeters: Float,
+        timeMillis: Long
+    ): Boolean {
+        val accuracy = if (accuracyMeters.isNaN()) maxAccuracyMeters else accuracyMeters
+        if (accuracy > maxAccuracyMeters) {
+            rejectedCount++
+            return false
+        }
+
+        val deltaMillis = timeMillis - lastTimeMillis
+        if (hasLastFix && deltaMillis in 1..maxGapMillis) {
+            val meters = distanceMeters(lastLatitude, lastLongitude, latitude, longitude)
+            val allowedMeters =
+                maxSpeedMetersPerSecond * deltaMillis / 1000.0 + lastAccuracy + accuracy
+            if (meters > allowedMeters) {
+                consecutiveRejections++
+                if (consecutiveRejections <= maxConsecutiveRejections) {
+                    rejectedCount++
+                    return false
+                }
+                resetCount++
+            }
+        }
+
+        hasLastFix = true
+        lastLatitude = latitude
+        lastLongitude = longitude
+        lastAccuracy = accuracy
+        lastTimeMillis = timeMillis
+        consecutiveRejections = 0
+        acceptedCount++
+        return true
+    }
+}
@@ -16,10 +16,22 @@
 package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
 
 import android.content.Context
+import android.location.Location
+import android.os.Handler
+import android.os.Looper
+import android.util.Log
 import androidx.annotation.MainThread
 import androidx.lifecycle.LiveData
+import androidx.lifecycle.Transformations
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.BuildConfig
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.LocationSpatialIndex
 import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationDatabase
 import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationEntity
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationRow
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync.LocationSyncEngine
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync.LocationSyncSettings
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync.LocationSyncStats
+import java.util.Date
 import java.util.UUID
 import java.util.concurrent.ExecutorService
 
@@ -32,17 +44,110 @@ private const val TAG = "LocationRepository"
 class LocationRepository private constructor(
     private val myLocationDatabase: MyLocationDatabase,
     private val myLocationManager: MyLocationManager,
-    private val executor: ExecutorService
+    private val executor: ExecutorService,
+    syncSettings: LocationSyncSettings?,
+    zoneFilter: LocationZoneFilter?
 ) {
 
     // Database related fields/methods:
     private val locationDao = myLocationDatabase.locationDao()
 
+    // Uploads stored locations when the app is built with a backend, see LocationSyncSettings.
+    private val syncEngine = syncSettings?.let { LocationSyncEngine(locationDao, it) }
+
+    /**
+     * Upload counters, or null if no sync backend is configured.
+     */
+    val syncStats: LocationSyncStats?
+        get() = syncEngine?.stats
+
+    // Drops duplicate and implausible background fixes and smooths the rest before they reach
+    // the database.
+    private val deduplicator = LocationDeduplicator()
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val outlierFilter = LocationOutlierFilter()
+    private val locationFilter = LocationKalmanFilter()
+
+    /**
+     * Restricts which fixes are stored depending on the zones they fall in. Starts out with the
+     * zones the app was built with (see the locationZones property in app/build.gradle), if any.
+     * Null stores every fix that passes the other filters.
+     */
+    @set:MainThread
+    var zoneFilter: LocationZoneFilter? = zoneFilter
+
     /**
      * Returns all recorded locations from database.
      */
     fun getLocations(): LiveData<List<MyLocationEntity>> = locationDao.getLocations()
 
+    /**
+     * Returns all recorded locations from database as lightweight rows, for bulk reads and
+     * display.
+     */
+    fun getLocationRows(): LiveData<List<MyLocationRow>> = locationDao.getLocationRows()
+
+    /**
+     * Returns locations inside the bounding box that were recorded between [from] and [to],
+     * newest first. A box that crosses the antimeridian is given with [minLongitude] greater
+     * than [maxLongitude].
+     */
+    fun getLocationsInArea(
+        minLatitude: Double,
+        maxLatitude: Double,
+        minLongitude: Double,
+        maxLongitude: Double,
+        from: Date,
+        to: Date
+    ): LiveData<List<MyLocationEntity>> = locationDao.getLocations(
+        LocationSpatialIndex.boundingBoxQuery(
+            myLocationDatabase,
+            minLatitude, maxLatitude, minLongitude, maxLongitude, from, to)
+    )
+
+    /**
+     * Returns locations within [radiusMeters] of the given point that were recorded between
+     * [from] and [to], newest first.
+     */
+    fun getLocationsNear(
+        latitude: Double,
+        longitude: Double,
+        radiusMeters: Double,
+        from: Date,
+        to: Date
+    ): LiveData<List<MyLocationEntity>> {
+        // The index narrows the search down to the enclosing box; only those candidates are
+        // checked against the exact radius.
+        val latitudeDelta = radiusMeters / METERS_PER_DEGREE
+        val longitudeDelta = radiusMeters / metersPerDegreeLongitude(latitude)
+        val minLatitude = latitude - latitudeDelta
+        val maxLatitude = latitude + latitudeDelta
+        var minLongitude = -180.0
+        var maxLongitude = 180.0
+        // A circle that reaches a pole covers every longitude.
+        if (minLatitude > -90.0 && maxLatitude < 90.0 && longitudeDelta < 180.0) {
+            minLongitude = longitude - longitudeDelta
+            maxLongitude = longitude + longitudeDelta
+            // Wraps a box that crosses the antimeridian, so minLongitude > maxLongitude.
+            if (minLongitude < -180.0) minLongitude += 360.0
+            if (maxLongitude > 180.0) maxLongitude -= 360.0
+        }
+        val candidates = getLocationsInArea(
+            minLatitude.coerceAtLeast(-90.0),
+            maxLatitude.coerceAtMost(90.0),
+            minLongitude,
+            maxLongitude,
+            from,
+            to
+        )
+        return Transformations.map(candidates) { locations ->
+            locations.filter { location ->
+                distanceMeters(latitude, longitude, location.latitude, location.longitude) <=
+                        radiusMeters
+            }
+        }
+    }
+
     // Not being used now but could in future versions.
     /**
      * Returns specific location in database.
@@ -65,15 +170,92 @@ class LocationRepository private constructor(
     fun addLocation(myLocationEntity: MyLocationEntity) {
         executor.execute {
             locationDao.addLocation(myLocationEntity)
+            syncEngine?.requestSync()
         }
     }
 
+    /**
+     * Filters and smooths a raw fix delivered by the location APIs before it is stored. Returns
+     * null if the fix is a duplicate, an outlier or not wanted by [zoneFilter] and should be
+     * dropped. There is a single stream of background fixes, so the same filters are shared by
+     * every delivery.
+     */
+    @MainThread
+    fun processLocation(location: Location, foreground: Boolean): MyLocationEntity? {
+        val fixKey = LocationDeduplicator.fixKey(
+            location.latitude,
+            location.longitude,
+            location.time
+        )
+        if (deduplicator.isDuplicate(fixKey)) {
+            Log.d(TAG, "Dropped duplicate fix; dedup hit rate ${deduplicator.hitRate}.")
+            return null
+        }
+
+        // Unknown accuracy isn't 0 m; the filters assume a poor fix instead.
+        val accuracy = if (location.hasAccuracy()) location.accuracy else Float.NaN
+        val accepted = outlierFilter.accept(
+            location.latitude,
+            location.longitude,
+            accuracy,
+            location.time
+        )
+        if (!accepted) {
+            Log.d(TAG, "Rejected outlier fix; ${outlierFilter.rejectedCount} rejected, " +
+                    "${outlierFilter.acceptedCount} accepted so far.")
+            return null
+        }
+
+        locationFilter.update(location.latitude, location.longitude, accuracy, location.time)
+
+        // The smoothed position keeps following every fix, so the filter is ready when the device
+        // enters a zone again.
+        val zoneFilter = zoneFilter
+        if (zoneFilter != null &&
+            !zoneFilter.accept(locationFilter.latitude, locationFilter.longitude, location.time)
+        ) {
+            return null
+        }
+
+        return MyLocationEntity(
+            latitude = locationFilter.latitude,
+            longitude = locationFilter.longitude,
+            foreground = foreground,
+            date = Date(location.time),
+            // Stored as 0 when unknown, like rows recorded before accuracy was stored.
+            accuracy = if (location.hasAccuracy()) location.accuracy else 0f,
+            speed = location.speed,
+            bearing = location.bearing,
+            altitude = location.altitude,
+            provider = location.provider,
+            latitudeE5 = fixKey.latitudeE5,
+            longitudeE5 = fixKey.longitudeE5
+        )
+    }
+
     /**
      * Adds list of locations to the database.
      */
     fun addLocations(myLocationEntities: List<MyLocationEntity>) {
         executor.execute {
-            locationDao.addLocations(myLocationEntities)
+            val ignored = if (myLocationDatabase.writeSettings.highThroughput) {
+                myLocationDatabase.bulkInserter.insert(myLocationEntities)
+            } else {
+                locationDao.addLocations(myLocationEntities).count { it == -1L }
+            }
+            if (ignored > 0) {
+                recordStoredDuplicates(ignored)
+            }
+            syncEngine?.requestSync()
+        }
+    }
+
+    private fun recordStoredDuplicates(count: Int) {
+        // The deduplicator is confined to the main thread, like the rest of the ingest path.
+        mainHandler.post {
+            deduplicator.recordStorageHits(count)
+            Log.d(TAG, "Database ignored $count duplicate fixes; " +
+                    "dedup hit rate ${deduplicator.hitRate}.")
         }
     }
 
@@ -98,14 +280,27 @@ class LocationRepository private constructor(
     companion object {
         @Volatile private var INSTANCE: LocationRepository? = null
 
-        fun getInstance(context: Context, executor: ExecutorService): LocationRepository {
+        fun getInstance(
+            context: Context,
+            executor: ExecutorService
+        ): LocationRepository {
             return INSTANCE ?: synchronized(this) {
                 INSTANCE ?: LocationRepository(
                     MyLocationDatabase.getInstance(context),
                     MyLocationManager.getInstance(context),
-                    executor)
+                    executor,
+                    LocationSyncSettings.FROM_BUILD_CONFIG,
+                    loadZoneFilter(context))
                     .also { INSTANCE = it }
             }
         }
+
+        private fun loadZoneFilter(context: Context): LocationZoneFilter? {
+            if (BuildConfig.LOCATION_ZONES.isEmpty()) return null
+            val zones = context.assets.open(BuildConfig.LOCATION_ZONES).use { input ->
+                LocationZone.fromCsv(input)
+            }
+            return LocationZoneFilter(zones)
+        }
     }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import java.io.InputStream
+
+/**
+ * A circular area in which locations are logged according to [mode].
+ */
+data class LocationZone(
+    val id: String,
+    val latitude: Double,
+    val longitude: Double,
+    val radiusMeters: Double,
+    val mode: LoggingMode = LoggingMode.FULL_RATE
+) {
+
+    init {
+        require(radiusMeters > 0) { "radiusMeters must be positive, was $radiusMeters" }
+    }
+
+    /**
+     * How fixes are logged, from most to least data kept.
+     */
+    enum class LoggingMode {
+        /** Every fix is stored. */
+        FULL_RATE,
+        /** At most one fix is stored per downsampling interval. */
+        DOWNSAMPLED,
+        /** No fixes are stored. */
+        DROPPED
+    }
+
+    companion object {
+        /**
+         * Reads zones from CSV, one per line: `id,latitude,longitude,radius_meters[,mode]`, where
+         * mode is the name of a [LoggingMode] and defaults to FULL_RATE. Blank lines, lines
+         * starting with `#` and a header line starting with `id` are skipped.
+         */
+        fun fromCsv(input: InputStream): List<LocationZone> {
+            val zones = ArrayList<LocationZone>()
+            input.bufferedReader().forEachLine { line ->
+                val trimmed = line.trim()
+                if (trimmed.isEmpty() || trimmed.startsWith("#") ||
+                    trimmed.startsWith("id,", ignoreCase = true)
+                ) {
+                    return@forEachLine
+                }
+                val fields = trimmed.split(',').map { it.trim() }
+                require(fields.size >= 4) {
+                    "Expected id,latitude,longitude,radius_meters but got: $line"
+                }
+                zones += LocationZone(
+                    id = fields[0],
+                    latitude = fields[1].toDouble(),
+                    longitude = fields[2].toDouble(),
+                    radiusMeters = fields[3].toDouble(),
+                    mode = fields.getOrNull(4)?.let { LoggingMode.valueOf(it.uppercase()) }
+                        ?: LoggingMode.FULL_RATE
+                )
+            }
+            return zones
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationZone.LoggingMode
+import java.util.concurrent.TimeUnit
+import kotlin.math.abs
+import kotlin.math.floor
+
+// Size of a grid cell in the zone index, in degrees (about 1 km of latitude).
+private const val DEFAULT_CELL_DEGREES = 0.01
+
+// Zones whose bounding box covers more grid cells than this aren't put in the grid.
+private const val MAX_CELLS_PER_ZONE = 1024
+
+/**
+ * Decides, per fix, whether it should be stored at full rate, downsampled or dropped, depending on
+ * the [LocationZone]s it falls in. Fixes outside every zone are logged according to
+ * [outsideMode]. Where zones overlap, the one that keeps the most data wins.
+ *
+ * Zones are held in a uniform grid of [cellDegrees] cells, so each lookup only checks the zones
+ * whose bounding box overlaps the fix's cell instead of every zone. A zone covering more than
+ * [MAX_CELLS_PER_ZONE] cells, e.g. a whole region, isn't put in the grid, which would need an
+ * entry per cell; its bounding box is checked on every lookup instead. Bounding boxes may cross
+ * the antimeridian, and a zone around a pole covers every longitude.
+ *
+ * Note: This class isn't thread-safe; each stream of fixes should own its own instance.
+ *
+ * @param downsampleIntervalMillis minimum time between two stored fixes in a
+ * {@link LoggingMode#DOWNSAMPLED} zone.
+ */
+class LocationZoneFilter(
+    zones: List<LocationZone>,
+    private val outsideMode: LoggingMode = LoggingMode.DROPPED,
+    private val downsampleIntervalMillis: Long = TimeUnit.MINUTES.toMillis(5),
+    private val cellDegrees: Double = DEFAULT_CELL_DEGREES
+) {
+
+    private val zones = zones.toTypedArray()
+
+    // Zone indices by grid cell.
+    private val cells = HashMap<Long, IntArray>()
+
+    // Zones too large for the grid.
+    private val largeZones: IntArray
+
+    // Bounding box of each zone, with longitudes in [-180, 180]. The box crosses the antimeridian
+    // if its min longitude is greater than its max longitude.
+    private val minLatitudes = DoubleArray(this.zones.size)
+    private val maxLatitudes = DoubleArray(this.zones.size)
+    private val minLongitudes = DoubleArray(this.zones.size)
+    private val maxLongitudes = DoubleArray(this.zones.size)
+
+    // Per zone, with the last slot standing for "outside every zone".
+    private val outside = this.zones.size
+    private val lastStoredTimes = LongArray(this.zones.size + 1) { Long.MIN_VALUE }
+    private val storedCounts = LongArray(this.zones.size + 1)
+    private val skippedCounts = LongArray(this.zones.size + 1)
+
+    init {
+        val cellZones = HashMap<Long, MutableList<Int>>()
+        val large = ArrayList<Int>()
+        this.zones.forEachIndexed { index, zone ->
+            setBoundingBox(index, zone)
+
+            val rows = row(minLatitudes[index])..row(maxLatitudes[index])
+            val columns = if (minLongitudes[index] <= maxLongitudes[index]) {
+                listOf(column(minLongitudes[index])..column(maxLongitudes[index]))
+            } else {
+                listOf(
+                    column(minLongitudes[index])..column(180.0),
+                    column(-180.0)..column(maxLongitudes[index])
+                )
+            }
+            val cellCount = (rows.last - rows.first + 1) *
+                    columns.sumOf { it.last - it.first + 1 }
+            if (cellCount > MAX_CELLS_PER_ZONE) {
+                large += index
+                return@forEachIndexed
+            }
+            for (row in rows) {
+                for (range in columns) {
+                    for (column in range) {
+                        cellZones.getOrPut(cellKey(row, column)) { ArrayList() } += index
+                    }
+                }
+            }
+        }
+        cellZones.forEach { (key, indices) -> cells[key] = indices.toIntArray() }
+        largeZones = large.toIntArray()
+    }
+
+    private fun setBoundingBox(index: Int, zone: LocationZone) {
+        val latitudeDelta = zone.radiusMeters / METERS_PER_DEGREE
+        val minLatitude = zone.latitude - latitudeDelta
+        val maxLatitude = zone.latitude + latitudeDelta
+        minLatitudes[index] = minLatitude.coerceAtLeast(-90.0)
+        maxLatitudes[index] = maxLatitude.coerceAtMost(90.0)
+
+        // Degrees of longitude are shortest at the edge of the box farthest from the equator.
+        val farthestLatitude = maxOf(abs(minLatitude), abs(maxLatitude)).coerceAtMost(90.0)
+        val longitudeDelta = zone.radiusMeters / metersPerDegreeLongitude(farthestLatitude)
+        if (minLatitude <= -90.0 || maxLatitude >= 90.0 || longitudeDelta >= 180.0) {
+            minLongitudes[index] = -180.0
+            maxLongitudes[index] = 180.0
+        } else {
+            minLongitudes[index] = wrapLongitude(zone.longitude - longitudeDelta)
+            maxLongitudes[index] = wrapLongitude(zone.longitude + longitudeDelta)
+        }
+    }
+
+    /**
+     * Per-zone counts of stored and skipped fixes. The entry with a null [ZoneStats.zoneId]
+     * counts fixes outside every zone.
+     */
+    val stats: List<ZoneStats>
+        get() = (0..outside).map { index ->
+            ZoneStats(
+                if (index == outside) null else zones[index].id,
+                storedCounts[index],
+                skippedCounts[index]
+            )
+        }
+
+    /**
+     * Returns true if the fix should be stored, and counts it against the zone that decided.
+     */
+    fun accept(latitude: Double, longitude: Double, timeMillis: Long): Boolean {
+        val wrappedLongitude = wrapLongitude(longitude)
+        val cellZones = cells[cellKey(row(latitude), column(wrappedLongitude))]
+        val cellZoneCount = cellZones?.size ?: 0
+        var slot = outside
+        var mode = outsideMode
+        // The zones in the fix's cell, then the zones too large for the grid.
+        for (i in 0 until cellZoneCount + largeZones.size) {
+            val index = if (i < cellZoneCount) cellZones!![i] else largeZones[i - cellZoneCount]
+            val zone = zones[index]
+            val keepsMore = slot == outside || zone.mode.ordinal < mode.ordinal
+            if (keepsMore &&
+                inBoundingBox(index, latitude, wrappedLongitude) &&
+                distanceMeters(zone.latitude, zone.longitude, latitude, longitude) <=
+                zone.radiusMeters
+            ) {
+                slot = index
+                mode = zone.mode
+            }
+        }
+
+        val store = when (mode) {
+            LoggingMode.FULL_RATE -> true
+            LoggingMode.DOWNSAMPLED -> lastStoredTimes[slot] == Long.MIN_VALUE ||
+                    timeMillis - lastStoredTimes[slot] >= downsampleIntervalMillis ||
+                    timeMillis < lastStoredTimes[slot]
+            LoggingMode.DROPPED -> false
+        }
+        if (store) {
+            lastStoredTimes[slot] = timeMillis
+            storedCounts[slot]++
+        } else {
+            skippedCounts[slot]++
+        }
+        return store
+    }
+
+    private fun inBoundingBox(index: Int, latitude: Double, longitude: Double): Boolean {
+        if (latitude < minLatitudes[index] || latitude > maxLatitudes[index]) return false
+        val minLongitude = minLongitudes[index]
+        val maxLongitude = maxLongitudes[index]
+        return if (minLongitude <= maxLongitude) {
+            longitude in minLongitude..maxLongitude
+        } else {
+            longitude >= minLongitude || longitude <= maxLongitude
+        }
+    }
+
+    // Brings a longitude into [-180, 180).
+    private fun wrapLongitude(longitude: Double): Double =
+        if (longitude >= -180.0 && longitude < 180.0) {
+            longitude
+        } else {
+            (longitude + 180.0).mod(360.0) - 180.0
+        }
+
+    private fun row(latitude: Double) = floor(latitude / cellDegrees).toLong()
+
+    private fun column(longitude: Double) = floor(longitude / cellDegrees).toLong()
+
+    private fun cellKey(row: Long, column: Long) = (row shl 32) or (column and 0xffffffffL)
+
+    /**
+     * Counts of fixes stored and skipped in one zone, or outside every zone if [zoneId] is null.
+     */
+    data class ZoneStats(val zoneId: String?, val storedCount: Long, val skippedCount: Long)
+}
@@ -24,9 +24,14 @@ import androidx.annotation.MainThread
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.MutableLiveData
 import com.google.android.gms.location.FusedLocationProviderClient
+import com.google.android.gms.location.LocationCallback
 import com.google.android.gms.location.LocationRequest
+import com.google.android.gms.location.LocationResult
 import com.google.android.gms.location.LocationServices
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.BuildConfig
 import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.LocationUpdatesBroadcastReceiver
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.trace.LocationTrace
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.trace.TraceLocationProviderClient
 import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.hasPermission
 import java.util.concurrent.TimeUnit
 
@@ -45,9 +50,26 @@ class MyLocationManager private constructor(private val context: Context) {
     val receivingLocationUpdates: LiveData<Boolean>
         get() = _receivingLocationUpdates
 
-    // The Fused Location Provider provides access to location APIs.
+    // The Fused Location Provider provides access to location APIs. Debug builds can replay a
+    // recorded trace instead; see the locationTrace property in app/build.gradle.
     private val fusedLocationClient: FusedLocationProviderClient =
-        LocationServices.getFusedLocationProviderClient(context)
+        if (BuildConfig.LOCATION_TRACE.isNotEmpty()) {
+            TraceLocationProviderClient(
+                context,
+                LocationTrace.fromAsset(context, BuildConfig.LOCATION_TRACE),
+                object : LocationCallback() {
+                    override fun onLocationResult(result: LocationResult) {
+                        LocationUpdatesBroadcastReceiver.processLocations(
+                            context,
+                            result.locations
+                        )
+                    }
+                },
+                BuildConfig.LOCATION_TRACE_SPEED
+            )
+        } else {
+            LocationServices.getFusedLocationProviderClient(context)
+        }
 
     // Stores parameters for requests to the FusedLocationProviderApi.
     private val locationRequest: LocationRequest = LocationRequest().apply {
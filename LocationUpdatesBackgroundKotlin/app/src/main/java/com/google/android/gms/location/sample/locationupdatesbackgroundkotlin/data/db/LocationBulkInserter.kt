@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+import androidx.annotation.WorkerThread
+import androidx.sqlite.db.SupportSQLiteStatement
+
+/**
+ * Writes lists of locations through a single prepared INSERT statement that is compiled once and
+ * reused for every row, splitting large lists into transactions of [batchSize] rows.
+ *
+ * Writes go through {@link MyLocationDatabase#runInTransaction}, so Room's invalidation tracker
+ * still notifies LiveData observers of my_location_table.
+ *
+ * Note: This class isn't thread-safe; callers should use it from a single writer thread.
+ */
+class LocationBulkInserter(
+    private val database: MyLocationDatabase,
+    private val batchSize: Int
+) {
+
+    private val statement: SupportSQLiteStatement by lazy {
+        database.compileStatement(
+            "INSERT OR IGNORE INTO my_location_table (id, latitude, longitude, foreground, " +
+                    "date, accuracy, speed, bearing, altitude, provider, lat_e5, lng_e5) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")
+    }
+
+    /**
+     * Inserts all locations, committing every [batchSize] rows. Returns the number of rows that
+     * were skipped because the same fix was already stored.
+     */
+    @WorkerThread
+    fun insert(myLocationEntities: List<MyLocationEntity>): Int {
+        var ignored = 0
+        var start = 0
+        while (start < myLocationEntities.size) {
+            val end = minOf(start + batchSize, myLocationEntities.size)
+            database.runInTransaction {
+                for (index in start until end) {
+                    bind(myLocationEntities[index])
+                    if (statement.executeInsert() == -1L) ignored++
+                }
+            }
+            start = end
+        }
+        return ignored
+    }
+
+    private fun bind(myLocationEntity: MyLocationEntity) {
+        statement.clearBindings()
+        statement.bindString(1, myLocationEntity.id.toString())
+        statement.bindDouble(2, myLocationEntity.latitude)
+        statement.bindDouble(3, myLocationEntity.longitude)
+        statement.bindLong(4, if (myLocationEntity.foreground) 1L else 0L)
+        statement.bindLong(5, myLocationEntity.date.time)
+        statement.bindDouble(6, myLocationEntity.accuracy.toDouble())
+        statement.bindDouble(7, myLocationEntity.speed.toDouble())
+        statement.bindDouble(8, myLocationEntity.bearing.toDouble())
+        statement.bindDouble(9, myLocationEntity.altitude)
+        val provider = myLocationEntity.provider
+        if (provider == null) {
+            statement.bindNull(10)
+        } else {
+            statement.bindString(10, provider)
+        }
+        bindNullableLong(11, myLocationEntity.latitudeE5)
+        bindNullableLong(12, myLocationEntity.longitudeE5)
+    }
+
+    private fun bindNullableLong(index: Int, value: Long?) {
+        if (value == null) {
+            statement.bindNull(index)
+        } else {
+            statement.bindLong(index, value)
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+import android.database.sqlite.SQLiteException
+import android.util.Log
+import androidx.sqlite.db.SimpleSQLiteQuery
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteProgram
+import androidx.sqlite.db.SupportSQLiteQuery
+import java.util.Date
+
+private const val TAG = "LocationSpatialIndex"
+
+private const val INDEX_TABLE = "my_location_rtree"
+
+/**
+ * SQLite R*Tree index over the latitude, longitude and date of every row in my_location_table.
+ *
+ * Room can't declare virtual tables, so the index is created by hand and kept in sync with
+ * triggers. Rows are joined back to my_location_table through its row_id column, which unlike
+ * the implicit rowid keeps its value through VACUUM. R*Tree stores 32-bit floats and rounds every
+ * box outwards, so the queries below use the index to find candidates and then re-check the
+ * exact values stored in my_location_table.
+ *
+ * The R*Tree module is optional and some devices ship SQLite without it. There the index isn't
+ * created, and queries use the plain (latitude, longitude) index of my_location_table instead.
+ */
+object LocationSpatialIndex {
+
+    /**
+     * Creates the index and its triggers, and indexes any rows that already exist. Does nothing
+     * if this device's SQLite doesn't have the R*Tree module.
+     */
+    fun create(database: SupportSQLiteDatabase) {
+        try {
+            database.execSQL(
+                "CREATE VIRTUAL TABLE IF NOT EXISTS $INDEX_TABLE USING rtree(" +
+                        "id, minLat, maxLat, minLng, maxLng, minDate, maxDate)")
+        } catch (e: SQLiteException) {
+            Log.w(TAG, "R*Tree isn't available, spatial queries won't use it.", e)
+            return
+        }
+
+        database.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS my_location_rtree_insert " +
+                    "AFTER INSERT ON my_location_table BEGIN " +
+                    "INSERT OR REPLACE INTO $INDEX_TABLE VALUES (NEW.row_id, " +
+                    "NEW.latitude, NEW.latitude, NEW.longitude, NEW.longitude, " +
+                    "NEW.date, NEW.date); END")
+        database.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS my_location_rtree_update " +
+                    "AFTER UPDATE OF latitude, longitude, date ON my_location_table BEGIN " +
+                    "UPDATE $INDEX_TABLE SET " +
+                    "minLat = NEW.latitude, maxLat = NEW.latitude, " +
+                    "minLng = NEW.longitude, maxLng = NEW.longitude, " +
+                    "minDate = NEW.date, maxDate = NEW.date " +
+                    "WHERE id = NEW.row_id; END")
+        database.execSQL(
+            "CREATE TRIGGER IF NOT EXISTS my_location_rtree_delete " +
+                    "AFTER DELETE ON my_location_table BEGIN " +
+                    "DELETE FROM $INDEX_TABLE WHERE id = OLD.row_id; END")
+
+        database.execSQL(
+            "INSERT OR REPLACE INTO $INDEX_TABLE " +
+                    "SELECT row_id, latitude, latitude, longitude, longitude, date, date " +
+                    "FROM my_location_table")
+    }
+
+    /**
+     * Drops the index and its triggers, so [create] can rebuild it from scratch.
+     */
+    fun drop(database: SupportSQLiteDatabase) {
+        database.execSQL("DROP TRIGGER IF EXISTS my_location_rtree_insert")
+        database.execSQL("DROP TRIGGER IF EXISTS my_location_rtree_update")
+        database.execSQL("DROP TRIGGER IF EXISTS my_location_rtree_delete")
+        database.execSQL("DROP TABLE IF EXISTS $INDEX_TABLE")
+    }
+
+    /**
+     * Returns true if [create] was able to create the index in this database.
+     */
+    fun exists(database: SupportSQLiteDatabase): Boolean {
+        database.query(
+            "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+            arrayOf(INDEX_TABLE)
+        ).use { cursor ->
+            return cursor.moveToFirst()
+        }
+    }
+
+    /**
+     * Builds a query for all locations inside the bounding box that were recorded between
+     * [from] and [to] (inclusive), newest first. A box that crosses the antimeridian is given
+     * with [minLongitude] greater than [maxLongitude], e.g. 170 to -170.
+     *
+     * Whether [database] has the R*Tree index is only known once it's open, so the SQL is chosen
+     * when the query first runs, on the thread that runs it.
+     */
+    fun boundingBoxQuery(
+        database: MyLocationDatabase,
+        minLatitude: Double,
+        maxLatitude: Double,
+        minLongitude: Double,
+        maxLongitude: Double,
+        from: Date,
+        to: Date
+    ): SupportSQLiteQuery = object : SupportSQLiteQuery {
+        private val query by lazy {
+            boundingBoxQuery(
+                database.hasSpatialIndex,
+                minLatitude, maxLatitude, minLongitude, maxLongitude, from.time, to.time)
+        }
+
+        override fun getSql(): String = query.sql
+
+        override fun getArgCount(): Int = query.argCount
+
+        override fun bindTo(statement: SupportSQLiteProgram) = query.bindTo(statement)
+    }
+
+    private fun boundingBoxQuery(
+        hasSpatialIndex: Boolean,
+        minLatitude: Double,
+        maxLatitude: Double,
+        minLongitude: Double,
+        maxLongitude: Double,
+        from: Long,
+        to: Long
+    ): SimpleSQLiteQuery {
+        val select = if (hasSpatialIndex) INDEXED_SELECT else PLAIN_SELECT
+        if (minLongitude <= maxLongitude) {
+            return SimpleSQLiteQuery(
+                "$select ORDER BY date DESC",
+                arguments(
+                    hasSpatialIndex,
+                    minLatitude, maxLatitude, minLongitude, maxLongitude, from, to)
+            )
+        }
+        // Split at the antimeridian into an eastern and a western box.
+        return SimpleSQLiteQuery(
+            "$select UNION ALL $select ORDER BY date DESC",
+            arguments(hasSpatialIndex, minLatitude, maxLatitude, minLongitude, 180.0, from, to) +
+                    arguments(
+                        hasSpatialIndex, minLatitude, maxLatitude, -180.0, maxLongitude, from, to)
+        )
+    }
+
+    private fun arguments(
+        hasSpatialIndex: Boolean,
+        minLatitude: Double,
+        maxLatitude: Double,
+        minLongitude: Double,
+        maxLongitude: Double,
+        from: Long,
+        to: Long
+    ): Array<Any?> {
+        val exact = arrayOf<Any?>(
+            minLatitude, maxLatitude, minLongitude, maxLongitude, from, to)
+        return if (hasSpatialIndex) exact + exact else exact
+    }
+
+    private const val INDEXED_SELECT =
+        "SELECT my_location_table.* FROM my_location_table " +
+                "JOIN $INDEX_TABLE ON my_location_table.row_id = $INDEX_TABLE.id " +
+                "WHERE $INDEX_TABLE.maxLat >= ? AND $INDEX_TABLE.minLat <= ? " +
+                "AND $INDEX_TABLE.maxLng >= ? AND $INDEX_TABLE.minLng <= ? " +
+                "AND $INDEX_TABLE.maxDate >= ? AND $INDEX_TABLE.minDate <= ? " +
+                "AND my_location_table.latitude BETWEEN ? AND ? " +
+                "AND my_location_table.longitude BETWEEN ? AND ? " +
+                "AND my_location_table.date BETWEEN ? AND ?"
+
+    // Uses the (latitude, longitude) index of my_location_table.
+    private const val PLAIN_SELECT =
+        "SELECT * FROM my_location_table " +
+                "WHERE latitude BETWEEN ? AND ? " +
+                "AND longitude BETWEEN ? AND ? " +
+                "AND date BETWEEN ? AND ?"
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.BuildConfig
+
+/**
+ * Controls how locations are written to {@link MyLocationDatabase}.
+ *
+ * The default settings use Room's generated inserts. With [highThroughput] enabled, the database
+ * is opened in write-ahead logging mode with the given [synchronous] level, and lists of
+ * locations are written by {@link LocationBulkInserter} in transactions of [batchSize] rows.
+ *
+ * The app's database always uses [FROM_BUILD_CONFIG], which is chosen when the app is built.
+ */
+data class LocationWriteSettings(
+    val highThroughput: Boolean = false,
+    val batchSize: Int = 500,
+    val synchronous: Synchronous = Synchronous.NORMAL
+) {
+
+    init {
+        require(batchSize > 0) { "batchSize must be positive, was $batchSize" }
+    }
+
+    /**
+     * SQLite's synchronous levels, from fastest and least durable to slowest and most durable.
+     * In WAL mode, NORMAL can only lose the most recent commits on power loss; it never corrupts
+     * the database.
+     */
+    enum class Synchronous {
+        OFF, NORMAL, FULL
+    }
+
+    companion object {
+        /**
+         * Settings passed to the build, e.g. -PhighThroughputWrites; see app/build.gradle.
+         */
+        val FROM_BUILD_CONFIG = LocationWriteSettings(
+            highThroughput = BuildConfig.HIGH_THROUGHPUT_WRITES,
+            batchSize = BuildConfig.WRITE_BATCH_SIZE,
+            synchronous = Synchronous.valueOf(BuildConfig.WRITE_SYNCHRONOUS)
+        )
+    }
+}
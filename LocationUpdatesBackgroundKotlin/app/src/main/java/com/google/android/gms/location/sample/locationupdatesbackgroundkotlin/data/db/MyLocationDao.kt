@@ -18,8 +18,11 @@ package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.d
 import androidx.lifecycle.LiveData
 import androidx.room.Dao
 import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Query
+import androidx.room.RawQuery
 import androidx.room.Update
+import androidx.sqlite.db.SupportSQLiteQuery
 import java.util.UUID
 
 /**
@@ -31,15 +34,66 @@ interface MyLocationDao {
     @Query("SELECT * FROM my_location_table ORDER BY date DESC")
     fun getLocations(): LiveData<List<MyLocationEntity>>
 
+    /**
+     * Same rows as {@link #getLocations()}, read without converting dates or UUIDs.
+     */
+    @Query("SELECT row_id AS rowId, latitude, longitude, foreground, date " +
+            "FROM my_location_table ORDER BY date DESC")
+    fun getLocationRows(): LiveData<List<MyLocationRow>>
+
+    // Blocking reads, for bulk processing off the main thread.
+    @Query("SELECT * FROM my_location_table ORDER BY date DESC")
+    fun loadLocations(): List<MyLocationEntity>
+
+    @Query("SELECT row_id AS rowId, latitude, longitude, foreground, date " +
+            "FROM my_location_table ORDER BY date DESC")
+    fun loadLocationRows(): List<MyLocationRow>
+
+    @RawQuery
+    fun loadLocations(query: SupportSQLiteQuery): List<MyLocationEntity>
+
     @Query("SELECT * FROM my_location_table WHERE id=(:id)")
     fun getLocation(id: UUID): LiveData<MyLocationEntity>
 
+    /**
+     * Runs a query built by {@link LocationSpatialIndex}. Room can't verify queries against the
+     * R*Tree index at compile time, so spatial queries are passed in as raw queries.
+     */
+    @RawQuery(observedEntities = [MyLocationEntity::class])
+    fun getLocations(query: SupportSQLiteQuery): LiveData<List<MyLocationEntity>>
+
     @Update
     fun updateLocation(myLocationEntity: MyLocationEntity)
 
-    @Insert
-    fun addLocation(myLocationEntity: MyLocationEntity)
+    // Rows whose date, lat_e5 and lng_e5 are already stored are duplicates and are skipped.
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun addLocation(myLocationEntity: MyLocationEntity): Long
+
+    /**
+     * Returns the row_id of every inserted row, or -1 for duplicates that were skipped.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    fun addLocations(myLocationEntities: List<MyLocationEntity>): List<Long>
+
+    @Query("SELECT COUNT(*) FROM my_location_table WHERE uploaded = 0")
+    fun countPendingLocations(): Int
+
+    @Query("SELECT MIN(date) FROM my_location_table WHERE uploaded = 0")
+    fun getOldestPendingDate(): Long?
+
+    /**
+     * Returns the oldest locations that haven't been uploaded yet, in insertion (row_id) order.
+     */
+    @Query("SELECT row_id AS rowId, latitude, longitude, foreground, date, accuracy, speed, " +
+            "bearing, altitude FROM my_location_table WHERE uploaded = 0 " +
+            "ORDER BY row_id LIMIT :limit")
+    fun getPendingLocations(limit: Int): List<PendingLocation>
 
-    @Insert
-    fun addLocations(myLocationEntities: List<MyLocationEntity>)
+    /**
+     * Marks every location in the row_id range as uploaded. Acknowledging the same range twice
+     * has no further effect.
+     */
+    @Query("UPDATE my_location_table SET uploaded = 1 " +
+            "WHERE row_id BETWEEN :firstRowId AND :lastRowId")
+    fun markUploaded(firstRowId: Long, lastRowId: Long): Int
 }
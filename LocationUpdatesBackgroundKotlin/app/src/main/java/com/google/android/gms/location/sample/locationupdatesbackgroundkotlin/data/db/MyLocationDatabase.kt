@@ -16,37 +16,233 @@
 package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
 
 import android.content.Context
+import androidx.annotation.VisibleForTesting
 import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 
 private const val DATABASE_NAME = "my-location-database"
 
+/**
+ * Adds the fix metadata (accuracy, speed, bearing, altitude and provider) to stored locations.
+ */
+private val MIGRATION_1_2 = object : Migration(1, 2) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "ALTER TABLE my_location_table ADD COLUMN accuracy REAL NOT NULL DEFAULT 0")
+        database.execSQL(
+            "ALTER TABLE my_location_table ADD COLUMN speed REAL NOT NULL DEFAULT 0")
+        database.execSQL(
+            "ALTER TABLE my_location_table ADD COLUMN bearing REAL NOT NULL DEFAULT 0")
+        database.execSQL(
+            "ALTER TABLE my_location_table ADD COLUMN altitude REAL NOT NULL DEFAULT 0")
+        database.execSQL(
+            "ALTER TABLE my_location_table ADD COLUMN provider TEXT")
+    }
+}
+
+/**
+ * Added the R*Tree index used for spatial queries, keyed on the implicit rowid. The index is now
+ * keyed on row_id, which only exists from version 8, so MIGRATION_7_8 creates it.
+ */
+private val MIGRATION_2_3 = object : Migration(2, 3) {
+    override fun migrate(database: SupportSQLiteDatabase) = Unit
+}
+
+/**
+ * Adds the upload state used by {@link LocationSyncEngine}. Existing rows start out pending.
+ */
+private val MIGRATION_3_4 = object : Migration(3, 4) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "ALTER TABLE my_location_table ADD COLUMN uploaded INTEGER NOT NULL DEFAULT 0")
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_my_location_table_uploaded " +
+                    "ON my_location_table (uploaded)")
+    }
+}
+
+/**
+ * Adds the key used to ignore duplicate fixes. Existing rows have no key, so they never conflict.
+ */
+private val MIGRATION_4_5 = object : Migration(4, 5) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL("ALTER TABLE my_location_table ADD COLUMN fix_key INTEGER")
+        database.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS index_my_location_table_fix_key " +
+                    "ON my_location_table (fix_key)")
+    }
+}
+
+/**
+ * Adds the plain index on latitude and longitude used for spatial queries on devices whose SQLite
+ * has no R*Tree module.
+ */
+private val MIGRATION_5_6 = object : Migration(5, 6) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_my_location_table_latitude_longitude " +
+                    "ON my_location_table (latitude, longitude)")
+    }
+}
+
+/**
+ * Replaces the hashed fix_key with the rounded coordinates of the raw fix, which are unique
+ * together with the date. SQLite can't drop columns on older devices, so the table is rebuilt
+ * with the same rowids. Existing rows have no coordinates, so they never conflict.
+ */
+private val MIGRATION_6_7 = object : Migration(6, 7) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE my_location_table_new (id TEXT NOT NULL, " +
+                    "latitude REAL NOT NULL, longitude REAL NOT NULL, " +
+                    "foreground INTEGER NOT NULL, date INTEGER NOT NULL, " +
+                    "accuracy REAL NOT NULL DEFAULT 0, speed REAL NOT NULL DEFAULT 0, " +
+                    "bearing REAL NOT NULL DEFAULT 0, altitude REAL NOT NULL DEFAULT 0, " +
+                    "provider TEXT, uploaded INTEGER NOT NULL DEFAULT 0, " +
+                    "lat_e5 INTEGER, lng_e5 INTEGER, PRIMARY KEY(id))")
+        database.execSQL(
+            "INSERT INTO my_location_table_new (rowid, id, latitude, longitude, foreground, " +
+                    "date, accuracy, speed, bearing, altitude, provider, uploaded) " +
+                    "SELECT rowid, id, latitude, longitude, foreground, date, accuracy, speed, " +
+                    "bearing, altitude, provider, uploaded FROM my_location_table")
+        database.execSQL("DROP TABLE my_location_table")
+        database.execSQL("ALTER TABLE my_location_table_new RENAME TO my_location_table")
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_my_location_table_uploaded " +
+                    "ON my_location_table (uploaded)")
+        database.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS index_my_location_table_date_lat_e5_lng_e5 " +
+                    "ON my_location_table (date, lat_e5, lng_e5)")
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_my_location_table_latitude_longitude " +
+                    "ON my_location_table (latitude, longitude)")
+        // Dropping the old table also dropped the triggers that kept the R*Tree index in sync;
+        // MIGRATION_7_8 rebuilds it.
+    }
+}
+
+/**
+ * Adds row_id, an INTEGER PRIMARY KEY that aliases the rowid, and keys the R*Tree index on it.
+ * VACUUM may renumber the implicit rowid of a table without one, which left the index pointing
+ * at the wrong rows. The table is rebuilt with each row_id set to the row's current rowid, and
+ * the index is rebuilt from scratch in case a VACUUM has already renumbered them.
+ */
+private val MIGRATION_7_8 = object : Migration(7, 8) {
+    override fun migrate(database: SupportSQLiteDatabase) {
+        database.execSQL(
+            "CREATE TABLE my_location_table_new (id TEXT NOT NULL, " +
+                    "latitude REAL NOT NULL, longitude REAL NOT NULL, " +
+                    "foreground INTEGER NOT NULL, date INTEGER NOT NULL, " +
+                    "accuracy REAL NOT NULL DEFAULT 0, speed REAL NOT NULL DEFAULT 0, " +
+                    "bearing REAL NOT NULL DEFAULT 0, altitude REAL NOT NULL DEFAULT 0, " +
+                    "provider TEXT, uploaded INTEGER NOT NULL DEFAULT 0, " +
+                    "lat_e5 INTEGER, lng_e5 INTEGER, " +
+                    "row_id INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL)")
+        database.execSQL(
+            "INSERT INTO my_location_table_new (row_id, id, latitude, longitude, foreground, " +
+                    "date, accuracy, speed, bearing, altitude, provider, uploaded, lat_e5, " +
+                    "lng_e5) " +
+                    "SELECT rowid, id, latitude, longitude, foreground, date, accuracy, speed, " +
+                    "bearing, altitude, provider, uploaded, lat_e5, lng_e5 " +
+                    "FROM my_location_table")
+        database.execSQL("DROP TABLE my_location_table")
+        database.execSQL("ALTER TABLE my_location_table_new RENAME TO my_location_table")
+        database.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS index_my_location_table_id " +
+                    "ON my_location_table (id)")
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_my_location_table_uploaded " +
+                    "ON my_location_table (uploaded)")
+        database.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS index_my_location_table_date_lat_e5_lng_e5 " +
+                    "ON my_location_table (date, lat_e5, lng_e5)")
+        database.execSQL(
+            "CREATE INDEX IF NOT EXISTS index_my_location_table_latitude_longitude " +
+                    "ON my_location_table (latitude, longitude)")
+        LocationSpatialIndex.drop(database)
+        LocationSpatialIndex.create(database)
+    }
+}
+
 /**
  * Database for storing all location data.
  */
-@Database(entities = [MyLocationEntity::class], version = 1, exportSchema = false)
+@Database(entities = [MyLocationEntity::class], version = 8, exportSchema = false)
 @TypeConverters(MyLocationTypeConverters::class)
 abstract class MyLocationDatabase : RoomDatabase() {
     abstract fun locationDao(): MyLocationDao
 
+    /**
+     * Settings this database was opened with.
+     */
+    var writeSettings = LocationWriteSettings()
+        private set
+
+    /**
+     * Whether the R*Tree index exists; see {@link LocationSpatialIndex}. Opens the database, so
+     * it must be read off the main thread.
+     */
+    val hasSpatialIndex: Boolean by lazy {
+        LocationSpatialIndex.exists(openHelper.writableDatabase)
+    }
+
+    /**
+     * Prepared-statement inserter used for lists of locations in high-throughput mode.
+     */
+    val bulkInserter: LocationBulkInserter by lazy {
+        LocationBulkInserter(this, writeSettings.batchSize)
+    }
+
     companion object {
         // For Singleton instantiation
         @Volatile private var INSTANCE: MyLocationDatabase? = null
 
         fun getInstance(context: Context): MyLocationDatabase {
             return INSTANCE ?: synchronized(this) {
-                INSTANCE ?: buildDatabase(context).also { INSTANCE = it }
+                INSTANCE ?: buildDatabase(context, LocationWriteSettings.FROM_BUILD_CONFIG)
+                    .also { INSTANCE = it }
             }
         }
 
-        private fun buildDatabase(context: Context): MyLocationDatabase {
-            return Room.databaseBuilder(
+        @VisibleForTesting
+        internal fun buildDatabase(
+            context: Context,
+            writeSettings: LocationWriteSettings,
+            name: String = DATABASE_NAME,
+            allowMainThreadQueries: Boolean = false
+        ): MyLocationDatabase {
+            val builder = Room.databaseBuilder(
                     context,
                     MyLocationDatabase::class.java,
-                    DATABASE_NAME
-                ).build()
+                    name
+                )
+                .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                    MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8)
+                .addCallback(object : RoomDatabase.Callback() {
+                    override fun onCreate(db: SupportSQLiteDatabase) {
+                        LocationSpatialIndex.create(db)
+                    }
+                })
+
+            if (allowMainThreadQueries) {
+                builder.allowMainThreadQueries()
+            }
+
+            if (writeSettings.highThroughput) {
+                builder
+                    .setJournalMode(RoomDatabase.JournalMode.WRITE_AHEAD_LOGGING)
+                    .addCallback(object : RoomDatabase.Callback() {
+                        override fun onOpen(db: SupportSQLiteDatabase) {
+                            db.execSQL("PRAGMA synchronous = ${writeSettings.synchronous.name}")
+                        }
+                    })
+            }
+
+            return builder.build().also { it.writeSettings = writeSettings }
         }
     }
 }
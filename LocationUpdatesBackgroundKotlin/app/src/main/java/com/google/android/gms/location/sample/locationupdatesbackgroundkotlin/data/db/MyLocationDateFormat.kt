@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+import java.text.DateFormat
+import java.util.Date
+
+/**
+ * Formats location timestamps for display.
+ *
+ * DateFormat isn't thread-safe and is expensive to create, so each thread keeps its own instance,
+ * along with a Date it reuses for every timestamp it formats.
+ */
+internal object MyLocationDateFormat {
+
+    private val dateFormat = object : ThreadLocal<DateFormat>() {
+        override fun initialValue(): DateFormat = DateFormat.getDateTimeInstance()
+    }
+
+    private val date = object : ThreadLocal<Date>() {
+        override fun initialValue(): Date = Date()
+    }
+
+    fun format(millisSinceEpoch: Long): String {
+        val reusableDate = date.get()!!
+        reusableDate.time = millisSinceEpoch
+        return dateFormat.get()!!.format(reusableDate)
+    }
+}
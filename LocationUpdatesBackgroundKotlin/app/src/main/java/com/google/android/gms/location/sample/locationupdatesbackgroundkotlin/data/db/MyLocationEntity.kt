@@ -15,9 +15,10 @@
  */
 package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
+import androidx.room.Index
 import androidx.room.PrimaryKey
-import java.text.DateFormat
 import java.util.Date
 import java.util.UUID
 
@@ -25,13 +26,35 @@ import java.util.UUID
  * Data class for Location related data (only takes what's needed from
  * {@link android.location.Location} class).
  */
-@Entity(tableName = "my_location_table")
+@Entity(
+    tableName = "my_location_table",
+    indices = [
+        Index(value = ["id"], unique = true),
+        Index("uploaded"),
+        Index(value = ["date", "lat_e5", "lng_e5"], unique = true),
+        Index("latitude", "longitude")
+    ]
+)
 data class MyLocationEntity(
-    @PrimaryKey val id: UUID = UUID.randomUUID(),
+    val id: UUID = UUID.randomUUID(),
     val latitude: Double = 0.0,
     val longitude: Double = 0.0,
     val foreground: Boolean = true,
-    val date: Date = Date()
+    val date: Date = Date(),
+    @ColumnInfo(defaultValue = "0") val accuracy: Float = 0f,
+    @ColumnInfo(defaultValue = "0") val speed: Float = 0f,
+    @ColumnInfo(defaultValue = "0") val bearing: Float = 0f,
+    @ColumnInfo(defaultValue = "0") val altitude: Double = 0.0,
+    val provider: String? = null,
+    // Whether the location has been acknowledged by the sync backend.
+    @ColumnInfo(defaultValue = "0") val uploaded: Boolean = false,
+    // Coordinates of the raw fix this row was built from in 1e-5 degrees, which together with the
+    // date identify the fix; see LocationDeduplicator.fixKey().
+    @ColumnInfo(name = "lat_e5") val latitudeE5: Long? = null,
+    @ColumnInfo(name = "lng_e5") val longitudeE5: Long? = null,
+    // Alias of the SQLite rowid, assigned on insert and never reused. Unlike the implicit rowid
+    // it survives VACUUM, so the R*Tree index and upload acknowledgements can refer to it.
+    @PrimaryKey(autoGenerate = true) @ColumnInfo(name = "row_id") val rowId: Long = 0
 ) {
 
     override fun toString(): String {
@@ -41,7 +64,6 @@ data class MyLocationEntity(
             "in BG"
         }
 
-        return "$latitude, $longitude $appState on " +
-                "${DateFormat.getDateTimeInstance().format(date)}.\n"
+        return "$latitude, $longitude $appState on ${MyLocationDateFormat.format(date.time)}.\n"
     }
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+/**
+ * Lightweight read-only view of a row in my_location_table for bulk reads.
+ *
+ * Unlike {@link MyLocationEntity}, reading it needs no type converters: the row is identified by
+ * its numeric row_id instead of a parsed UUID, and [date] stays in epoch milliseconds instead of
+ * becoming a Date.
+ */
+data class MyLocationRow(
+    val rowId: Long,
+    val latitude: Double,
+    val longitude: Double,
+    val foreground: Boolean,
+    val date: Long
+) {
+
+    override fun toString(): String {
+        val appState = if (foreground) {
+            "in app"
+        } else {
+            "in BG"
+        }
+
+        return "$latitude, $longitude $appState on ${MyLocationDateFormat.format(date)}.\n"
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+/**
+ * A location waiting to be uploaded, as read by {@link MyLocationDao#getPendingLocations}.
+ *
+ * [rowId] is the row_id of the row in my_location_table. It increases with every insert, is never
+ * reused and keeps its value through VACUUM, so a batch can be acknowledged as a single row_id
+ * range. [date] is kept in epoch milliseconds to
+ * avoid allocating a Date per row.
+ */
+data class PendingLocation(
+    val rowId: Long,
+    val latitude: Double,
+    val longitude: Double,
+    val foreground: Boolean,
+    val date: Long,
+    val accuracy: Float,
+    val speed: Float,
+    val bearing: Float,
+    val altitude: Double
+)
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.PendingLocation
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.util.zip.GZIPOutputStream
+import kotlin.math.roundToInt
+import kotlin.math.roundToLong
+
+private const val FORMAT_VERSION = 1
+
+/**
+ * Encodes a batch of pending locations into the gzipped binary upload format.
+ *
+ * Layout (big-endian, before compression):
+ * - version (byte), first row_id (long), last row_id (long), count (int), first date (long)
+ * - per location: date delta from the previous location in ms (zigzag varint), latitude and
+ *   longitude in 1e-7 degrees (int), accuracy in decimetres, speed in cm/s, bearing in tenths
+ *   of a degree (unsigned shorts, clamped), altitude in cm (int) and foreground (byte).
+ *
+ * That is roughly 20 bytes per location before compression.
+ */
+object LocationBatchEncoder {
+
+    fun encode(batch: List<PendingLocation>): ByteArray {
+        require(batch.isNotEmpty()) { "Cannot encode an empty batch" }
+
+        val bytes = ByteArrayOutputStream(batch.size * 16 + 64)
+        DataOutputStream(GZIPOutputStream(bytes)).use { out ->
+            out.writeByte(FORMAT_VERSION)
+            out.writeLong(batch.first().rowId)
+            out.writeLong(batch.last().rowId)
+            out.writeInt(batch.size)
+            out.writeLong(batch.first().date)
+
+            var previousDate = batch.first().date
+            for (location in batch) {
+                writeVarLong(out, zigZag(location.date - previousDate))
+                previousDate = location.date
+                out.writeInt((location.latitude * 1e7).roundToInt())
+                out.writeInt((location.longitude * 1e7).roundToInt())
+                out.writeShort(unsignedShort(location.accuracy * 10f))
+                out.writeShort(unsignedShort(location.speed * 100f))
+                out.writeShort(unsignedShort(location.bearing * 10f))
+                out.writeInt((location.altitude * 100).roundToLong()
+                    .coerceIn(Int.MIN_VALUE.toLong(), Int.MAX_VALUE.toLong()).toInt())
+                out.writeByte(if (location.foreground) 1 else 0)
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    private fun unsignedShort(value: Float): Int = value.roundToInt().coerceIn(0, 0xFFFF)
+
+    private fun zigZag(value: Long): Long = (value shl 1) xor (value shr 63)
+
+    private fun writeVarLong(out: DataOutputStream, value: Long) {
+        var remaining = value
+        while (remaining and 0x7FL.inv() != 0L) {
+            out.writeByte(((remaining and 0x7F) or 0x80).toInt())
+            remaining = remaining ushr 7
+        }
+        out.writeByte(remaining.toInt())
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync
+
+import android.os.SystemClock
+import android.util.Log
+import androidx.annotation.WorkerThread
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationDao
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.PendingLocation
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+
+private const val TAG = "LocationSyncEngine"
+
+// Not among HttpURLConnection's constants.
+private const val HTTP_TOO_MANY_REQUESTS = 429
+
+/**
+ * Uploads recorded locations to a backend in batches.
+ *
+ * Every stored location starts out pending. Once enough locations are pending, or the oldest one
+ * has waited long enough (see {@link LocationSyncSettings}), pending locations are read in row_id
+ * order, encoded with {@link LocationBatchEncoder} and POSTed to the endpoint. The request
+ * carries the batch's row_id range in the X-Batch-Range header, so the backend can recognize a
+ * batch it has already stored. row_id is never reused or renumbered, so a range always names
+ * the same locations. On a 2xx (or a 409 for a range the backend already has), the
+ * range is marked as uploaded.
+ *
+ * A 413 means the batch is too large, so it's split in half and the halves are sent instead.
+ * Other 4xx responses, except 408 and 429, mean the backend will never take the batch; it's
+ * logged, counted in [stats] and skipped by marking it as uploaded, so it can't hold up the
+ * locations behind it. Everything else, including network errors, is retried with exponential
+ * backoff, up to {@link LocationSyncSettings#maxRetries} times in a row.
+ *
+ * All database and network work happens on the engine's own background thread, [executor].
+ */
+class LocationSyncEngine(
+    private val locationDao: MyLocationDao,
+    private val settings: LocationSyncSettings,
+    private val executor: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor()
+) {
+
+    // Only accessed on the executor thread.
+    private var consecutiveFailures = 0
+    private var scheduledSync: ScheduledFuture<*>? = null
+
+    /**
+     * Upload counters, for monitoring throughput, batch sizes and bytes per location.
+     */
+    val stats = LocationSyncStats()
+
+    /**
+     * Checks whether a batch is due and uploads it if so; otherwise schedules the next check.
+     * Safe to call after every insert.
+     */
+    fun requestSync() {
+        executor.execute { syncIfDue() }
+    }
+
+    @WorkerThread
+    private fun syncIfDue() {
+        if (consecutiveFailures > settings.maxRetries) {
+            // Gave up; uploading again would most likely fail the same way.
+            return
+        }
+        if (consecutiveFailures > 0 && scheduledSync?.isDone == false) {
+            // Backing off; the scheduled retry will pick up the new locations too.
+            return
+        }
+
+        val pendingCount = locationDao.countPendingLocations()
+        if (pendingCount == 0) return
+        val oldestPendingDate = locationDao.getOldestPendingDate() ?: return
+        val waitMillis = oldestPendingDate + settings.maxDelayMillis - System.currentTimeMillis()
+        if (pendingCount < settings.maxBatchSize && waitMillis > 0) {
+            schedule(waitMillis)
+            return
+        }
+        uploadPending()
+    }
+
+    @WorkerThread
+    private fun uploadPending() {
+        // Halved every time the backend finds a batch too large, for the rest of this run.
+        var batchSize = settings.maxBatchSize
+        while (true) {
+            val batch = locationDao.getPendingLocations(batchSize)
+            if (batch.isEmpty()) return
+
+            when (upload(batch)) {
+                UploadResult.ACKNOWLEDGED -> {
+                    consecutiveFailures = 0
+                    locationDao.markUploaded(batch.first().rowId, batch.last().rowId)
+                }
+                UploadResult.TOO_LARGE -> if (batch.size > 1) {
+                    batchSize = batch.size / 2
+                } else {
+                    skip(batch)
+                }
+                UploadResult.REJECTED -> skip(batch)
+                UploadResult.FAILED -> {
+                    stats.recordFailure()
+                    consecutiveFailures++
+                    if (consecutiveFailures > settings.maxRetries) {
+                        Log.w(TAG, "Giving up after $consecutiveFailures failed uploads")
+                    } else {
+                        schedule(settings.backoffMillis(consecutiveFailures), force = true)
+                    }
+                    return
+                }
+            }
+        }
+    }
+
+    // Marks a batch the backend won't take as uploaded, so the locations after it can go.
+    @WorkerThread
+    private fun skip(batch: List<PendingLocation>) {
+        Log.w(TAG, "Backend rejected ${batch.size} locations, skipping them")
+        stats.recordRejected(batch.size)
+        consecutiveFailures = 0
+        locationDao.markUploaded(batch.first().rowId, batch.last().rowId)
+    }
+
+    private fun schedule(delayMillis: Long, force: Boolean = false) {
+        val current = scheduledSync
+        if (!force && current != null && !current.isDone &&
+            current.getDelay(TimeUnit.MILLISECONDS) <= delayMillis) {
+            return
+        }
+        current?.cancel(false)
+        scheduledSync = executor.schedule(
+            { if (force) uploadPending() else syncIfDue() },
+            delayMillis,
+            TimeUnit.MILLISECONDS
+        )
+    }
+
+    /**
+     * Sends one batch and classifies the backend's response.
+     */
+    @WorkerThread
+    private fun upload(batch: List<PendingLocation>): UploadResult {
+        val body = LocationBatchEncoder.encode(batch)
+        val startMillis = SystemClock.elapsedRealtime()
+        val connection = settings.endpoint.openConnection() as HttpURLConnection
+        return try {
+            connection.requestMethod = "POST"
+            connection.doOutput = true
+            connection.connectTimeout = settings.timeoutMillis
+            connection.readTimeout = settings.timeoutMillis
+            connection.setFixedLengthStreamingMode(body.size)
+            connection.setRequestProperty("Content-Type", "application/octet-stream")
+            connection.setRequestProperty("Content-Encoding", "gzip")
+            connection.setRequestProperty(
+                "X-Batch-Range", "${batch.first().rowId}-${batch.last().rowId}")
+            connection.outputStream.use { it.write(body) }
+
+            val responseCode = connection.responseCode
+            val result = when (responseCode) {
+                in 200..299, HttpURLConnection.HTTP_CONFLICT -> UploadResult.ACKNOWLEDGED
+                HttpURLConnection.HTTP_ENTITY_TOO_LARGE -> UploadResult.TOO_LARGE
+                // Timeouts and rate limiting are temporary.
+                HttpURLConnection.HTTP_CLIENT_TIMEOUT, HTTP_TOO_MANY_REQUESTS ->
+                    UploadResult.FAILED
+                in 400..499 -> UploadResult.REJECTED
+                else -> UploadResult.FAILED
+            }
+            if (result == UploadResult.ACKNOWLEDGED) {
+                stats.recordUpload(
+                    batch.size, body.size, SystemClock.elapsedRealtime() - startMillis)
+            } else {
+                Log.d(TAG, "Upload of ${batch.size} locations rejected: $responseCode")
+            }
+            result
+        } catch (e: IOException) {
+            Log.d(TAG, "Upload of ${batch.size} locations failed: $e")
+            UploadResult.FAILED
+        } finally {
+            connection.disconnect()
+        }
+    }
+
+    private enum class UploadResult {
+        /** Stored by the backend, now or before. */
+        ACKNOWLEDGED,
+        /** Too large for the backend; a smaller batch may go through. */
+        TOO_LARGE,
+        /** Never going to be accepted. */
+        REJECTED,
+        /** Worth retrying later. */
+        FAILED
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.BuildConfig
+import java.net.URL
+import java.util.concurrent.TimeUnit
+
+/**
+ * Configures {@link LocationSyncEngine}.
+ *
+ * A batch is uploaded once [maxBatchSize] locations are pending, or once the oldest pending
+ * location is [maxDelayMillis] old, whichever comes first. Failed uploads are retried after
+ * [initialBackoffMillis], doubling up to [maxBackoffMillis]. Once [maxRetries] retries in a row
+ * have failed, the engine stops uploading until it's created again, e.g. when the app restarts.
+ *
+ * The app uploads with [FROM_BUILD_CONFIG], which is only set when the app is built with an
+ * endpoint.
+ */
+data class LocationSyncSettings(
+    val endpoint: URL,
+    val maxBatchSize: Int = 500,
+    val maxDelayMillis: Long = TimeUnit.MINUTES.toMillis(15),
+    val initialBackoffMillis: Long = TimeUnit.SECONDS.toMillis(30),
+    val maxBackoffMillis: Long = TimeUnit.MINUTES.toMillis(30),
+    val timeoutMillis: Int = TimeUnit.SECONDS.toMillis(30).toInt(),
+    val maxRetries: Int = 10
+) {
+
+    init {
+        require(maxBatchSize > 0) { "maxBatchSize must be positive, was $maxBatchSize" }
+        require(maxRetries >= 0) { "maxRetries must not be negative, was $maxRetries" }
+    }
+
+    /**
+     * Returns how long to wait before retrying after [consecutiveFailures] failed uploads.
+     */
+    fun backoffMillis(consecutiveFailures: Int): Long {
+        val exponent = (consecutiveFailures - 1).coerceIn(0, 16)
+        return (initialBackoffMillis shl exponent).coerceAtMost(maxBackoffMillis)
+    }
+
+    companion object {
+        /**
+         * Settings for the endpoint passed to the build with -PsyncEndpoint, or null if there is
+         * none; see app/build.gradle.
+         */
+        val FROM_BUILD_CONFIG: LocationSyncSettings? = BuildConfig.SYNC_ENDPOINT
+            .takeIf { it.isNotEmpty() }
+            ?.let { LocationSyncSettings(URL(it)) }
+    }
+}
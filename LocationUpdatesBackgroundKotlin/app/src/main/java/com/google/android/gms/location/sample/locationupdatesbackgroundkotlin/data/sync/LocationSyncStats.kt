@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync
+
+/**
+ * Upload counters kept by {@link LocationSyncEngine}.
+ *
+ * Batch sizes are recorded in power-of-two buckets: bucket i counts batches of 2^i to
+ * 2^(i + 1) - 1 locations.
+ */
+class LocationSyncStats {
+
+    private val batchSizeBuckets = LongArray(BUCKET_COUNT)
+
+    var batchesUploaded = 0L
+        private set
+    var fixesUploaded = 0L
+        private set
+    var bytesUploaded = 0L
+        private set
+    var failedAttempts = 0L
+        private set
+    var batchesRejected = 0L
+        private set
+    var fixesRejected = 0L
+        private set
+    var uploadTimeMillis = 0L
+        private set
+
+    @Synchronized
+    fun recordUpload(fixes: Int, bytes: Int, elapsedMillis: Long) {
+        batchesUploaded++
+        fixesUploaded += fixes
+        bytesUploaded += bytes
+        uploadTimeMillis += elapsedMillis
+        val bucket = (63 - java.lang.Long.numberOfLeadingZeros(fixes.toLong()))
+            .coerceIn(0, BUCKET_COUNT - 1)
+        batchSizeBuckets[bucket]++
+    }
+
+    @Synchronized
+    fun recordFailure() {
+        failedAttempts++
+    }
+
+    @Synchronized
+    fun recordRejected(fixes: Int) {
+        batchesRejected++
+        fixesRejected += fixes
+    }
+
+    /**
+     * Average compressed bytes sent per location.
+     */
+    @get:Synchronized
+    val bytesPerFix: Double
+        get() = if (fixesUploaded == 0L) 0.0 else bytesUploaded.toDouble() / fixesUploaded
+
+    /**
+     * Locations uploaded per second of time spent in upload requests.
+     */
+    @get:Synchronized
+    val fixesPerSecond: Double
+        get() = if (uploadTimeMillis == 0L) 0.0 else fixesUploaded * 1000.0 / uploadTimeMillis
+
+    @Synchronized
+    fun batchSizeDistribution(): LongArray = batchSizeBuckets.copyOf()
+
+    @Synchronized
+    override fun toString(): String {
+        return "LocationSyncStats(batches=$batchesUploaded, fixes=$fixesUploaded, " +
+                "bytes=$bytesUploaded, failures=$failedAttempts, rejected=$fixesRejected, " +
+                "bytesPerFix=%.1f, fixesPerSecond=%.1f, batchSizes=%s)".format(
+                    bytesPerFix, fixesPerSecond, batchSizeBuckets.contentToString())
+    }
+
+    companion object {
+        private const val BUCKET_COUNT = 16
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.trace
+
+import android.content.Context
+import android.location.Location
+import android.os.Build
+import android.util.Xml
+import org.xmlpull.v1.XmlPullParser
+import java.io.InputStream
+import java.text.ParseException
+import java.text.SimpleDateFormat
+import java.util.Locale
+import java.util.TimeZone
+
+/**
+ * A recorded sequence of location fixes, used by [TraceLocationProviderClient] to replay
+ * movement without real location hardware. Fixes are kept in primitive arrays and only turned
+ * into [Location] objects when they're delivered.
+ *
+ * Two formats are supported:
+ *  - CSV, one fix per line: `time_millis,latitude,longitude[,accuracy[,altitude[,speed[,bearing]]]]`.
+ *    Blank lines, lines starting with `#` and a header line starting with `time` are skipped.
+ *  - GPX, using the `lat`/`lon` attributes, `<ele>` and `<time>` of every `<trkpt>` or `<wpt>`.
+ */
+class LocationTrace private constructor(
+    private val times: LongArray,
+    private val latitudes: DoubleArray,
+    private val longitudes: DoubleArray,
+    private val accuracies: FloatArray,
+    private val altitudes: DoubleArray,
+    private val speeds: FloatArray,
+    private val bearings: FloatArray
+) {
+
+    val size: Int
+        get() = times.size
+
+    /** Milliseconds between the first fix and fix [index]. */
+    fun offsetOf(index: Int): Long = (times[index] - times[0]).coerceAtLeast(0L)
+
+    /** Creates a [Location] for fix [index], stamped with [timeMillis] and [elapsedNanos]. */
+    fun toLocation(index: Int, timeMillis: Long, elapsedNanos: Long) = Location(PROVIDER).apply {
+        latitude = latitudes[index]
+        longitude = longitudes[index]
+        time = timeMillis
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            elapsedRealtimeNanos = elapsedNanos
+        }
+        if (!accuracies[index].isNaN()) accuracy = accuracies[index]
+        if (!altitudes[index].isNaN()) altitude = altitudes[index]
+        if (!speeds[index].isNaN()) speed = speeds[index]
+        if (!bearings[index].isNaN()) bearing = bearings[index]
+    }
+
+    private class Builder {
+        val times = ArrayList<Long>()
+        val latitudes = ArrayList<Double>()
+        val longitudes = ArrayList<Double>()
+        val accuracies = ArrayList<Float>()
+        val altitudes = ArrayList<Double>()
+        val speeds = ArrayList<Float>()
+        val bearings = ArrayList<Float>()
+
+        fun add(
+            time: Long,
+            latitude: Double,
+            longitude: Double,
+            accuracy: Float = Float.NaN,
+            altitude: Double = Double.NaN,
+            speed: Float = Float.NaN,
+            bearing: Float = Float.NaN
+        ) {
+            times += time
+            latitudes += latitude
+            longitudes += longitude
+            accuracies += accuracy
+            altitudes += altitude
+            speeds += speed
+            bearings += bearing
+        }
+
+        fun build(): LocationTrace {
+            require(times.isNotEmpty()) { "Trace contains no fixes" }
+            return LocationTrace(
+                times.toLongArray(),
+                latitudes.toDoubleArray(),
+                longitudes.toDoubleArray(),
+                accuracies.toFloatArray(),
+                altitudes.toDoubleArray(),
+                speeds.toFloatArray(),
+                bearings.toFloatArray()
+            )
+        }
+    }
+
+    companion object {
+        const val PROVIDER = "trace"
+
+        // Used for GPX points without a timestamp.
+        private const val DEFAULT_INTERVAL_MILLIS = 1000L
+
+        /** Loads a trace from the app's assets, choosing the format from the file extension. */
+        fun fromAsset(context: Context, name: String): LocationTrace =
+            context.assets.open(name).use { input ->
+                if (name.endsWith(".gpx", ignoreCase = true)) fromGpx(input) else fromCsv(input)
+            }
+
+        fun fromCsv(input: InputStream): LocationTrace {
+            val builder = Builder()
+            input.bufferedReader().forEachLine { line ->
+                val trimmed = line.trim()
+                if (trimmed.isEmpty() || trimmed.startsWith("#") ||
+                    trimmed.startsWith("time", ignoreCase = true)
+                ) {
+                    return@forEachLine
+                }
+                val fields = trimmed.split(',')
+                require(fields.size >= 3) { "Expected time,latitude,longitude but got: $line" }
+                builder.add(
+                    time = fields[0].trim().toLong(),
+                    latitude = fields[1].trim().toDouble(),
+                    longitude = fields[2].trim().toDouble(),
+                    accuracy = fields.getOrNull(3)?.trim()?.toFloatOrNull() ?: Float.NaN,
+                    altitude = fields.getOrNull(4)?.trim()?.toDoubleOrNull() ?: Double.NaN,
+                    speed = fields.getOrNull(5)?.trim()?.toFloatOrNull() ?: Float.NaN,
+                    bearing = fields.getOrNull(6)?.trim()?.toFloatOrNull() ?: Float.NaN
+                )
+            }
+            return builder.build()
+        }
+
+        fun fromGpx(input: InputStream): LocationTrace {
+            val builder = Builder()
+            val parser = Xml.newPullParser()
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false)
+            parser.setInput(input, null)
+
+            var latitude = 0.0
+            var longitude = 0.0
+            var altitude = Double.NaN
+            var time = -1L
+            var inPoint = false
+            var text = ""
+            while (parser.next() != XmlPullParser.END_DOCUMENT) {
+                when (parser.eventType) {
+                    XmlPullParser.START_TAG -> if (parser.name == "trkpt" || parser.name == "wpt") {
+                        inPoint = true
+                        latitude = parser.getAttributeValue(null, "lat").toDouble()
+                        longitude = parser.getAttributeValue(null, "lon").toDouble()
+                        altitude = Double.NaN
+                        time = -1L
+                    }
+                    XmlPullParser.TEXT -> text = parser.text.trim()
+                    XmlPullParser.END_TAG -> when {
+                        !inPoint -> Unit
+                        parser.name == "ele" -> altitude = text.toDoubleOrNull() ?: Double.NaN
+                        parser.name == "time" -> time = parseGpxTime(text)
+                        parser.name == "trkpt" || parser.name == "wpt" -> {
+                            inPoint = false
+                            val previous = builder.times.lastOrNull()
+                            if (time < 0) {
+                                time = if (previous == null) 0L else previous + DEFAULT_INTERVAL_MILLIS
+                            }
+                            builder.add(time, latitude, longitude, altitude = altitude)
+                        }
+                    }
+                }
+            }
+            return builder.build()
+        }
+
+        // GPX times are ISO 8601 in UTC, e.g. 2021-06-01T12:00:00Z or 2021-06-01T12:00:00.250Z.
+        private fun parseGpxTime(text: String): Long {
+            val format = SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.US).apply {
+                timeZone = TimeZone.getTimeZone("UTC")
+            }
+            return try {
+                val seconds = text.substringBefore('.').removeSuffix("Z")
+                val fraction = text.substringAfter('.', "").removeSuffix("Z")
+                val millis = fraction.padEnd(3, '0').take(3).toIntOrNull() ?: 0
+                format.parse(seconds)!!.time + millis
+            } catch (e: ParseException) {
+                -1L
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.trace
+
+import android.annotation.SuppressLint
+import android.content.Context
+import android.app.PendingIntent
+import android.location.Location
+import android.os.Handler
+import android.os.Looper
+import android.os.SystemClock
+import com.google.android.gms.location.FusedLocationProviderClient
+import com.google.android.gms.location.LocationCallback
+import com.google.android.gms.location.LocationRequest
+import com.google.android.gms.location.LocationResult
+import com.google.android.gms.tasks.Task
+import com.google.android.gms.tasks.Tasks
+
+/**
+ * A [FusedLocationProviderClient] that replays a [LocationTrace] instead of using the device's
+ * location, to drive the app with a known route.
+ *
+ * This sample requests updates with a [PendingIntent], which a trace can't be delivered through
+ * the way Play services does, so fixes are passed to [pendingIntentCallback] on the main thread
+ * instead. They're delivered with the spacing recorded in the trace divided by [speed]; a speed
+ * of 0 delivers them as fast as the main thread can process them. A fix recorded t ms into the
+ * trace is stamped with the time playback started plus t / [speed] (t for a speed of 0), in both
+ * wall clock and elapsed realtime, so code downstream sees live fixes with their recorded
+ * spacing. Each loop of the trace starts again from the current time.
+ *
+ * If the request sets a max wait time, fixes are grouped into [LocationResult]s of
+ * `maxWaitTime / interval` fixes, the same way batched delivery works on a device. A batch is
+ * delivered when its last fix is due.
+ *
+ * Only the calls used by this sample are replayed; everything else goes to the real client.
+ */
+class TraceLocationProviderClient(
+    context: Context,
+    private val trace: LocationTrace,
+    private val pendingIntentCallback: LocationCallback,
+    private val speed: Float = 1f
+) : FusedLocationProviderClient(context) {
+
+    private val playbacks = HashMap<PendingIntent, Playback>()
+
+    @SuppressLint("MissingPermission")
+    override fun requestLocationUpdates(
+        request: LocationRequest,
+        pendingIntent: PendingIntent
+    ): Task<Void> {
+        val perResult =
+            if (request.maxWaitTime > request.interval && request.interval > 0) {
+                (request.maxWaitTime / request.interval).toInt()
+            } else {
+                1
+            }
+        synchronized(playbacks) {
+            playbacks.remove(pendingIntent)?.stop()
+            val playback = Playback(Handler(Looper.getMainLooper()), perResult)
+            playbacks[pendingIntent] = playback
+            playback.start()
+        }
+        return Tasks.forResult(null)
+    }
+
+    override fun removeLocationUpdates(pendingIntent: PendingIntent): Task<Void> {
+        synchronized(playbacks) {
+            playbacks.remove(pendingIntent)?.stop()
+        }
+        return Tasks.forResult(null)
+    }
+
+    private inner class Playback(
+        private val handler: Handler,
+        private val perResult: Int
+    ) : Runnable {
+
+        private val timeScale = if (speed > 0f) speed else 1f
+
+        private var index = 0
+        private var stopped = false
+
+        // Wall clock and elapsed realtime at the start of the current loop of the trace.
+        private var loopStartMillis = 0L
+        private var loopStartElapsedNanos = 0L
+
+        // Scaled offset of the last delivered fix from the start of the loop.
+        private var deliveredOffsetMillis = 0L
+
+        fun start() {
+            startLoop(System.currentTimeMillis(), SystemClock.elapsedRealtime() * 1_000_000L)
+            scheduleNextBatch()
+        }
+
+        fun stop() {
+            stopped = true
+            handler.removeCallbacks(this)
+        }
+
+        private fun startLoop(timeMillis: Long, elapsedNanos: Long) {
+            loopStartMillis = timeMillis
+            loopStartElapsedNanos = elapsedNanos
+            deliveredOffsetMillis = 0L
+            index = 0
+        }
+
+        private fun scaledOffsetOf(index: Int): Long = (trace.offsetOf(index) / timeScale).toLong()
+
+        // Runs again when the last fix of the next batch is due.
+        private fun scheduleNextBatch() {
+            if (speed > 0f) {
+                val last = minOf(index + perResult, trace.size) - 1
+                handler.postDelayed(
+                    this,
+                    (scaledOffsetOf(last) - deliveredOffsetMillis).coerceAtLeast(0L)
+                )
+            } else {
+                handler.post(this)
+            }
+        }
+
+        override fun run() {
+            if (stopped) return
+
+            val end = minOf(index + perResult, trace.size)
+            val batch = ArrayList<Location>(end - index)
+            while (index < end) {
+                deliveredOffsetMillis = scaledOffsetOf(index)
+                batch += trace.toLocation(
+                    index++,
+                    loopStartMillis + deliveredOffsetMillis,
+                    loopStartElapsedNanos + deliveredOffsetMillis * 1_000_000L
+                )
+            }
+            pendingIntentCallback.onLocationResult(LocationResult.create(batch))
+
+            if (index >= trace.size) {
+                // Stamps run ahead of the clock when replaying as fast as possible, so the next
+                // loop never starts before the last fix of this one.
+                startLoop(
+                    maxOf(System.currentTimeMillis(), loopStartMillis + deliveredOffsetMillis + 1),
+                    maxOf(
+                        SystemClock.elapsedRealtime() * 1_000_000L,
+                        loopStartElapsedNanos + (deliveredOffsetMillis + 1) * 1_000_000L
+                    )
+                )
+            }
+            scheduleNextBatch()
+        }
+    }
+}
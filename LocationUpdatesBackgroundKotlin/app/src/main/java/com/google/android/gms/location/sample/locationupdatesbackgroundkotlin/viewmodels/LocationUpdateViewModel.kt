@@ -34,7 +34,7 @@ class LocationUpdateViewModel(application: Application) : AndroidViewModel(appli
 
     val receivingLocationUpdates: LiveData<Boolean> = locationRepository.receivingLocationUpdates
 
-    val locationListLiveData = locationRepository.getLocations()
+    val locationListLiveData = locationRepository.getLocationRows()
 
     fun startLocationUpdates() = locationRepository.startLocationUpdates()
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.benchmark
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.LocationSpatialIndex
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.LocationWriteSettings
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationDatabase
+import java.util.Date
+import java.util.concurrent.TimeUnit
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Benchmarks for the Room write and read paths of {@link MyLocationDatabase}.
+ */
+@RunWith(RobolectricTestRunner::class)
+class LocationDatabaseBenchmark {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val databases = mutableListOf<MyLocationDatabase>()
+
+    private fun newDatabase(
+        writeSettings: LocationWriteSettings = LocationWriteSettings()
+    ): MyLocationDatabase {
+        val name = "benchmark-${databases.size}"
+        context.deleteDatabase(name)
+        return MyLocationDatabase.buildDatabase(context, writeSettings, name)
+            .also { databases += it }
+    }
+
+    @After
+    fun tearDown() {
+        databases.forEach { it.close() }
+    }
+
+    /**
+     * Rows/s written by Room's generated @Insert and by the bulk inserter at each batch size and
+     * synchronous level.
+     */
+    @Test
+    fun addLocations() {
+        val benchmark = Microbenchmark("LocationDatabaseBenchmark.addLocations")
+        val locations = syntheticLocations(10_000)
+        lateinit var database: MyLocationDatabase
+
+        benchmark.measure(
+            "roomInsert",
+            operations = locations.size,
+            setUp = { database = newDatabase() }
+        ) {
+            database.locationDao().addLocations(locations)
+        }
+
+        for (synchronous in LocationWriteSettings.Synchronous.values()) {
+            for (batchSize in intArrayOf(100, 1_000, 10_000)) {
+                val settings = LocationWriteSettings(
+                    highThroughput = true,
+                    batchSize = batchSize,
+                    synchronous = synchronous
+                )
+                benchmark.measure(
+                    "bulkInsert[synchronous=$synchronous,batchSize=$batchSize]",
+                    operations = locations.size,
+                    setUp = { database = newDatabase(settings) }
+                ) {
+                    database.bulkInserter.insert(locations)
+                }
+            }
+        }
+        benchmark.write()
+    }
+
+    /**
+     * Time and allocations per row when reading 100k rows as entities (Date and UUID conversion)
+     * and as lightweight rows.
+     */
+    @Test
+    fun readLocations() {
+        val benchmark = Microbenchmark("LocationDatabaseBenchmark.readLocations")
+        val database = newDatabase()
+        database.bulkInserter.insert(syntheticLocations(100_000))
+        val dao = database.locationDao()
+
+        benchmark.measure("entities", operations = 100_000) {
+            check(dao.loadLocations().size == 100_000)
+        }
+        benchmark.measure("rows", operations = 100_000) {
+            check(dao.loadLocationRows().size == 100_000)
+        }
+        benchmark.write()
+    }
+
+    /**
+     * Latency of an "all fixes within ~1 km during one month" query through the R*Tree index,
+     * compared with loading every row and filtering in Kotlin, at several table sizes.
+     */
+    @Test
+    fun spatialQuery() {
+        val benchmark = Microbenchmark("LocationDatabaseBenchmark.spatialQuery")
+        val from = Date(TRACE_START_MILLIS + TimeUnit.DAYS.toMillis(1))
+        val to = Date(from.time + TimeUnit.DAYS.toMillis(30))
+        val minLatitude = 37.413
+        val maxLatitude = 37.431
+        val minLongitude = -122.095
+        val maxLongitude = -122.073
+
+        for (size in intArrayOf(10_000, 100_000, 1_000_000)) {
+            val database = newDatabase()
+            database.bulkInserter.insert(syntheticLocations(size))
+            val dao = database.locationDao()
+            val query = LocationSpatialIndex.boundingBoxQuery(
+                database,
+                minLatitude, maxLatitude, minLongitude, maxLongitude, from, to)
+
+            benchmark.measure("rtree[rows=$size]", operations = 1, iterations = 21) {
+                consume(dao.loadLocations(query))
+            }
+            benchmark.measure("fullScan[rows=$size]", operations = 1) {
+                consume(
+                    dao.loadLocations().filter { location ->
+                        location.latitude in minLatitude..maxLatitude &&
+                                location.longitude in minLongitude..maxLongitude &&
+                                location.date.time in from.time..to.time
+                    }
+                )
+            }
+            database.close()
+        }
+        benchmark.write()
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.benchmark
+
+import android.location.Location
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationRepository
+import java.util.concurrent.Executors
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Benchmarks the mapping {@link LocationUpdatesBroadcastReceiver} applies to every delivered fix:
+ * deduplication, outlier rejection and smoothing into a {@link MyLocationEntity}.
+ */
+@RunWith(RobolectricTestRunner::class)
+class LocationIngestBenchmark {
+
+    @Test
+    fun processLocation() {
+        val benchmark = Microbenchmark("LocationIngestBenchmark.processLocation")
+        val repository = LocationRepository.getInstance(
+            ApplicationProvider.getApplicationContext(),
+            Executors.newSingleThreadExecutor()
+        )
+        val entities = syntheticLocations(10_000)
+        var lap = 0L
+        lateinit var locations: List<Location>
+
+        benchmark.measure(
+            "processLocation",
+            operations = entities.size,
+            // Fixes are delivered on the main thread, and processLocation is @MainThread.
+            mainThread = true,
+            setUp = {
+                // Moves every lap forward in time, so fixes are never duplicates of earlier laps.
+                val offset = lap++ * entities.size * 60_000L
+                locations = entities.map { entity ->
+                    Location("fused").apply {
+                        latitude = entity.latitude
+                        longitude = entity.longitude
+                        accuracy = entity.accuracy
+                        speed = entity.speed
+                        bearing = entity.bearing
+                        altitude = entity.altitude
+                        time = entity.date.time + offset
+                    }
+                }
+            }
+        ) {
+            locations.forEach { location ->
+                consume(repository.processLocation(location, false))
+            }
+        }
+        benchmark.write()
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.benchmark
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationEntity
+import java.util.Date
+import java.util.Random
+import kotlin.math.roundToLong
+
+// Start of every synthetic trace: 2020-09-13T12:26:40Z.
+const val TRACE_START_MILLIS = 1_600_000_000_000L
+
+/**
+ * Builds [count] locations recorded once a minute on a random walk around Mountain View, with
+ * realistic accuracy, speed and bearing values. Every location is a distinct fix.
+ */
+fun syntheticLocations(count: Int, seed: Long = 42): List<MyLocationEntity> {
+    val random = Random(seed)
+    var latitude = 37.422
+    var longitude = -122.084
+    return List(count) { i ->
+        latitude = (latitude + random.nextGaussian() * 1e-3).coerceIn(37.2, 37.6)
+        longitude = (longitude + random.nextGaussian() * 1e-3).coerceIn(-122.3, -121.8)
+        MyLocationEntity(
+            latitude = latitude,
+            longitude = longitude,
+            foreground = random.nextBoolean(),
+            date = Date(TRACE_START_MILLIS + i * 60_000L),
+            accuracy = 3f + random.nextFloat() * 20f,
+            speed = random.nextFloat() * 2f,
+            bearing = random.nextFloat() * 360f,
+            altitude = 30.0 + random.nextGaussian(),
+            provider = "fused",
+            latitudeE5 = (latitude * 1e5).roundToLong(),
+            longitudeE5 = (longitude * 1e5).roundToLong()
+        )
+    }
+}
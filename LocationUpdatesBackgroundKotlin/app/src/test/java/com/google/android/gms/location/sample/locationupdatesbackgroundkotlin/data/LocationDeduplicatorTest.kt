@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LocationDeduplicatorTest {
+
+    @Test
+    fun fixKey_roundsCoordinatesToAboutAMetre() {
+        assertEquals(
+            LocationDeduplicator.fixKey(37.422001, -122.084001, 1_000L),
+            LocationDeduplicator.fixKey(37.422004, -122.083998, 1_000L))
+        assertNotEquals(
+            LocationDeduplicator.fixKey(37.42200, -122.08400, 1_000L),
+            LocationDeduplicator.fixKey(37.42201, -122.08400, 1_000L))
+        assertNotEquals(
+            LocationDeduplicator.fixKey(37.422, -122.084, 1_000L),
+            LocationDeduplicator.fixKey(37.422, -122.084, 1_001L))
+    }
+
+    @Test
+    fun fixKey_doesNotCollideForOffsetsThatCancelOut() {
+        // One step north and 31 steps west collided when the parts were hashed as h * 31 + x.
+        val deduplicator = LocationDeduplicator()
+
+        assertFalse(deduplicator.isDuplicate(
+            LocationDeduplicator.fixKey(37.42200, -122.08400, 1_000L)))
+        assertFalse(deduplicator.isDuplicate(
+            LocationDeduplicator.fixKey(37.42201, -122.08431, 1_000L)))
+    }
+
+    @Test
+    fun isDuplicate_catchesRedeliveredFixes() {
+        val deduplicator = LocationDeduplicator()
+        val key = LocationDeduplicator.fixKey(37.422, -122.084, 1_000L)
+
+        assertFalse(deduplicator.isDuplicate(key))
+        assertTrue(deduplicator.isDuplicate(key))
+        assertEquals(2L, deduplicator.checkedCount)
+        assertEquals(1L, deduplicator.memoryHitCount)
+        assertEquals(0.5, deduplicator.hitRate, 0.0)
+    }
+
+    @Test
+    fun isDuplicate_forgetsKeysOutsideTheWindow() {
+        val deduplicator = LocationDeduplicator(capacity = 2)
+        val first = LocationDeduplicator.fixKey(37.422, -122.084, 1_000L)
+
+        deduplicator.isDuplicate(first)
+        deduplicator.isDuplicate(LocationDeduplicator.fixKey(37.422, -122.084, 2_000L))
+        deduplicator.isDuplicate(LocationDeduplicator.fixKey(37.422, -122.084, 3_000L))
+
+        assertFalse(deduplicator.isDuplicate(first))
+    }
+
+    @Test
+    fun recordStorageHits_countsTowardsHitRate() {
+        val deduplicator = LocationDeduplicator()
+        repeat(4) { i ->
+            deduplicator.isDuplicate(LocationDeduplicator.fixKey(0.0, 0.0, i.toLong()))
+        }
+
+        deduplicator.recordStorageHits(1)
+
+        assertEquals(1L, deduplicator.storageHitCount)
+        assertEquals(0.25, deduplicator.hitRate, 0.0)
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import kotlin.math.abs
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LocationKalmanFilterTest {
+
+    // Latitude of the point this many meters north of 37.422.
+    private fun north(meters: Double) = 37.422 + meters / METERS_PER_DEGREE
+
+    private fun metersNorth(latitude: Double) = (latitude - 37.422) * METERS_PER_DEGREE
+
+    @Test
+    fun update_firstFix_isReturnedAsIs() {
+        val filter = LocationKalmanFilter()
+
+        filter.update(37.422, -122.084, 10f, 1_000L)
+
+        assertEquals(37.422, filter.latitude, 0.0)
+        assertEquals(-122.084, filter.longitude, 0.0)
+    }
+
+    @Test
+    fun update_noisyStationaryFixes_smoothsNoise() {
+        val filter = LocationKalmanFilter()
+
+        // Fixes alternate 22 m either side of the true position.
+        for (i in 0 until 30) {
+            filter.update(north(if (i % 2 == 0) -22.0 else 22.0), -122.084, 20f, i * 1_000L)
+        }
+
+        assertTrue(abs(metersNorth(filter.latitude)) < 5.0)
+    }
+
+    @Test
+    fun update_steadyMovement_tracksPosition() {
+        val filter = LocationKalmanFilter()
+
+        for (i in 0 until 60) {
+            filter.update(north(i * 10.0), -122.084, 10f, i * 1_000L)
+        }
+
+        assertEquals(590.0, metersNorth(filter.latitude), 1.0)
+    }
+
+    @Test
+    fun update_preciseFix_movesEstimateMoreThanImpreciseFix() {
+        val precise = LocationKalmanFilter()
+        val imprecise = LocationKalmanFilter()
+        precise.update(37.422, -122.084, 10f, 0L)
+        imprecise.update(37.422, -122.084, 10f, 0L)
+
+        precise.update(north(50.0), -122.084, 5f, 1_000L)
+        imprecise.update(north(50.0), -122.084, 100f, 1_000L)
+
+        assertTrue(metersNorth(precise.latitude) > 40.0)
+        assertTrue(metersNorth(imprecise.latitude) < 5.0)
+    }
+
+    @Test
+    fun update_afterLongGap_restartsFromNewFix() {
+        val filter = LocationKalmanFilter(maxGapMillis = 60_000L)
+        filter.update(37.422, -122.084, 10f, 0L)
+
+        filter.update(north(500.0), -122.084, 100f, 120_000L)
+
+        assertEquals(north(500.0), filter.latitude, 0.0)
+    }
+
+    @Test
+    fun update_afterReset_restartsFromNewFix() {
+        val filter = LocationKalmanFilter()
+        filter.update(37.422, -122.084, 10f, 0L)
+        filter.reset()
+
+        filter.update(north(500.0), -122.084, 100f, 1_000L)
+
+        assertEquals(north(500.0), filter.latitude, 0.0)
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LocationOutlierFilterTest {
+
+    // Latitude of the point this many meters north of 37.422.
+    private fun north(meters: Double) = 37.422 + meters / METERS_PER_DEGREE
+
+    @Test
+    fun accept_inaccurateFix_isRejected() {
+        val filter = LocationOutlierFilter(maxAccuracyMeters = 100f)
+
+        assertFalse(filter.accept(37.422, -122.084, 150f, 1_000L))
+        assertTrue(filter.accept(37.422, -122.084, 100f, 2_000L))
+        assertEquals(1L, filter.rejectedCount)
+        assertEquals(1L, filter.acceptedCount)
+    }
+
+    @Test
+    fun accept_fixWithoutAccuracy_isTreatedAsLeastAccurateAllowed() {
+        val filter = LocationOutlierFilter(maxAccuracyMeters = 100f)
+
+        assertTrue(filter.accept(37.422, -122.084, Float.NaN, 1_000L))
+        // 70 m/s plus 100 m of slack for each fix.
+        assertTrue(filter.accept(north(260.0), -122.084, Float.NaN, 2_000L))
+        assertFalse(filter.accept(north(600.0), -122.084, Float.NaN, 3_000L))
+    }
+
+    @Test
+    fun accept_allowsForAccuracyOfBothFixes() {
+        val precise = LocationOutlierFilter(maxSpeedMetersPerSecond = 70.0)
+        val coarse = LocationOutlierFilter(maxSpeedMetersPerSecond = 70.0)
+        precise.accept(37.422, -122.084, 5f, 0L)
+        coarse.accept(37.422, -122.084, 50f, 0L)
+
+        // 150 m in a second is only plausible if both fixes may be 50 m off.
+        assertFalse(precise.accept(north(150.0), -122.084, 5f, 1_000L))
+        assertTrue(coarse.accept(north(150.0), -122.084, 50f, 1_000L))
+    }
+
+    @Test
+    fun accept_impossibleJump_isRejected() {
+        val filter = LocationOutlierFilter(maxSpeedMetersPerSecond = 70.0)
+        filter.accept(37.422, -122.084, 10f, 0L)
+
+        // 60 m/s is a fast car; 1 km in a second isn't.
+        assertTrue(filter.accept(north(60.0), -122.084, 10f, 1_000L))
+        assertFalse(filter.accept(north(1_060.0), -122.084, 10f, 2_000L))
+    }
+
+    @Test
+    fun accept_rejectedFix_isNotTheReferenceForNextFix() {
+        val filter = LocationOutlierFilter()
+        filter.accept(37.422, -122.084, 10f, 0L)
+        filter.accept(north(1_000.0), -122.084, 10f, 1_000L)
+
+        // Moving on from the last accepted fix is plausible, from the outlier it isn't.
+        assertTrue(filter.accept(north(20.0), -122.084, 10f, 2_000L))
+        assertEquals(1L, filter.rejectedCount)
+        assertEquals(2L, filter.acceptedCount)
+    }
+
+    @Test
+    fun accept_firstFixIsOutlier_recoversAfterConsecutiveRejections() {
+        val filter = LocationOutlierFilter(maxConsecutiveRejections = 3)
+        // A wrong fix 10 km away, then the device's real position walking north.
+        assertTrue(filter.accept(north(10_000.0), -122.084, 10f, 0L))
+
+        val accepted = (1..10).map { i ->
+            filter.accept(north(i * 1.5), -122.084, 10f, i * 1_000L)
+        }
+
+        assertEquals(listOf(false, false, false) + List(7) { true }, accepted)
+        assertEquals(1L, filter.resetCount)
+    }
+
+    @Test
+    fun accept_afterLongGap_skipsSpeedCheck() {
+        val filter = LocationOutlierFilter(maxGapMillis = 600_000L)
+        filter.accept(37.422, -122.084, 10f, 0L)
+
+        // 500 km away two hours later, e.g. after a flight.
+        assertTrue(filter.accept(north(500_000.0), -122.084, 10f, 7_200_000L))
+        assertTrue(filter.accept(north(500_010.0), -122.084, 10f, 7_201_000L))
+        assertEquals(0L, filter.resetCount)
+    }
+}
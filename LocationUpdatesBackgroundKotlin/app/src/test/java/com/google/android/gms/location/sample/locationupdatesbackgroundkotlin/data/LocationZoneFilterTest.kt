@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationZone.LoggingMode
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+private const val MINUTE = 60_000L
+
+class LocationZoneFilterTest {
+
+    private val home = LocationZone("home", 37.4220, -122.0840, 200.0, LoggingMode.FULL_RATE)
+    private val campus =
+        LocationZone("campus", 37.4230, -122.0850, 2_000.0, LoggingMode.DOWNSAMPLED)
+    private val gym = LocationZone("gym", 37.4000, -122.1000, 100.0, LoggingMode.DROPPED)
+
+    @Test
+    fun accept_storesEveryFixInFullRateZone() {
+        val filter = LocationZoneFilter(listOf(home))
+
+        assertTrue(filter.accept(37.4221, -122.0841, 0L))
+        assertTrue(filter.accept(37.4221, -122.0841, 1_000L))
+    }
+
+    @Test
+    fun accept_downsamplesFixesInDownsampledZone() {
+        val filter = LocationZoneFilter(listOf(campus), downsampleIntervalMillis = 5 * MINUTE)
+
+        assertTrue(filter.accept(37.4300, -122.0850, 0L))
+        assertFalse(filter.accept(37.4300, -122.0850, 4 * MINUTE))
+        assertTrue(filter.accept(37.4300, -122.0850, 5 * MINUTE))
+    }
+
+    @Test
+    fun accept_usesOutsideModeOutsideEveryZone() {
+        assertFalse(LocationZoneFilter(listOf(home)).accept(40.71, -74.0, 0L))
+        assertTrue(
+            LocationZoneFilter(listOf(home), outsideMode = LoggingMode.FULL_RATE)
+                .accept(40.71, -74.0, 0L))
+    }
+
+    @Test
+    fun accept_prefersZoneThatKeepsMoreData() {
+        // Home lies inside campus, so fixes at home are stored at full rate.
+        val filter = LocationZoneFilter(listOf(campus, home))
+
+        assertTrue(filter.accept(37.4220, -122.0840, 0L))
+        assertTrue(filter.accept(37.4220, -122.0840, 1_000L))
+        assertEquals(2L, filter.stats.single { it.zoneId == "home" }.storedCount)
+    }
+
+    @Test
+    fun accept_dropsFixesInDroppedZone() {
+        val filter = LocationZoneFilter(listOf(gym), outsideMode = LoggingMode.FULL_RATE)
+
+        assertFalse(filter.accept(37.4000, -122.1000, 0L))
+        assertEquals(1L, filter.stats.single { it.zoneId == "gym" }.skippedCount)
+    }
+
+    @Test
+    fun accept_findsZonesSpanningSeveralCells() {
+        // The zone is much larger than a grid cell.
+        val filter = LocationZoneFilter(listOf(campus), cellDegrees = 0.001)
+
+        assertTrue(filter.accept(37.4230 + 0.015, -122.0850, 0L))
+        assertFalse(filter.accept(37.4230 + 0.02, -122.0850, 0L))
+    }
+
+    @Test
+    fun accept_findsZonesTooLargeForTheGrid() {
+        // 500 km around Paris would be about a million cells of 0.01 degrees.
+        val region = LocationZone("region", 48.86, 2.35, 500_000.0, LoggingMode.FULL_RATE)
+        val filter = LocationZoneFilter(listOf(home, region))
+
+        assertTrue(filter.accept(45.76, 4.84, 0L)) // Lyon, about 390 km away.
+        assertFalse(filter.accept(43.30, 5.37, 0L)) // Marseille, about 660 km away.
+        assertTrue(filter.accept(37.4221, -122.0841, 0L))
+        assertEquals(1L, filter.stats.single { it.zoneId == "region" }.storedCount)
+    }
+
+    @Test
+    fun accept_findsZonesAcrossTheAntimeridian() {
+        // A degree of longitude is about 106 km here.
+        val fiji = LocationZone("fiji", -17.0, 179.95, 12_000.0, LoggingMode.FULL_RATE)
+        val filter = LocationZoneFilter(listOf(fiji))
+
+        assertTrue(filter.accept(-17.0, 179.85, 0L))
+        assertTrue(filter.accept(-17.0, -179.95, 0L))
+        assertTrue(filter.accept(-17.0, 180.05, 0L))
+        assertFalse(filter.accept(-17.0, -179.85, 0L))
+        assertFalse(filter.accept(-17.0, 179.75, 0L))
+    }
+
+    @Test
+    fun fromCsv_readsZonesAndSkipsCommentsAndHeader() {
+        val csv = """
+            id,latitude,longitude,radius_meters,mode
+            # Comment
+            home, 37.422, -122.084, 200
+
+            gym,37.4,-122.1,100,dropped
+        """.trimIndent()
+
+        val zones = LocationZone.fromCsv(csv.byteInputStream())
+
+        assertEquals(
+            listOf(
+                LocationZone("home", 37.422, -122.084, 200.0, LoggingMode.FULL_RATE),
+                LocationZone("gym", 37.4, -122.1, 100.0, LoggingMode.DROPPED)
+            ),
+            zones
+        )
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import java.util.Date
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+private const val DATABASE_NAME = "spatial-index-test"
+
+@RunWith(RobolectricTestRunner::class)
+class LocationSpatialIndexTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private lateinit var database: MyLocationDatabase
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(DATABASE_NAME)
+        database = MyLocationDatabase.buildDatabase(
+            context, LocationWriteSettings(), DATABASE_NAME, allowMainThreadQueries = true)
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    private fun addLocation(latitude: Double, longitude: Double, time: Long) {
+        database.locationDao().addLocation(
+            MyLocationEntity(latitude = latitude, longitude = longitude, date = Date(time)))
+    }
+
+    private fun query(
+        minLatitude: Double,
+        maxLatitude: Double,
+        minLongitude: Double,
+        maxLongitude: Double,
+        from: Long = 0L,
+        to: Long = Long.MAX_VALUE
+    ): List<MyLocationEntity> = database.locationDao().loadLocations(
+        LocationSpatialIndex.boundingBoxQuery(
+            database,
+            minLatitude, maxLatitude, minLongitude, maxLongitude, Date(from), Date(to))
+    )
+
+    private fun addLocations() {
+        addLocation(37.42, -122.08, 1_000L)
+        addLocation(37.43, -122.09, 2_000L)
+        addLocation(37.43, -122.09, 9_000L)
+        addLocation(40.71, -74.00, 3_000L)
+        addLocation(-17.0, 179.5, 4_000L)
+        addLocation(-17.1, -179.5, 5_000L)
+    }
+
+    @Test
+    fun boundingBoxQuery_returnsLocationsInBoxAndTimeRangeNewestFirst() {
+        addLocations()
+
+        val locations = query(37.0, 38.0, -123.0, -122.0, from = 0L, to = 5_000L)
+
+        assertEquals(listOf(2_000L, 1_000L), locations.map { it.date.time })
+    }
+
+    @Test
+    fun boundingBoxQuery_splitsBoxAtAntimeridian() {
+        addLocations()
+
+        val locations = query(-18.0, -16.0, 179.0, -179.0)
+
+        assertEquals(listOf(-179.5, 179.5), locations.map { it.longitude })
+    }
+
+    @Test
+    fun boundingBoxQuery_afterVacuum_returnsSameRows() {
+        addLocations()
+        val db = database.openHelper.writableDatabase
+        db.execSQL("DELETE FROM my_location_table WHERE date <= 2000")
+        db.execSQL("VACUUM")
+
+        val locations = query(37.0, 38.0, -123.0, -122.0)
+
+        assertEquals(listOf(9_000L), locations.map { it.date.time })
+        assertEquals(listOf(3L), locations.map { it.rowId })
+    }
+
+    @Test
+    fun boundingBoxQuery_withoutSpatialIndex_usesPlainColumns() {
+        // Same state as a device whose SQLite has no R*Tree module.
+        val db = database.openHelper.writableDatabase
+        db.execSQL("DROP TRIGGER IF EXISTS my_location_rtree_insert")
+        db.execSQL("DROP TRIGGER IF EXISTS my_location_rtree_update")
+        db.execSQL("DROP TRIGGER IF EXISTS my_location_rtree_delete")
+        db.execSQL("DROP TABLE IF EXISTS my_location_rtree")
+        addLocations()
+
+        assertFalse(database.hasSpatialIndex)
+        assertEquals(
+            listOf(2_000L, 1_000L),
+            query(37.0, 38.0, -123.0, -122.0, from = 0L, to = 5_000L).map { it.date.time })
+        assertEquals(
+            listOf(-179.5, 179.5),
+            query(-18.0, -16.0, 179.0, -179.0).map { it.longitude })
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import java.util.Date
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+private const val DATABASE_NAME = "dao-test"
+
+@RunWith(RobolectricTestRunner::class)
+class MyLocationDaoTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private lateinit var database: MyLocationDatabase
+    private lateinit var dao: MyLocationDao
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(DATABASE_NAME)
+        database = MyLocationDatabase.buildDatabase(
+            context, LocationWriteSettings(), DATABASE_NAME, allowMainThreadQueries = true)
+        dao = database.locationDao()
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    private fun fix(time: Long, latitudeE5: Long?, longitudeE5: Long?) = MyLocationEntity(
+        date = Date(time), latitudeE5 = latitudeE5, longitudeE5 = longitudeE5)
+
+    @Test
+    fun addLocations_skipsFixesThatAreAlreadyStored() {
+        dao.addLocation(fix(1_000L, 3_742_200L, -12_208_400L))
+
+        val rowIds = dao.addLocations(listOf(
+            fix(1_000L, 3_742_200L, -12_208_400L),
+            fix(1_000L, 3_742_201L, -12_208_431L),
+            fix(2_000L, 3_742_200L, -12_208_400L)
+        ))
+
+        assertEquals(-1L, rowIds[0])
+        assertEquals(3, dao.loadLocations().size)
+    }
+
+    @Test
+    fun addLocations_neverSkipsRowsWithoutFixCoordinates() {
+        dao.addLocations(listOf(fix(1_000L, null, null), fix(1_000L, null, null)))
+
+        assertEquals(2, dao.loadLocations().size)
+    }
+
+    @Test
+    fun bulkInserter_skipsFixesThatAreAlreadyStored() {
+        val locations = listOf(
+            fix(1_000L, 3_742_200L, -12_208_400L),
+            fix(1_000L, 3_742_200L, -12_208_400L),
+            fix(2_000L, 3_742_200L, -12_208_400L)
+        )
+
+        assertEquals(1, LocationBulkInserter(database, batchSize = 2).insert(locations))
+        assertEquals(2, dao.loadLocations().size)
+    }
+
+    @Test
+    fun markUploaded_removesRowIdRangeFromPending() {
+        dao.addLocations(List(5) { i -> fix(i.toLong(), i.toLong(), 0L) })
+
+        dao.markUploaded(1L, 3L)
+        // Acknowledging the same range again changes nothing.
+        dao.markUploaded(1L, 3L)
+
+        assertEquals(2, dao.countPendingLocations())
+        assertEquals(listOf(4L, 5L), dao.getPendingLocations(10).map { it.rowId })
+        assertEquals(3L, dao.getOldestPendingDate())
+    }
+
+    @Test
+    fun markUploaded_afterDeleteAndVacuum_acknowledgesSameRows() {
+        dao.addLocations(List(5) { i -> fix(i.toLong(), i.toLong(), 0L) })
+        val db = database.openHelper.writableDatabase
+        db.execSQL("DELETE FROM my_location_table WHERE date < 2")
+        db.execSQL("VACUUM")
+        val pending = dao.getPendingLocations(10)
+
+        dao.markUploaded(pending.first().rowId, pending[1].rowId)
+
+        assertEquals(listOf(3L, 4L, 5L), pending.map { it.rowId })
+        assertEquals(listOf(4L), dao.getPendingLocations(10).map { it.date })
+        // A new row gets a fresh row_id rather than reusing a deleted one.
+        dao.addLocation(fix(5L, 5L, 0L))
+        assertEquals(listOf(5L, 6L), dao.getPendingLocations(10).map { it.rowId })
+    }
+}
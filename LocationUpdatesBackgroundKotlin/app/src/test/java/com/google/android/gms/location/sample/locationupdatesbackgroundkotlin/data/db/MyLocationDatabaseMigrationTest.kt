@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import java.util.Date
+import java.util.UUID
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+private const val DATABASE_NAME = "migration-test"
+
+/**
+ * Opens a database created with the first schema and checks that the migrations bring it up to
+ * the current one. Room validates the migrated schema against the entities when it opens it.
+ */
+@RunWith(RobolectricTestRunner::class)
+class MyLocationDatabaseMigrationTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val firstId = UUID.randomUUID()
+    private val secondId = UUID.randomUUID()
+    private lateinit var database: MyLocationDatabase
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(DATABASE_NAME)
+        // Version 1, as the first release of the app created it.
+        SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null).use {
+            it.execSQL(
+                "CREATE TABLE my_location_table (id TEXT NOT NULL, latitude REAL NOT NULL, " +
+                        "longitude REAL NOT NULL, foreground INTEGER NOT NULL, " +
+                        "date INTEGER NOT NULL, PRIMARY KEY(id))")
+            it.execSQL(
+                "INSERT INTO my_location_table VALUES (?, 37.42, -122.08, 1, 1000)",
+                arrayOf(firstId.toString()))
+            it.execSQL(
+                "INSERT INTO my_location_table VALUES (?, 40.71, -74.0, 0, 2000)",
+                arrayOf(secondId.toString()))
+            it.version = 1
+        }
+        database = MyLocationDatabase.buildDatabase(
+            context, LocationWriteSettings(), DATABASE_NAME, allowMainThreadQueries = true)
+    }
+
+    @After
+    fun tearDown() {
+        database.close()
+    }
+
+    @Test
+    fun migrate1To8_keepsRowsWithDefaults() {
+        val locations = database.locationDao().loadLocations()
+
+        assertEquals(listOf(secondId, firstId), locations.map { it.id })
+        assertEquals(listOf(40.71, 37.42), locations.map { it.latitude })
+        assertEquals(listOf(false, true), locations.map { it.foreground })
+        locations.forEach { location ->
+            assertEquals(0f, location.accuracy, 0f)
+            assertNull(location.provider)
+            assertFalse(location.uploaded)
+            assertNull(location.latitudeE5)
+        }
+    }
+
+    @Test
+    fun migrate1To8_existingRowsArePendingUpload() {
+        val dao = database.locationDao()
+
+        assertEquals(2, dao.countPendingLocations())
+        assertEquals(1_000L, dao.getOldestPendingDate())
+    }
+
+    @Test
+    fun migrate1To8_indexesExistingAndNewRows() {
+        database.locationDao().addLocation(
+            MyLocationEntity(latitude = 37.43, longitude = -122.09, date = Date(3_000L)))
+
+        val locations = database.locationDao().loadLocations(
+            LocationSpatialIndex.boundingBoxQuery(
+                database, 37.0, 38.0, -123.0, -122.0, Date(0L), Date(Long.MAX_VALUE)))
+
+        assertEquals(listOf(3_000L, 1_000L), locations.map { it.date.time })
+    }
+
+    @Test
+    fun migrate1To8_skipsDuplicateFixes() {
+        val dao = database.locationDao()
+        val fix = MyLocationEntity(
+            date = Date(4_000L), latitudeE5 = 3_742_200L, longitudeE5 = -12_208_400L)
+
+        dao.addLocation(fix)
+        dao.addLocation(fix.copy(id = UUID.randomUUID()))
+
+        assertEquals(3, dao.loadLocations().size)
+    }
+
+    @Test
+    fun migrate7To8_keepsRowIdsAndRebuildsSpatialIndex() {
+        database.close()
+        context.deleteDatabase(DATABASE_NAME)
+        // Version 7, with an R*Tree index whose ids no longer match the rows' rowids, as after a
+        // VACUUM renumbered them.
+        SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null).use {
+            it.execSQL(
+                "CREATE TABLE my_location_table (id TEXT NOT NULL, " +
+                        "latitude REAL NOT NULL, longitude REAL NOT NULL, " +
+                        "foreground INTEGER NOT NULL, date INTEGER NOT NULL, " +
+                        "accuracy REAL NOT NULL DEFAULT 0, speed REAL NOT NULL DEFAULT 0, " +
+                        "bearing REAL NOT NULL DEFAULT 0, altitude REAL NOT NULL DEFAULT 0, " +
+                        "provider TEXT, uploaded INTEGER NOT NULL DEFAULT 0, " +
+                        "lat_e5 INTEGER, lng_e5 INTEGER, PRIMARY KEY(id))")
+            it.execSQL(
+                "INSERT INTO my_location_table (rowid, id, latitude, longitude, foreground, " +
+                        "date) VALUES (5, ?, 37.42, -122.08, 1, 1000)",
+                arrayOf(firstId.toString()))
+            it.execSQL(
+                "INSERT INTO my_location_table (rowid, id, latitude, longitude, foreground, " +
+                        "date) VALUES (9, ?, 40.71, -74.0, 0, 2000)",
+                arrayOf(secondId.toString()))
+            it.execSQL(
+                "CREATE VIRTUAL TABLE my_location_rtree USING rtree(" +
+                        "id, minLat, maxLat, minLng, maxLng, minDate, maxDate)")
+            it.execSQL(
+                "INSERT INTO my_location_rtree VALUES (5, 40.71, 40.71, -74.0, -74.0, 2000, 2000)")
+            it.version = 7
+        }
+        database = MyLocationDatabase.buildDatabase(
+            context, LocationWriteSettings(), DATABASE_NAME, allowMainThreadQueries = true)
+        val dao = database.locationDao()
+
+        assertTrue(database.hasSpatialIndex)
+        assertEquals(listOf(9L, 5L), dao.loadLocationRows().map { it.rowId })
+        assertEquals(
+            listOf(firstId),
+            dao.loadLocations(
+                LocationSpatialIndex.boundingBoxQuery(
+                    database, 37.0, 38.0, -123.0, -122.0, Date(0L), Date(Long.MAX_VALUE))
+            ).map { it.id })
+        assertEquals(10L, dao.addLocation(MyLocationEntity(date = Date(3_000L))))
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.PendingLocation
+import java.io.DataInputStream
+import java.util.zip.GZIPInputStream
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class LocationBatchEncoderTest {
+
+    private val batch = listOf(
+        PendingLocation(
+            rowId = 7,
+            latitude = 37.4219983,
+            longitude = -122.084,
+            foreground = true,
+            date = 1_600_000_000_000L,
+            accuracy = 4.5f,
+            speed = 1.25f,
+            bearing = 359.9f,
+            altitude = 31.42
+        ),
+        // Out of order and with values outside the encoded ranges.
+        PendingLocation(
+            rowId = 8,
+            latitude = -33.8688197,
+            longitude = 151.2092955,
+            foreground = false,
+            date = 1_599_999_990_000L,
+            accuracy = 10_000f,
+            speed = -1f,
+            bearing = 0f,
+            altitude = -12.3
+        ),
+        PendingLocation(
+            rowId = 12,
+            latitude = 0.0,
+            longitude = 180.0,
+            foreground = false,
+            date = 1_600_000_060_000L,
+            accuracy = 0f,
+            speed = 0f,
+            bearing = 90f,
+            altitude = 0.0
+        )
+    )
+
+    /**
+     * Reads a batch back as the backend would.
+     */
+    private fun decode(bytes: ByteArray): Pair<LongRange, List<PendingLocation>> {
+        DataInputStream(GZIPInputStream(bytes.inputStream())).use { input ->
+            assertEquals(1, input.readByte().toInt())
+            val range = input.readLong()..input.readLong()
+            val count = input.readInt()
+            var date = input.readLong()
+            val locations = List(count) {
+                date += unZigZag(readVarLong(input))
+                PendingLocation(
+                    rowId = 0,
+                    latitude = input.readInt() / 1e7,
+                    longitude = input.readInt() / 1e7,
+                    accuracy = input.readUnsignedShort() / 10f,
+                    speed = input.readUnsignedShort() / 100f,
+                    bearing = input.readUnsignedShort() / 10f,
+                    altitude = input.readInt() / 100.0,
+                    foreground = input.readByte().toInt() == 1,
+                    date = date
+                )
+            }
+            assertEquals(-1, input.read())
+            return range to locations
+        }
+    }
+
+    private fun readVarLong(input: DataInputStream): Long {
+        var value = 0L
+        var shift = 0
+        while (true) {
+            val byte = input.readUnsignedByte()
+            value = value or ((byte and 0x7F).toLong() shl shift)
+            if (byte and 0x80 == 0) return value
+            shift += 7
+        }
+    }
+
+    private fun unZigZag(value: Long): Long = (value ushr 1) xor -(value and 1)
+
+    @Test
+    fun encode_roundTripsWithinPrecision() {
+        val (range, locations) = decode(LocationBatchEncoder.encode(batch))
+
+        assertEquals(7L..12L, range)
+        assertEquals(batch.size, locations.size)
+        for ((expected, actual) in batch.zip(locations)) {
+            assertEquals(expected.date, actual.date)
+            assertEquals(expected.latitude, actual.latitude, 1e-7)
+            assertEquals(expected.longitude, actual.longitude, 1e-7)
+            assertEquals(expected.foreground, actual.foreground)
+            assertEquals(expected.accuracy.coerceIn(0f, 6553.5f), actual.accuracy, 0.05f)
+            assertEquals(expected.speed.coerceAtLeast(0f), actual.speed, 0.005f)
+            assertEquals(expected.bearing, actual.bearing, 0.05f)
+            assertEquals(expected.altitude, actual.altitude, 0.005)
+        }
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun encode_rejectsEmptyBatch() {
+        LocationBatchEncoder.encode(emptyList())
+    }
+}
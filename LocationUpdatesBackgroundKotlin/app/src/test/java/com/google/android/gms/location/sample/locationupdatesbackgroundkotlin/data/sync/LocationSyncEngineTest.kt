@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync
+
+import android.content.Context
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.LocationWriteSettings
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationDatabase
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.MyLocationEntity
+import java.util.Date
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+private const val DATABASE_NAME = "sync-engine-test"
+
+@RunWith(RobolectricTestRunner::class)
+class LocationSyncEngineTest {
+
+    private val context: Context = ApplicationProvider.getApplicationContext()
+    private val server = MockWebServer()
+    private lateinit var database: MyLocationDatabase
+    private lateinit var executor: ScheduledExecutorService
+
+    @Before
+    fun setUp() {
+        server.start()
+        context.deleteDatabase(DATABASE_NAME)
+        database = MyLocationDatabase.buildDatabase(
+            context, LocationWriteSettings(), DATABASE_NAME, allowMainThreadQueries = true)
+        executor = Executors.newSingleThreadScheduledExecutor()
+    }
+
+    @After
+    fun tearDown() {
+        executor.shutdownNow()
+        database.close()
+        server.shutdown()
+    }
+
+    private fun newEngine(maxBatchSize: Int = 2, maxRetries: Int = 10) = LocationSyncEngine(
+        database.locationDao(),
+        LocationSyncSettings(
+            endpoint = server.url("/locations").toUrl(),
+            maxBatchSize = maxBatchSize,
+            initialBackoffMillis = 200,
+            maxBackoffMillis = 1_000,
+            maxRetries = maxRetries
+        ),
+        executor
+    )
+
+    private fun addLocations(count: Int) {
+        val now = System.currentTimeMillis()
+        database.locationDao().addLocations(
+            List(count) { i -> MyLocationEntity(latitude = i.toDouble(), date = Date(now + i)) })
+    }
+
+    // Waits for the engine to finish the work it is doing now.
+    private fun drain() {
+        executor.submit { }.get(5, TimeUnit.SECONDS)
+    }
+
+    private fun takeRequest(): RecordedRequest =
+        checkNotNull(server.takeRequest(5, TimeUnit.SECONDS)) { "No request was sent" }
+
+    private fun pendingCount() = database.locationDao().countPendingLocations()
+
+    @Test
+    fun acknowledgedBatches_areMarkedUploaded() {
+        server.enqueue(MockResponse().setResponseCode(200))
+        server.enqueue(MockResponse().setResponseCode(204))
+        val engine = newEngine()
+        addLocations(4)
+
+        engine.requestSync()
+        val first = takeRequest()
+        val second = takeRequest()
+        drain()
+
+        assertEquals("1-2", first.getHeader("X-Batch-Range"))
+        assertEquals("3-4", second.getHeader("X-Batch-Range"))
+        assertEquals("gzip", first.getHeader("Content-Encoding"))
+        assertEquals(0, pendingCount())
+        assertEquals(2L, engine.stats.batchesUploaded)
+        assertEquals(4L, engine.stats.fixesUploaded)
+    }
+
+    @Test
+    fun conflict_countsAsAcknowledged() {
+        // The backend already stored this range, e.g. the previous acknowledgement was lost.
+        server.enqueue(MockResponse().setResponseCode(409))
+        val engine = newEngine()
+        addLocations(2)
+
+        engine.requestSync()
+        takeRequest()
+        drain()
+
+        assertEquals(0, pendingCount())
+    }
+
+    @Test
+    fun notEnoughPendingLocations_waitsForMaxDelay() {
+        val engine = newEngine(maxBatchSize = 10)
+        addLocations(2)
+
+        engine.requestSync()
+        drain()
+
+        assertNull(server.takeRequest(200, TimeUnit.MILLISECONDS))
+        assertEquals(2, pendingCount())
+    }
+
+    @Test
+    fun failedUpload_isRetriedAfterBackoff() {
+        server.enqueue(MockResponse().setResponseCode(500))
+        server.enqueue(MockResponse().setResponseCode(200))
+        val engine = newEngine()
+        addLocations(2)
+
+        engine.requestSync()
+        takeRequest()
+        drain()
+        val failedAt = System.nanoTime()
+        assertEquals(2, pendingCount())
+        assertEquals(1L, engine.stats.failedAttempts)
+
+        // Further inserts don't cut the backoff short.
+        engine.requestSync()
+        val retry = takeRequest()
+        val waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - failedAt)
+        drain()
+
+        assertEquals("1-2", retry.getHeader("X-Batch-Range"))
+        assertTrue("Retried after $waitedMillis ms", waitedMillis >= 150)
+        assertEquals(0, pendingCount())
+    }
+
+    @Test
+    fun clientError_skipsBatch() {
+        server.enqueue(MockResponse().setResponseCode(400))
+        server.enqueue(MockResponse().setResponseCode(200))
+        val engine = newEngine()
+        addLocations(4)
+
+        engine.requestSync()
+        takeRequest()
+        val next = takeRequest()
+        drain()
+
+        assertEquals("3-4", next.getHeader("X-Batch-Range"))
+        assertEquals(0, pendingCount())
+        assertEquals(1L, engine.stats.batchesRejected)
+        assertEquals(2L, engine.stats.fixesRejected)
+        assertEquals(0L, engine.stats.failedAttempts)
+    }
+
+    @Test
+    fun tooManyRequests_isRetried() {
+        server.enqueue(MockResponse().setResponseCode(429))
+        server.enqueue(MockResponse().setResponseCode(200))
+        val engine = newEngine()
+        addLocations(2)
+
+        engine.requestSync()
+        takeRequest()
+        val retry = takeRequest()
+        drain()
+
+        assertEquals("1-2", retry.getHeader("X-Batch-Range"))
+        assertEquals(0L, engine.stats.batchesRejected)
+        assertEquals(0, pendingCount())
+    }
+
+    @Test
+    fun payloadTooLarge_splitsBatch() {
+        server.enqueue(MockResponse().setResponseCode(413))
+        server.enqueue(MockResponse().setResponseCode(200))
+        server.enqueue(MockResponse().setResponseCode(200))
+        val engine = newEngine(maxBatchSize = 4)
+        addLocations(4)
+
+        engine.requestSync()
+        val ranges = List(3) { takeRequest().getHeader("X-Batch-Range") }
+        drain()
+
+        assertEquals(listOf("1-4", "1-2", "3-4"), ranges)
+        assertEquals(0, pendingCount())
+        assertEquals(0L, engine.stats.batchesRejected)
+    }
+
+    @Test
+    fun failedUploads_stopAfterMaxRetries() {
+        repeat(2) { server.enqueue(MockResponse().setResponseCode(503)) }
+        server.enqueue(MockResponse().setResponseCode(200))
+        val engine = newEngine(maxRetries = 1)
+        addLocations(2)
+
+        engine.requestSync()
+        takeRequest()
+        takeRequest()
+        drain()
+        engine.requestSync()
+
+        assertNull(server.takeRequest(1_500, TimeUnit.MILLISECONDS))
+        assertEquals(2L, engine.stats.failedAttempts)
+        assertEquals(2, pendingCount())
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync
+
+import java.net.URL
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class LocationSyncSettingsTest {
+
+    private val settings = LocationSyncSettings(
+        endpoint = URL("https://example.com/locations"),
+        initialBackoffMillis = 1_000,
+        maxBackoffMillis = 10_000
+    )
+
+    @Test
+    fun backoffMillis_doublesAfterEveryFailure() {
+        assertEquals(1_000L, settings.backoffMillis(1))
+        assertEquals(2_000L, settings.backoffMillis(2))
+        assertEquals(4_000L, settings.backoffMillis(3))
+        assertEquals(8_000L, settings.backoffMillis(4))
+    }
+
+    @Test
+    fun backoffMillis_isCappedAtMaxBackoff() {
+        assertEquals(10_000L, settings.backoffMillis(5))
+        assertEquals(10_000L, settings.backoffMillis(1_000))
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.benchmark
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.db.PendingLocation
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.sync.LocationBatchEncoder
+import java.util.Random
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Time to encode and gzip one upload batch of [batchSize] locations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class BatchEncoderBenchmark {
+
+    @Param("50", "500", "5000")
+    @JvmField
+    var batchSize = 0
+
+    private lateinit var batch: List<PendingLocation>
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        batch = List(batchSize) { i ->
+            PendingLocation(
+                rowId = i + 1L,
+                latitude = 37.422 + i * 1e-5 + random.nextGaussian() * 1e-5,
+                longitude = -122.084 + i * 1e-5 + random.nextGaussian() * 1e-5,
+                foreground = false,
+                date = 1_600_000_000_000L + i * 60_000L,
+                accuracy = 3f + random.nextFloat() * 20f,
+                speed = random.nextFloat() * 2f,
+                bearing = random.nextFloat() * 360f,
+                altitude = 30.0 + random.nextGaussian()
+            )
+        }
+    }
+
+    @Benchmark
+    fun encode(): ByteArray = LocationBatchEncoder.encode(batch)
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2020 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.benchmark
+
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationDeduplicator
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationKalmanFilter
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationOutlierFilter
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationZone
+import com.google.android.gms.location.sample.locationupdatesbackgroundkotlin.data.LocationZoneFilter
+import java.util.Random
+import java.util.concurrent.TimeUnit
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.infra.Blackhole
+
+private const val TRACE_LENGTH = 4096
+
+// Number of zones scattered around the trace for the zone filter.
+private const val ZONE_COUNT = 256
+
+/**
+ * Throughput of the per-fix ingest stages, measured over a synthetic 1 Hz walking trace with GPS
+ * noise. Results are reported in fixes per second on a single thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class IngestFilterBenchmark {
+
+    private val latitudes = DoubleArray(TRACE_LENGTH)
+    private val longitudes = DoubleArray(TRACE_LENGTH)
+    private val accuracies = FloatArray(TRACE_LENGTH)
+    private val times = LongArray(TRACE_LENGTH)
+
+    private lateinit var kalmanFilter: LocationKalmanFilter
+    private lateinit var outlierFilter: LocationOutlierFilter
+    private lateinit var deduplicator: LocationDeduplicator
+    private lateinit var zoneFilter: LocationZoneFilter
+    private var index = 0
+    private var timeOffset = 0L
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        var latitude = 37.422
+        var longitude = -122.084
+        for (i in 0 until TRACE_LENGTH) {
+            latitude += 1.4 / 111_320.0
+            longitude += 0.3 / 111_320.0
+            latitudes[i] = latitude + random.nextGaussian() * 5 / 111_320.0
+            longitudes[i] = longitude + random.nextGaussian() * 5 / 111_320.0
+            accuracies[i] = 3f + random.nextFloat() * 20f
+            times[i] = 1_600_000_000_000L + i * 1000L
+        }
+        kalmanFilter = LocationKalmanFilter()
+        outlierFilter = LocationOutlierFilter()
+        deduplicator = LocationDeduplicator()
+
+        // 200 m zones spread over the area the trace covers, with all three logging modes.
+        val modes = LocationZone.LoggingMode.values()
+        val zones = (0 until ZONE_COUNT).map { i ->
+            LocationZone(
+                "zone$i",
+                37.422 + random.nextDouble() * 0.06,
+                -122.084 + random.nextDouble() * 0.015,
+                200.0,
+                modes[i % modes.size]
+            )
+        }
+        zoneFilter = LocationZoneFilter(zones)
+    }
+
+    // Replays the trace forever, shifting time on every lap so the filters never see a gap or a
+    // fix going backwards.
+    private fun next(): Int {
+        val i = index
+        index = (index + 1) % TRACE_LENGTH
+        if (index == 0) timeOffset += TRACE_LENGTH * 1000L
+        return i
+    }
+
+    @Benchmark
+    fun kalmanUpdate(blackhole: Blackhole) {
+        val i = next()
+        kalmanFilter.update(latitudes[i], longitudes[i], accuracies[i], times[i] + timeOffset)
+        blackhole.consume(kalmanFilter.latitude)
+        blackhole.consume(kalmanFilter.longitude)
+    }
+
+    @Benchmark
+    fun outlierCheck(): Boolean {
+        val i = next()
+        return outlierFilter.accept(
+            latitudes[i], longitudes[i], accuracies[i], times[i] + timeOffset)
+    }
+
+    @Benchmark
+    fun dedupCheck(): Boolean {
+        val i = next()
+        return deduplicator.isDuplicate(
+            LocationDeduplicator.fixKey(latitudes[i], longitudes[i], times[i] + timeOffset))
+    }
+
+    @Benchmark
+    fun zoneCheck(): Boolean {
+        val i = next()
+        return zoneFilter.accept(latitudes[i], longitudes[i], times[i] + timeOffset)
+    }
+}